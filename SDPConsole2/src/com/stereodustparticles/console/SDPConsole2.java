@@ -5,12 +5,18 @@ import java.io.IOException;
 import java.util.Random;
 
 import com.stereodustparticles.console.deck.Decks;
+import com.stereodustparticles.console.deck.MixEngine;
+import com.stereodustparticles.console.deck.PlayoutScheduler;
+import com.stereodustparticles.console.deck.Preview;
+import com.stereodustparticles.console.deck.ShowRenderer;
 import com.stereodustparticles.console.library.LibraryManager;
 import com.stereodustparticles.console.mrs.MRSIntegration;
 import com.stereodustparticles.console.multi.MultiConsole;
 import com.stereodustparticles.console.playlist.Playlist;
 import com.stereodustparticles.console.pref.Prefs;
 import com.stereodustparticles.console.soundboard.Soundboard;
+import com.stereodustparticles.console.record.Recorder;
+import com.stereodustparticles.console.stream.Streaming;
 import com.stereodustparticles.console.ui.Microwave;
 import com.stereodustparticles.console.ui.MoolerCasterView;
 
@@ -49,7 +55,12 @@ public class SDPConsole2 extends Application {
         }
         
         MultiConsole.cleanUp();
+        Recorder.cleanUp();
+        Preview.cleanUp();
         Decks.cleanUp();
+        PlayoutScheduler.cleanUp();
+        Streaming.cleanUp();
+        MixEngine.cleanUpMaster();
     };
     
     // Global uncaught exception handler
@@ -141,9 +152,38 @@ public class SDPConsole2 extends Application {
 	
 	// "Main" method - startup method (wrapper) for non-JavaFX-aware environments
     public static void main(String[] args) {
+    	// Headless render mode: render a playlist log straight to a file, and don't bother with the UI at all
+    	if ( args.length > 0 && args[0].equals("--render") ) {
+    		System.exit(renderHeadless(args));
+    	}
+    	
         launch(args);
     }
     
+    // Render the PLL given on the command line to the given WAV or FLAC file
+    // Return the exit code
+    private static int renderHeadless(String[] args) {
+    	if ( args.length != 3 ) {
+    		System.err.println("Usage: --render <playlist.pll> <output.wav|output.flac>");
+    		return 2;
+    	}
+    	
+    	Prefs.init();
+    	LibraryManager.init();
+    	
+    	try {
+    		ShowRenderer renderer = new ShowRenderer(Playlist.readPLL(new File(args[1])), new File(args[2]));
+    		double speed = renderer.render();
+    		System.out.println("Rendered " + Utils.tenthsToString((int)(renderer.getRenderedSeconds() * 10)) + String.format(" of audio at %.1fx real time", speed));
+    		return 0;
+    	}
+    	catch (IOException e) {
+    		System.err.println("Render failed:");
+    		e.printStackTrace();
+    		return 1;
+    	}
+    }
+    
     // The *real* startup method
     @Override
     public void start(Stage primaryStage) {
@@ -156,11 +196,13 @@ public class SDPConsole2 extends Application {
     	Prefs.init();
     	LibraryManager.init();
     	Microwave.init();
+    	MixEngine.init();
     	Decks.init();
     	Playlist.init();
     	Soundboard.init();
     	MultiConsole.init();
     	MRSIntegration.init();
+    	Streaming.init();
     	
     	// Set window title
     	primaryStage.setTitle("SDP Mooler Caster Console v" + PROG_VERSION);
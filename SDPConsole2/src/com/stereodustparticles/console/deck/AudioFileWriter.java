@@ -0,0 +1,41 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * AudioFileWriter: Base class for anything that writes 16-bit PCM audio out to a
+ * file as it comes (for rendering and recording shows)
+ */
+package com.stereodustparticles.console.deck;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+
+import com.stereodustparticles.console.Utils;
+
+public abstract class AudioFileWriter {
+	// Open a writer for the given file, picking the file type from its extension (FLAC if it ends in .flac, WAV otherwise)
+	// The format must be 16-bit signed little-endian PCM (i.e. what the mix engine puts out)
+	public static AudioFileWriter open(File dest, AudioFormat format) throws IOException {
+		if ( format.getSampleSizeInBits() != 16 || format.isBigEndian() || format.getEncoding() != AudioFormat.Encoding.PCM_SIGNED ) {
+			throw new IllegalArgumentException("Only 16-bit signed little-endian PCM can be written, not " + format);
+		}
+		
+		if ( Utils.getFileExtension(dest).equals("flac") ) {
+			return new FlacFileWriter(dest, format);
+		}
+		else {
+			return new WavFileWriter(dest, format);
+		}
+	}
+	
+	// Write some whole frames of audio
+	public abstract void write(byte[] pcm, int off, int len) throws IOException;
+	
+	// Finish up the file and close it
+	public abstract void close() throws IOException;
+}
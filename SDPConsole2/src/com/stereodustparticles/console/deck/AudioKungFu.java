@@ -11,7 +11,48 @@ package com.stereodustparticles.console.deck;
 import javax.sound.sampled.AudioFormat;
 
 public class AudioKungFu {
+	// Unpack the given PCM bytes into float samples (-1 to 1), returning the number of samples
+	// This is the one and only time a deck's audio gets converted on its way from the decoder to the mix - everything after
+	// (cue detection, outro detection, the voice) works on the floats
+	public static int unpack(byte[] buffer, int blen, AudioFormat format, float[] samples) {
+		// 16-bit little-endian is what the decks' decoders always hand us, so do that one straight
+		if ( format.getEncoding() == AudioFormat.Encoding.PCM_SIGNED && format.getSampleSizeInBits() == 16 && ! format.isBigEndian() ) {
+			int n = blen / 2;
+			for ( int i = 0; i < n; i++ ) {
+				samples[i] = (short)((buffer[i * 2 + 1] << 8) | (buffer[i * 2] & 0xFF)) / 32768f;
+			}
+			return n;
+		}
+		
+		return SimpleAudioConversion.unpack(buffer, samples, blen, format);
+	}
+	
+	// Return the highest (positive) sample level in the given (unpacked) audio
+	public static float getPeak(float[] samples, int len) {
+		float peak = 0f;
+		for ( int i = 0; i < len; i++ ) {
+			if ( samples[i] > peak ) {
+				peak = samples[i];
+			}
+		}
+		return peak;
+	}
+	
+	// Return the highest (positive) sample level in the given audio
 	public static float getPeak(byte[] buffer, int blen, AudioFormat format) {
+		// 16-bit signed is all the decks ever deal with, so do that one in place (this gets called on every read until a track cues up)
+		if ( format.getEncoding() == AudioFormat.Encoding.PCM_SIGNED && format.getSampleSizeInBits() == 16 ) {
+			int peak = 0;
+			boolean bigEndian = format.isBigEndian();
+			for ( int i = 0; i + 1 < blen; i += 2 ) {
+				int sample = bigEndian ? (short)((buffer[i] << 8) | (buffer[i + 1] & 0xFF)) : (short)((buffer[i + 1] << 8) | (buffer[i] & 0xFF));
+				if ( sample > peak ) {
+					peak = sample;
+				}
+			}
+			return peak / 32768f;
+		}
+		
 		float[] samples = new float[blen / (format.getSampleSizeInBits() / 8)];
 		int samplesRead = SimpleAudioConversion.unpack(buffer, samples, blen, format);
 		int channels = format.getChannels();
@@ -0,0 +1,56 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * AudioOutput: Wherever the finished mix goes - the sound card, a file, or nowhere
+ * at all (which is handy for running without a sound card, and for seeing how fast
+ * the engine can go)
+ * The methods are named after SourceDataLine's, since that's what the mix thread
+ * was written against
+ */
+package com.stereodustparticles.console.deck;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+
+import com.stereodustparticles.console.pref.Prefs;
+
+public interface AudioOutput {
+	// Open whichever output the prefs call for, with room for the given number of bytes
+	public static AudioOutput open(AudioFormat format, int bufferSize) throws LineUnavailableException, IOException {
+		boolean flatOut = Prefs.loadBoolean(Prefs.OUTPUT_FLAT_OUT);
+		switch (Prefs.loadString(Prefs.OUTPUT_BACKEND)) {
+			case "file":
+				return new FileOutput(new File(Prefs.loadString(Prefs.OUTPUT_FILE)), format, bufferSize, flatOut);
+			case "null":
+				return new VirtualOutput(format, bufferSize, flatOut);
+			default:
+				return new JavaSoundOutput(format, bufferSize);
+		}
+	}
+	
+	// Return the size of the output buffer, in bytes
+	public int getBufferSize();
+	
+	// Return the number of bytes that can be written right now without blocking
+	public int available();
+	
+	// Write some whole frames of audio, blocking until there's room for all of it
+	// Return the number of bytes written
+	public int write(byte[] b, int off, int len);
+	
+	// Return the number of frames that have been played so far (ever)
+	public long getLongFramePosition();
+	
+	// Stop playing and let go of whatever we're hanging onto
+	public void close();
+	
+	// Return a short description of where the audio is going, for display
+	public String getDescription();
+}
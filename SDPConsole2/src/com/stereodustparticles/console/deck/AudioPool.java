@@ -0,0 +1,123 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * AudioPool: Hangs onto the big audio buffers (deck ring buffers, retained intros,
+ * spot samples and decode blocks) once they're done with, so the next load can
+ * have them back instead of making a fresh mess for the garbage collector to clean
+ * up in the middle of a show
+ * Everything comes in power-of-two sizes, so a buffer from one deck (or spot) fits
+ * the next one more often than not - which means you may get back more than you
+ * asked for
+ */
+package com.stereodustparticles.console.deck;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+public class AudioPool {
+	// Keep at most this much in spares, all told (enough for a ring and an intro on every deck, plus a few spots)
+	// Anything handed back past that is left to the garbage collector
+	private static final long MAX_SPARE_BYTES = 64L * 1024 * 1024;
+	
+	private static final Map<Integer, ArrayDeque<float[]>> floats = new HashMap<Integer, ArrayDeque<float[]>>();
+	private static final Map<Integer, ArrayDeque<byte[]>> bytes = new HashMap<Integer, ArrayDeque<byte[]>>();
+	
+	// Every spare we're holding, by identity, so the same buffer can't go in twice (and then out to two different owners)
+	private static final Set<Object> spares = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+	private static long spareBytes = 0;
+	
+	// How many buffers have been asked for, and how many of those were spares
+	private static long taken = 0;
+	private static long reused = 0;
+	
+	// Return a float buffer with room for at least size samples (its contents are whatever was left in it)
+	public static synchronized float[] takeFloats(int size) {
+		int rounded = roundUp(size);
+		ArrayDeque<float[]> queue = floats.get(rounded);
+		taken++;
+		if ( queue != null && ! queue.isEmpty() ) {
+			reused++;
+			float[] buffer = queue.pop();
+			spares.remove(buffer);
+			spareBytes -= buffer.length * 4L;
+			return buffer;
+		}
+		
+		return new float[rounded];
+	}
+	
+	// Return a byte buffer with room for at least size bytes (its contents are whatever was left in it)
+	public static synchronized byte[] takeBytes(int size) {
+		int rounded = roundUp(size);
+		ArrayDeque<byte[]> queue = bytes.get(rounded);
+		taken++;
+		if ( queue != null && ! queue.isEmpty() ) {
+			reused++;
+			byte[] buffer = queue.pop();
+			spares.remove(buffer);
+			spareBytes -= buffer.length;
+			return buffer;
+		}
+		
+		return new byte[rounded];
+	}
+	
+	// Hand a buffer back, once nobody's going to touch it again
+	// Buffers that didn't come from here (i.e. aren't a power of two in size) are left to the garbage collector
+	// So is anything that won't fit under the cap, and a buffer that's already been handed back is ignored
+	public static synchronized void give(float[] buffer) {
+		if ( ! keep(buffer, (buffer == null) ? 0 : buffer.length, 4) ) {
+			return;
+		}
+		
+		floats.computeIfAbsent(buffer.length, (k) -> new ArrayDeque<float[]>()).push(buffer);
+	}
+	
+	public static synchronized void give(byte[] buffer) {
+		if ( ! keep(buffer, (buffer == null) ? 0 : buffer.length, 1) ) {
+			return;
+		}
+		
+		bytes.computeIfAbsent(buffer.length, (k) -> new ArrayDeque<byte[]>()).push(buffer);
+	}
+	
+	// Decide whether or not to hang onto the given buffer, and account for it if we are
+	private static boolean keep(Object buffer, int length, int bytesPerItem) {
+		if ( buffer == null || length != roundUp(length) ) {
+			return false;
+		}
+		
+		// Handing the same buffer back twice is a bug somewhere else, but it'd be a much worse one if we gave it out twice
+		if ( spares.contains(buffer) ) {
+			System.err.println("Audio buffer handed back to the pool twice - ignoring it");
+			return false;
+		}
+		
+		long size = (long)length * bytesPerItem;
+		if ( spareBytes + size > MAX_SPARE_BYTES ) {
+			return false;
+		}
+		
+		spares.add(buffer);
+		spareBytes += size;
+		return true;
+	}
+	
+	// Return a one-line rundown, for display
+	public static synchronized String summarize() {
+		return String.format("%d of %d buffers reused, %.1f MB spare", reused, taken, spareBytes / 1048576.0);
+	}
+	
+	// Round the given size up to the next power of two
+	private static int roundUp(int size) {
+		return Integer.highestOneBit(Math.max(2, size) - 1) << 1;
+	}
+}
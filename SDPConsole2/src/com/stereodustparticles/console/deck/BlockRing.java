@@ -0,0 +1,72 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * BlockRing: Lock-free handoff of fixed-size blocks from one thread (e.g. the mix
+ * thread) to another (e.g. a disk writer)
+ * Exactly one thread may offer, and exactly one may poll - the producer never
+ * waits or allocates, and if the consumer falls behind, blocks get dropped (and
+ * counted) instead
+ */
+package com.stereodustparticles.console.deck;
+
+public class BlockRing {
+	private final byte[][] slots;
+	private final int[] lengths;
+	
+	// Positions only ever go up - the slot is the position modulo the slot count
+	// head is only written by the producer, and tail only by the consumer
+	private volatile long head = 0;
+	private volatile long tail = 0;
+	
+	private volatile long dropped = 0; // Only written by the producer
+	
+	public BlockRing(int blockCount, int blockSize) {
+		slots = new byte[blockCount][blockSize];
+		lengths = new int[blockCount];
+	}
+	
+	// Copy a block into the ring (producer only)
+	// Return false (and count the block as dropped) if the ring is full, or the block is too big
+	public boolean offer(byte[] block, int off, int len) {
+		long h = head;
+		if ( h - tail >= slots.length || len > slots[0].length ) {
+			dropped++;
+			return false;
+		}
+		
+		int slot = (int)(h % slots.length);
+		System.arraycopy(block, off, slots[slot], 0, len);
+		lengths[slot] = len;
+		head = h + 1; // Publishes the slot contents to the consumer
+		return true;
+	}
+	
+	// Copy the oldest block out of the ring into dest (consumer only)
+	// Return its length, or -1 if the ring is empty
+	public int poll(byte[] dest) {
+		long t = tail;
+		if ( t == head ) {
+			return -1;
+		}
+		
+		int slot = (int)(t % slots.length);
+		int len = lengths[slot];
+		System.arraycopy(slots[slot], 0, dest, 0, len);
+		tail = t + 1; // Hands the slot back to the producer
+		return len;
+	}
+	
+	// Return the size of the biggest block the ring will take
+	public int getBlockSize() {
+		return slots[0].length;
+	}
+	
+	// Return the number of blocks that didn't fit
+	public long getDropped() {
+		return dropped;
+	}
+}
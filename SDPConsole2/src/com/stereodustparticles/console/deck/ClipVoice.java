@@ -0,0 +1,160 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * ClipVoice: A mix engine voice that plays a fully-decoded sound from memory, a la Clip
+ * (this is what the soundboard spots use)
+ */
+package com.stereodustparticles.console.deck;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
+public class ClipVoice extends MixVoice {
+	private final MixEngine engine;
+	private final int channels;
+	private float[] samples = null;
+	private int frameLength = 0;
+	private volatile int position = 0; // in frames
+	private volatile boolean playing = false;
+	private Runnable onStart = null;
+	private Runnable onStop = null;
+	private MixNotifier.Notice ranOut = null; // Posted from the mix thread when we play to the end
+	
+	public ClipVoice(MixEngine engine) {
+		this.engine = engine;
+		channels = engine.getFormat().getChannels();
+	}
+	
+	// Set handlers to be run when playback starts and stops
+	// When we play to the end, the stop handler gets run from the mix notifier's thread (never the mix thread)
+	public void setHandlers(Runnable onStart, Runnable onStop) {
+		this.onStart = onStart;
+		this.onStop = onStop;
+		
+		if ( ranOut != null ) {
+			MixNotifier.unregister(ranOut);
+		}
+		
+		// If we got started again before the notifier got to it, there's nothing to tell
+		ranOut = MixNotifier.register(() -> {
+			if ( ! playing && onStop != null ) {
+				onStop.run();
+			}
+		});
+	}
+	
+	// Decode the given stream in its entirety into this voice
+	public void open(AudioInputStream in) throws IOException {
+		stop();
+		
+		// Slurp up the whole stream
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] readBuffer = AudioPool.takeBytes(4096);
+		try {
+			int nBytesRead;
+			while ( (nBytesRead = in.read(readBuffer, 0, readBuffer.length)) != -1 ) {
+				bytes.write(readBuffer, 0, nBytesRead);
+			}
+		}
+		finally {
+			AudioPool.give(readBuffer);
+		}
+		
+		// Convert it to the mix engine's format
+		AudioFormat format = in.getFormat();
+		SampleConverter converter = new SampleConverter(format, engine.getFormat());
+		byte[] raw = bytes.toByteArray();
+		int srcFrames = raw.length / format.getFrameSize();
+		float[] converted = AudioPool.takeFloats(converter.maxOutputFrames(srcFrames) * channels);
+		int frames = converter.convert(raw, 0, srcFrames, converted);
+		frames += converter.finish(converted, frames);
+		
+		float[] old;
+		synchronized (this) {
+			old = samples;
+			samples = converted;
+			frameLength = frames;
+			position = 0;
+		}
+		
+		// The mix thread only looks at the samples with our lock held, so it's done with the old ones
+		AudioPool.give(old);
+	}
+	
+	// Unload the sound
+	public synchronized void close() {
+		stop();
+		AudioPool.give(samples);
+		samples = null;
+		frameLength = 0;
+	}
+	
+	// Return the length of the loaded sound, in frames
+	public int getFrameLength() {
+		return frameLength;
+	}
+	
+	// Play from the top
+	public void play() {
+		if ( samples == null ) {
+			return;
+		}
+		
+		position = 0;
+		playing = true;
+		
+		if ( onStart != null ) {
+			onStart.run();
+		}
+	}
+	
+	// Stop playback
+	public void stop() {
+		if ( playing ) {
+			playing = false;
+			
+			if ( onStop != null ) {
+				onStop.run();
+			}
+		}
+	}
+	
+	// Return whether or not we're playing
+	public boolean isPlaying() {
+		return playing;
+	}
+	
+	@Override
+	public boolean isActive() {
+		return playing;
+	}
+	
+	@Override
+	protected synchronized int render(float[] out, int frames) {
+		if ( samples == null ) {
+			return 0;
+		}
+		
+		int n = Math.min(frames, frameLength - position);
+		System.arraycopy(samples, position * channels, out, 0, n * channels);
+		position += n;
+		
+		// If we've hit the end, we're done
+		// (The stop handler gets run elsewhere, since it's liable to fire events)
+		if ( position >= frameLength ) {
+			playing = false;
+			if ( ranOut != null ) {
+				ranOut.post();
+			}
+		}
+		
+		return n;
+	}
+}
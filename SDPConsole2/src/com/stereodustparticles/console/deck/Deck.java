@@ -17,10 +17,6 @@ import java.net.URL;
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.DataLine;
-import javax.sound.sampled.FloatControl;
-import javax.sound.sampled.LineUnavailableException;
-import javax.sound.sampled.SourceDataLine;
 
 import org.jaudiotagger.audio.AudioFile;
 import org.jaudiotagger.audio.AudioFileIO;
@@ -36,156 +32,189 @@ import com.stereodustparticles.console.ables.Loadable;
 import com.stereodustparticles.console.cache.CachedAudio;
 import com.stereodustparticles.console.event.Event;
 import com.stereodustparticles.console.event.EventBus;
-import com.stereodustparticles.console.event.EventListener;
 import com.stereodustparticles.console.event.EventType;
 import com.stereodustparticles.console.library.Library;
 import com.stereodustparticles.console.library.LibraryEntry;
 import com.stereodustparticles.console.library.LibraryManager;
-import com.stereodustparticles.console.multi.MultiConsole;
 import com.stereodustparticles.console.playlist.Playlist;
 import com.stereodustparticles.console.playlist.PlaylistEntry;
 import com.stereodustparticles.console.pref.Prefs;
 
 public class Deck implements Loadable {
 	// Instance variables
-	private AudioInputStream audio = null;
-	private SourceDataLine line = null;
-	private boolean playing = false;
+	private volatile AudioInputStream audio = null;
+	private StreamVoice voice;
+	private volatile boolean playing = false;
 	private boolean poofed = false;
-	private ReadThread reader;
-	private WriteThread writer;
-	private CircularByteBuffer ringBuffer = null;
+	private DeckReader reader;
+	private DeckWriter writer;
+	private SampleRing ringBuffer = null;
 	private float volume = 0.0f; // + or - dB
-	private URL audioFile = null;
+	private volatile URL audioFile = null;
 	private int deckNum;
 	private int confirmedDuration = -1;
 	private String title = null;
 	private String artist = null;
-	private boolean closing = false;
+	private volatile boolean closing = false;
 	private boolean ready = false;
 	private boolean snpWaiting = false;
 	private int requestID = 0;
+	private RetainedIntro intro = null;
+	private IntroInputStream recued = null; // What cue() set the reader up with, for as long as it's still reading from it
+	private volatile boolean segueDone = false;
+	private int crossfadeFrames = 0;
+	private int ringBufferSec = BUFFER_SIZE_SEC;
+	private boolean starved = false;
+	private final PlayoutStats stats = new PlayoutStats();
+	private long trackFrames = -1; // Length of the current track, if the decoder knew it up front
+	private int loadGeneration = 0; // Bumped on every load, so a duration lookup that finishes late knows it's too late
+	private int readingGeneration = 0; // The load the reader is working on (once it's the same as loadGeneration, the load is all set up)
 	
-	// TODO make number seconds of buffer adjustable?
+	// What the mix thread has to tell the rest of the world about a segue, set up ahead of time (see MixNotifier)
+	private final MixNotifier.Notice segueReached;
+	private final MixNotifier.Notice segueStarted;
+	private final MixNotifier.Notice fadedOut;
+	private final Runnable onSegueStarted;
+	private final Runnable onFadedOut;
+	
+	// Seconds of decoded audio to keep in the ring buffer
+	// In low-latency mode, we start with the minimum, and grow (up to the maximum) if the decoder can't keep up
 	private static final int BUFFER_SIZE_SEC = 5;
+	private static final int MIN_BUFFER_SEC = 1;
+	private static final int MAX_BUFFER_SEC = 8;
+	
+	// Number of seconds of the start of each track to keep around for quick re-cueing
+	protected static final int INTRO_RETAIN_SEC = 10;
 	
 	public Deck(int deckNum) {
 		this.deckNum = deckNum;
 		
-		// Initialize the read/write threads
-		reader = new ReadThread(this);
-		writer = new WriteThread(this);
+		// Get ourselves a voice in the mix
+		voice = MixEngine.getMaster().addVoice(new StreamVoice(MixEngine.getMaster(), stats));
 		
-		// Register the necessary event listeners to take input from the UI
-		EventBus.registerListener(EventType.DECK_PLAY_PRESSED, new EventListener() {
-
-			@Override
-			public void onEvent(Event e) {
-				if ( eventMatters(e) && ((Integer)e.getParams()[0]).intValue() == deckNum ) {
-					ready = false;
-					playButton();
-				}
-			}
-			
-		});
+		// Get the reader/writer going on the playout scheduler
+		reader = new DeckReader(this);
+		writer = new DeckWriter(this);
+		PlayoutScheduler.add(reader);
+		PlayoutScheduler.add(writer);
 		
-		EventBus.registerListener(EventType.DECK_CUE_PRESSED, new EventListener() {
-
-			@Override
-			public void onEvent(Event e) {
-				if ( eventMatters(e) && ((Integer)e.getParams()[0]).intValue() == deckNum ) {
-					cue();
-				}
-			}
-			
+		// The mix thread can't fire events (or even allocate), so it just posts these, and the notifier thread does the rest
+		segueReached = MixNotifier.register(() -> EventBus.fireEvent(new Event(EventType.SNP_TRIGGER, deckNum)));
+		segueStarted = MixNotifier.register(() -> {
+			EventBus.fireEvent(new Event(EventType.DECK_PLAYBACK_STARTED, deckNum));
+			markPlayed();
 		});
-		
-		EventBus.registerListener(EventType.DECK_REQUEST_LOAD, (e) -> {
-			if ( eventMatters(e) ) {
-				DeckLoadRequest req = (DeckLoadRequest)e.getParams()[0];
-				if ( req.getDeckNum() == deckNum ) {
-					Utils.runInBackground(() -> {
-						try {
-							// Check if we have a valid duration in the request
-							// If not, set confirmedDuration to 0 so the loader will calculate it
-							// Otherwise, set confirmedDuration to the known duration
-							if ( req.getDuration() == -1 ) {
-								confirmedDuration = 0;
-							}
-							else {
-								confirmedDuration = req.getDuration();
-							}
-							
-							URL toLoad = LibraryManager.getLibraryForName(req.getLibrary()).getURLFromPath(req.getLocation());
-							CachedAudio.cacheAndLoad(toLoad, this);
-						}
-						catch (Exception e1) {
-							onLoadError(e1);
-							return;
-						}
-						
-						artist = req.getArtist();
-						title = req.getTitle();
-						requestID = req.getRequestID();
-					});
-				}
-			}
+		fadedOut = MixNotifier.register(() -> {
+			playing = false;
+			PlayoutScheduler.wake();
 		});
-		
-		EventBus.registerListener(EventType.DECK_VOLUME_ADJUST, new EventListener() {
-
-			@Override
-			public void onEvent(Event e) {
-				if ( eventMatters(e) ) {
-					Object[] params = e.getParams();
-					
-					if ( ((Integer)params[0]).intValue() == deckNum ) {
-						float newVolume = ((Float)params[1]).floatValue();
-						
-						if ( newVolume != volume ) {
-							setVolume(newVolume);
-						}
+		onSegueStarted = segueStarted::post;
+		onFadedOut = fadedOut::post;
+	}
+	
+	// Handle a press of the play button (routed to us by Decks)
+	protected void onPlayPressed() {
+		ready = false;
+		if ( ! playing ) {
+			voice.timeNextStart(System.nanoTime());
+		}
+		playButton();
+	}
+	
+	// Handle a load request (routed to us by Decks)
+	protected void onLoadRequest(DeckLoadRequest req) {
+		Utils.runInBackground(() -> {
+			try {
+				// Check if we have a valid duration in the request
+				// If not, set confirmedDuration to 0 so the loader will calculate it
+				// Otherwise, set confirmedDuration to the known duration
+				if ( req.getDuration() == -1 ) {
+					confirmedDuration = 0;
+				}
+				else {
+					confirmedDuration = req.getDuration();
+				}
+				
+				// If the prefetcher already has this one ready to go, just take it
+				PrefetchedTrack prefetched = Prefetcher.claim(req.getLibrary(), req.getLocation());
+				if ( prefetched != null ) {
+					if ( confirmedDuration == 0 ) {
+						confirmedDuration = prefetched.getDuration();
 					}
+					loadPrefetched(prefetched);
+				}
+				else {
+					URL toLoad = LibraryManager.getLibraryForName(req.getLibrary()).getURLFromPath(req.getLocation());
+					CachedAudio.cacheAndLoad(toLoad, this);
 				}
 			}
+			catch (Exception e1) {
+				onLoadError(e1);
+				return;
+			}
 			
+			artist = req.getArtist();
+			title = req.getTitle();
+			requestID = req.getRequestID();
+			
+			// Get the track after this one ready while this one plays
+			Prefetcher.prefetchNext();
 		});
-		
-		EventBus.registerListener(EventType.SNP_TRIGGER, (e) -> {
-			if ( Decks.snpIsEnabled() ) { // This check may not strictly be necessary, but it may prevent some stupidity somewhere...
-				int deckOrig = ((Integer)e.getParams()[0]).intValue();
-				if ( deckOrig != deckNum ) {
-					if ( ready ) {
-						ready = false;
-						playButton();
-					}
-					else {
-						snpWaiting = true;
-					}
-				}
+	}
+	
+	// Handle a seek request, given in tenths of a second from the cue point (routed to us by Decks)
+	protected void onSeekRequest(int tenths) {
+		Utils.runInBackground(() -> {
+			if ( audio == null ) {
+				return;
 			}
+			
+			AudioFormat format = audio.getFormat();
+			long leadIn = (intro == null) ? 0 : intro.getLeadInBytes() / format.getFrameSize();
+			seek(leadIn + (long)tenths * (long)format.getSampleRate() / 10);
 		});
 	}
 	
-	// Return the ring buffer
-	protected CircularByteBuffer getRingBuffer() {
-		return ringBuffer;
+	// Handle a volume fader move (routed to us by Decks)
+	protected void onVolumeAdjust(float newVolume) {
+		if ( newVolume != volume ) {
+			setVolume(newVolume);
+		}
 	}
 	
-	// Check if the specified event applies to us
-	private boolean eventMatters(Event ev) {
-		char mcMode = MultiConsole.getDeckMode();
-		if ( mcMode == 'M' ) {
-			return true;
+	// Handle the previous deck finishing up under Stream 'n' Poop(TM) (routed to us by Decks)
+	protected void onSNPTrigger() {
+		// If we're armed and waiting on a segue that never came, just go
+		if ( voice.isHeld() ) {
+			voice.release(0, 0);
+		}
+		else if ( playing ) {
+			return;
 		}
-		else if ( mcMode == 'A' && ev.getOriginator().equals(Prefs.loadString(Prefs.MC_IDENTITY)) ) {
-			return true;
+		else if ( ready ) {
+			ready = false;
+			playButton();
 		}
 		else {
-			return false;
+			snpWaiting = true;
 		}
 	}
 	
+	// Return the ring buffer
+	protected SampleRing getRingBuffer() {
+		return ringBuffer;
+	}
+	
+	// Return our voice in the mix
+	protected StreamVoice getVoice() {
+		return voice;
+	}
+	
+	// Set a tap to get a copy of everything this deck plays (before the fader), or null for none
+	public void setTap(MixTap tap) {
+		voice.setTap(tap);
+	}
+	
 	// Load a file into this Deck
 	public void load(URL file) {
 		// If there is a file playing on this deck, the user has not done their One Job(TM).  Return.
@@ -193,39 +222,191 @@ public class Deck implements Loadable {
 			return;
 		}
 		
-		// If there was a previously loaded file, close its stream and line
-		if ( line != null ) {
-			synchronized (line) {
-				line.close();
+		// If there was a previously loaded file, close its stream
+		if ( ! closeAudio() ) {
+			return;
+		}
+		
+		// Check if the request contains a valid duration
+		// If not, go dig one out of the file's tags while we get the decoder going, rather than making the decoder wait on it
+		// (The control pane hears about it via the Deck Ready event if we have it by then, or a Deck Duration Update event if not)
+		int generation;
+		boolean needDuration;
+		synchronized (this) {
+			generation = ++loadGeneration;
+			needDuration = (confirmedDuration == 0);
+			if ( needDuration ) {
+				confirmedDuration = -1;
+			}
+		}
+		if ( needDuration ) {
+			Utils.runInBackground(() -> onDurationFound(generation, readDuration(file)));
+		}
+		
+		// Load the file and set up decoding
+		try {
+			audio = openDecoded(file);
+		} catch (Exception e) {
+			onLoadError(e);
+			return;
+		}
+		
+		prepareVoice(file);
+		
+		// If the stream already knows how long it is (i.e. it's a mapped WAV/AIFF), there's no need to wait on the tags
+		trackFrames = audio.getFrameLength();
+		synchronized (this) {
+			if ( confirmedDuration == -1 && trackFrames != AudioSystem.NOT_SPECIFIED ) {
+				confirmedDuration = (int)(trackFrames * 10 / (long)audio.getFormat().getSampleRate());
+			}
+			
+			// Start decoding, and keep the start of the track for re-cueing
+			RetainedIntro oldIntro = intro;
+			intro = new RetainedIntro(audio.getFormat(), INTRO_RETAIN_SEC);
+			startReading(intro, 0, false);
+			readingGeneration = generation;
+			
+			// Nothing's going to play from the last track's intro again, so the next load can have its storage
+			if ( oldIntro != null ) {
+				oldIntro.release();
 			}
 		}
+		
+		// Get the seek index ready while we're at it
+		Utils.runInBackground(() -> SeekIndex.get(file));
+	}
+	
+	// Load a track that the prefetcher already decoded the start of
+	// The intro it captured plays straight out of memory while its decoder carries on from there
+	protected void loadPrefetched(PrefetchedTrack track) {
+		if ( playing || ! closeAudio() ) {
+			track.discard();
+			return;
+		}
+		
+		int generation;
+		synchronized (this) {
+			generation = ++loadGeneration;
+		}
+		
+		AudioInputStream rest = track.getRest();
+		RetainedIntro oldIntro = intro;
+		intro = track.getIntro();
+		audio = new AudioInputStream(new IntroInputStream(intro, rest), rest.getFormat(), AudioSystem.NOT_SPECIFIED);
+		trackFrames = AudioSystem.NOT_SPECIFIED;
+		
+		prepareVoice(track.getFile());
+		synchronized (this) {
+			startReading(null, intro.getLeadInBytes(), false);
+			readingGeneration = generation;
+		}
+		
+		if ( oldIntro != null ) {
+			oldIntro.release();
+		}
+		
+		Utils.runInBackground(() -> SeekIndex.get(track.getFile()));
+	}
+	
+	// Close the stream of the previously loaded file, if any
+	// (The reader does the actual closing, so it can't go out from under a read that's under way)
+	// Return false if the load should be abandoned
+	private boolean closeAudio() {
 		if ( audio != null ) {
 			try {
-				audio.close();
+				reader.detach();
 			}
 			catch (IOException e) {
 				// If something goes wrong, throw an error event, but try to continue (unless SnP is enabled)
 				if ( Decks.snpIsEnabled() ) {
 					autoLoad();
-					return;
+					return false;
 				}
 				else {
 					EventBus.fireEvent(new Event(EventType.DECK_LOAD_ERROR, e, deckNum));
 				}
 			}
-			System.gc(); // For safe measure
 		}
 		
-		// Load the file and set up decoding
-		// (From http://www.javalobby.org/java/forums/t18465.html)
-		AudioInputStream in;
-		try {
-			in = AudioSystem.getAudioInputStream(file);
-		} catch (Exception e) {
-			onLoadError(e);
+		return true;
+	}
+	
+	// Get our voice ready for a newly-opened file
+	private void prepareVoice(URL file) {
+		// Make sure the writer doesn't prime the voice with anything left over from the last track
+		writer.beginRebind();
+		
+		// Point our voice at the new format (this also throws out anything left over from the last track)
+		voice.setFormat(audio.getFormat());
+		
+		// Set initial output volume
+		setVolume(volume);
+		
+		// Store the new file name
+		audioFile = file;
+	}
+	
+	// Called (from a background thread) once the duration for the given load has been looked up
+	private synchronized void onDurationFound(int generation, int duration) {
+		// If something else got loaded since, or the decoder already told us, never mind
+		if ( generation != loadGeneration || confirmedDuration != -1 ) {
 			return;
 		}
 		
+		confirmedDuration = duration;
+		reader.setDuration(duration);
+		
+		// If the reader hasn't started on this track yet, it'll pass the duration along with the Deck Ready event
+		// Otherwise, let the control panes know now (counting from the cue point, like the Deck Ready event does)
+		if ( readingGeneration == generation ) {
+			float rate = audio.getFormat().getSampleRate();
+			int cuePoint = (int)(reader.getStartFrame() * 10 / (long)rate);
+			EventBus.fireEvent(new Event(EventType.DECK_DURATION_UPDATE, deckNum, duration - cuePoint));
+		}
+	}
+	
+	// Look up the duration of a file (in tenths of seconds), or return 0 if that can't be done
+	protected static int readDuration(URL file) {
+		// Open the audio file using JAudiotagger
+		// Since JAudioTagger only takes Files, we need to use the mild hack from https://community.oracle.com/blogs/kohsuke/2007/04/25/how-convert-javaneturl-javaiofile
+		File f;
+		AudioFile af;
+		
+		try {
+		  f = new File(file.toURI());
+		}
+		catch (URISyntaxException e) {
+		  f = new File(file.getPath());
+		}
+		
+		try {
+			af = AudioFileIO.read(f);
+			
+			AudioHeader header = af.getAudioHeader();
+			
+			// Get duration (in tenths of seconds)
+			return (int)(header.getPreciseTrackLength() * 10.0);
+		}
+		catch (CannotReadException | IOException | TagException | ReadOnlyFileException | InvalidAudioFrameException e1) {
+			e1.printStackTrace();
+			return 0;
+		}
+	}
+	
+	// Open the given file, and set up decoding to 16-bit PCM
+	// (From http://www.javalobby.org/java/forums/t18465.html)
+	// Plain old WAV/AIFF files get played straight out of a memory mapping instead, since there's nothing to decode
+	protected static AudioInputStream openDecoded(URL file) throws Exception {
+		AudioInputStream mapped = MappedPCMInputStream.open(file);
+		if ( mapped != null ) {
+			return mapped;
+		}
+		
+		return decodeTo16Bit(DecoderRegistry.getAudioInputStream(file));
+	}
+	
+	// Set up decoding of the given stream to 16-bit PCM
+	protected static AudioInputStream decodeTo16Bit(AudioInputStream in) {
 		AudioFormat baseFormat = in.getFormat();
 		AudioFormat decodedFormat = new AudioFormat(
 			AudioFormat.Encoding.PCM_SIGNED, // Encoding to use
@@ -237,130 +418,278 @@ public class Deck implements Loadable {
 			false				  // Is Big Endian? (No)
 		);
 		
-		audio = AudioSystem.getAudioInputStream(decodedFormat, in);
-		
-		// Get the output line (using the method below)
-		try {
-			line = getLine(decodedFormat);
-		}
-		catch (LineUnavailableException e) {
-			onLoadError(e);
-			return;
-		}
-		
-		// Set initial output volume
-		setVolume(volume);
-		
-		// Store the new file name
-		audioFile = file;
+		return AudioSystem.getAudioInputStream(decodedFormat, in);
+	}
+	
+	// Prepare the ring buffer and reader/writer to play from the current audio stream
+	// The reader closes the old stream itself, once it's done with it
+	private void startReading(RetainedIntro capture, long skippedBytes, boolean alreadyCued) {
+		SampleRing oldRing = ringBuffer;
+		recued = null;
 		
-		// Check if the request contains a valid duration
-		// If not, calculate one and be ready to tell the control pane (via the Deck Ready event)
-		if ( confirmedDuration == 0 ) {
-			// Open the audio file using JAudiotagger
-			// Since JAudioTagger only takes Files, we need to use the mild hack from https://community.oracle.com/blogs/kohsuke/2007/04/25/how-convert-javaneturl-javaiofile
-			File f;
-			AudioFile af;
-			
-			try {
-			  f = new File(file.toURI());
-			}
-			catch (URISyntaxException e) {
-			  f = new File(file.getPath());
-			}
-			
-			try {
-				af = AudioFileIO.read(f);
-				
-				AudioHeader header = af.getAudioHeader();
-				
-				// Get duration (in tenths of seconds)
-				confirmedDuration = (int)(header.getPreciseTrackLength() * 10.0);
-			}
-			catch (CannotReadException | IOException | TagException | ReadOnlyFileException | InvalidAudioFrameException e1) {
-				e1.printStackTrace();
+		// In low-latency mode, shrink the ring buffer back down if we got through the last one without starving
+		// (if we did starve, stick with what we had to grow to)
+		if ( Prefs.loadBoolean(Prefs.LOW_LATENCY) ) {
+			if ( ! starved ) {
+				ringBufferSec = Math.max(MIN_BUFFER_SEC, Math.min(ringBufferSec, MAX_BUFFER_SEC) / 2);
 			}
 		}
-		
-		// Prepare the ring buffer and read/write threads
-		if ( ringBuffer != null ) {
-			try {
-				// Force pending writes to the bugger to stop by closing the output stream
-				ringBuffer.getOutputStream().close();
-				
-				// And, for safe measure
-				ringBuffer.getInputStream().close();
-			}
-			catch (IOException e) {
-				// Should not happen
-				e.printStackTrace();
-			}
+		else {
+			ringBufferSec = BUFFER_SIZE_SEC;
 		}
+		starved = false;
 		
-		// Calculate ring buffer size
+		// Calculate ring buffer size (in samples)
 		AudioFormat format = audio.getFormat();
-		int ringBufferSize = ((int)format.getSampleRate() * BUFFER_SIZE_SEC) * (format.getSampleSizeInBits() / 8) * format.getChannels();
+		int ringBufferSize = ((int)format.getSampleRate() * ringBufferSec) * format.getChannels();
 		
-		ringBuffer = new CircularByteBuffer(ringBufferSize, true);
+		// In low-latency mode, leave room for the ring to grow all the way if we starve
+		int maxRingBufferSize = Prefs.loadBoolean(Prefs.LOW_LATENCY) ? ((int)format.getSampleRate() * MAX_BUFFER_SEC) * format.getChannels() : ringBufferSize;
+		ringBuffer = new SampleRing(ringBufferSize, maxRingBufferSize);
 		
-		synchronized (reader) {
-			reader.setSource(audio, confirmedDuration);
-			reader.notifyAll();
-		}
+		reader.setSource(audio, confirmedDuration, capture, skippedBytes, alreadyCued);
+		writer.setVoice(voice);
 		
-		writer.setLine(line);
+		// Now that the reader and writer have both moved on to the new ring (and finished with the old one), make sure nobody
+		// keeps using the old bugger, and its storage can go back in the pool for the next load (on this deck or any other)
+		// (Closing it any sooner would trip up a read that was already under way)
+		if ( oldRing != null ) {
+			oldRing.close();
+			oldRing.release();
+		}
 		
 		poofed = false;
+		segueDone = false;
 	}
 	
 	// Start/stop playback
 	public void playButton() {
 		// If there's actually a file loaded...
-		if ( ! poofed && line != null && audio != null ) {
+		if ( ! poofed && audio != null ) {
 			// If we aren't currently playing...
 			if ( ! playing ) {
 				// Start playing
-				synchronized (writer) {
-					playing = true;
-					writer.notifyAll();
-				}
+				playing = true;
 				
-				// Mark track played in Playlist Manager
-				if ( title != null ) {
-					EventBus.fireEvent(new Event(EventType.PLAYLIST_MARK_PLAYED, new PlaylistEntry(artist, title, false, 0, requestID)));
+				// In primed mode, the writer already filled our voice with the start of the track,
+				// so we can start it right here, and be heard on the very next block
+				if ( Prefs.loadBoolean(Prefs.PRIMED_PLAY) ) {
+					voice.start();
 				}
+				PlayoutScheduler.wake();
+				
+				markPlayed();
+			}
+			else if ( voice.isHeld() ) {
+				// We're armed for a segue - the user just wants it now
+				voice.release(0, 0);
 			}
 			else {
-				// Tell the write thread to stop playback
+				// Tell the writer to stop playback
 				playing = false;
+				PlayoutScheduler.wake();
 			}
 		}
 	}
 	
-	// From http://www.javazoom.net/mp3spi/documents.html: Get a line for a given format
-	private SourceDataLine getLine(AudioFormat audioFormat) throws LineUnavailableException {
-	  SourceDataLine res = null;
-	  DataLine.Info info = new DataLine.Info(SourceDataLine.class, audioFormat);
-	  res = (SourceDataLine) AudioSystem.getLine(info);
-	  res.open(audioFormat);
-	  return res;
+	// Mark the current track played in Playlist Manager
+	private void markPlayed() {
+		if ( title != null ) {
+			EventBus.fireEvent(new Event(EventType.PLAYLIST_MARK_PLAYED, new PlaylistEntry(artist, title, false, 0, requestID)));
+		}
+	}
+	
+	// Set the segue point (in source frames since the cue point) where Stream 'n' Poop(TM) should hand off to the next deck
+	// Called by the reader once it finds where the track fades out
+	protected void setSeguePoint(long frame) {
+		crossfadeFrames = (int)(Prefs.loadInt(Prefs.SNP_CROSSFADE) * MixEngine.getMaster().getFormat().getSampleRate() / 1000);
+		voice.setSeguePoint(frame, this::onSegue);
+		
+		// Get the next deck started and filling up, so it can come in right on the mark
+		Deck next = Decks.get(Decks.nextDeckNum(deckNum));
+		if ( next != null && next != this ) {
+			next.armForSegue();
+		}
+	}
+	
+	// Forget the segue point (the track turned out not to be done after all)
+	protected void clearSeguePoint() {
+		voice.clearSeguePoint();
+	}
+	
+	// Called from the mix thread when it reaches the segue point, with the offset into the block where it landed
+	// Nothing in here allocates - the fade handler and the notices were all set up in the constructor
+	private void onSegue(int offset) {
+		segueDone = true;
+		
+		Deck next = Decks.get(Decks.nextDeckNum(deckNum));
+		if ( next != null && next != this && next.getVoice().isHeld() ) {
+			next.getVoice().release(offset, crossfadeFrames);
+			if ( crossfadeFrames > 0 ) {
+				voice.fadeOut(offset, crossfadeFrames, onFadedOut);
+			}
+		}
+		
+		// Let the rest of the world know (this also covers the case where the next deck wasn't ready yet)
+		segueReached.post();
+	}
+	
+	// Start playing silently, so we can be let go by the mixer at the exact moment the previous deck hits its segue point
+	protected synchronized void armForSegue() {
+		if ( ! ready || playing || ! Decks.snpIsEnabled() ) {
+			return;
+		}
+		
+		ready = false;
+		voice.hold(onSegueStarted);
+		
+		playing = true;
+		PlayoutScheduler.wake();
+	}
+	
+	// Give up on the current track (it's stopped coming through) and get the next deck going, so the air doesn't stay dead
+	// Called by the watchdog - with Stream 'n' Poop(TM) on, stopping trips it as usual, so we only have to do the handoff ourselves without it
+	protected void failOver() {
+		playing = false;
+		PlayoutScheduler.wake();
+		
+		Deck next = Decks.get(Decks.nextDeckNum(deckNum));
+		if ( ! Decks.snpIsEnabled() && next != null && next != this && next.isReady() && ! next.isPlaying() ) {
+			next.playButton();
+		}
+	}
+	
+	// If we're armed for a segue, back out of it (e.g. Stream 'n' Poop(TM) got turned off)
+	protected void disarm() {
+		if ( voice.isHeld() ) {
+			voice.stop();
+			voice.flush();
+			playing = false;
+			Utils.runInBackground(() -> cue());
+		}
+	}
+	
+	// Return whether or not we've handed off to the next deck yet
+	protected boolean isSegueDone() {
+		return segueDone;
+	}
+	
+	// Note that we've handed off to the next deck
+	protected void notifySegueDone() {
+		segueDone = true;
 	}
 	
 	// Adjust the playback volume (gain)
 	public void setVolume(float newVolume) {
 		volume = newVolume;
+		voice.setGain(volume);
+	}
+	
+	// Re-cue the current song
+	// If we've got the intro handy, play that back while the decoder catches up in the background
+	// Otherwise, fall back to reloading the file
+	public void cue() {
+		if ( audioFile == null || playing ) {
+			return;
+		}
 		
-		if ( line != null ) {
-			FloatControl volumeCtrl = (FloatControl) line.getControl(FloatControl.Type.MASTER_GAIN);
-			volumeCtrl.setValue(volume);
+		if ( intro == null || ! intro.isComplete() ) {
+			load(audioFile);
+			return;
+		}
+		
+		// (The reader closes the old stream once it's moved on to this one)
+		synchronized (this) {
+			AudioFormat format = audio.getFormat();
+			IntroInputStream in = new IntroInputStream(intro, audioFile, this::onRecueFailed);
+			audio = new AudioInputStream(in, format, AudioSystem.NOT_SPECIFIED);
+			writer.beginRebind();
+			voice.flush();
+			startReading(null, intro.getLeadInBytes(), false);
+			recued = in;
 		}
 	}
 	
-	// Re-cue the current song (a.k.a. reload the file)
-	public void cue() {
-		if ( audioFile != null ) {
+	// Called (from a background thread) if the decoder for the rest of a re-cued track couldn't be opened
+	// If we haven't started playing yet, just load it again from scratch - otherwise, there's nothing for it but to tell the user
+	private void onRecueFailed(IntroInputStream failed, Exception e) {
+		int generation;
+		synchronized (this) {
+			// If we've moved on since, never mind
+			if ( recued != failed ) {
+				return;
+			}
+			recued = null;
+			generation = loadGeneration;
+		}
+		
+		if ( ! playing ) {
 			load(audioFile);
 		}
+		
+		// If PLAY got pressed first (so the load didn't go ahead), the track's going to run dry after the intro
+		boolean stuck;
+		synchronized (this) {
+			stuck = (generation == loadGeneration);
+		}
+		if ( stuck ) {
+			e.printStackTrace();
+			EventBus.fireEvent(new Event(EventType.DECK_LOAD_ERROR, e, deckNum));
+		}
+	}
+	
+	// Jump to the given frame of the current track (counting from the very start of the file, leading silence and all)
+	// This works whether or not we're playing
+	// If a load comes along while we're busy finding the spot, it wins, and the seek is called off
+	public void seek(long frame) {
+		// Don't go seeking around in a load that's still being set up
+		int generation;
+		URL file;
+		synchronized (this) {
+			if ( audio == null || audioFile == null || readingGeneration != loadGeneration ) {
+				return;
+			}
+			generation = loadGeneration;
+			file = audioFile;
+		}
+		
+		AudioInputStream seeked;
+		try {
+			seeked = SeekIndex.openAt(file, frame);
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			return;
+		}
+		
+		int remaining;
+		AudioFormat format = seeked.getFormat();
+		synchronized (this) {
+			// If something else got loaded in the meantime, this is the wrong track
+			if ( generation != loadGeneration ) {
+				try {
+					seeked.close();
+				}
+				catch (IOException e) {
+					e.printStackTrace();
+				}
+				return;
+			}
+			
+			// Hold the writer off while we swap out the ring buffer
+			// (The reader closes the old stream once it's moved on to the new one)
+			writer.beginRebind();
+			audio = seeked;
+			voice.flush();
+			startReading(null, frame * format.getFrameSize(), true);
+			
+			remaining = (confirmedDuration < 0) ? -1 : confirmedDuration - (int)(frame * 10 / (long)format.getSampleRate());
+		}
+		
+		// Let the control pane know where we ended up (if we know how long the track is yet, that is)
+		if ( remaining >= 0 ) {
+			EventBus.fireEvent(new Event(EventType.DECK_POSITION_UPDATE, deckNum, remaining));
+		}
 	}
 	
 	// Return whether or not we're (supposed to be) playing
@@ -386,19 +715,17 @@ public class Deck implements Loadable {
 	// Clean up
 	public void cleanUp() {
 		closing = true;
-		reader.interrupt();
-		writer.interrupt();
+		PlayoutScheduler.remove(reader);
+		PlayoutScheduler.remove(writer);
+		MixNotifier.unregister(segueReached);
+		MixNotifier.unregister(segueStarted);
+		MixNotifier.unregister(fadedOut);
 		try {
 			if ( ringBuffer != null ) {
-				ringBuffer.getInputStream().close();
-				ringBuffer.getOutputStream().close();
-			}
-			if ( line != null ) {
-				line.close();
-			}
-			if ( audio != null ) {
-				audio.close();
+				ringBuffer.close();
 			}
+			MixEngine.getMaster().removeVoice(voice);
+			reader.detach();
 		}
 		catch (IOException e) {
 			// Shouldn't happen
@@ -416,9 +743,26 @@ public class Deck implements Loadable {
 	public void autoLoad() {
 		LibraryEntry nextTrack = Playlist.nextLoadableTentative();
 		
+		// If there is no tentative track to load, go with whatever random track the prefetcher already picked
+		if ( nextTrack == null ) {
+			nextTrack = Prefetcher.getRandomPick();
+		}
+		
+		// Failing that, pick something randomly ourselves
+		if ( nextTrack == null ) {
+			nextTrack = pickRandomTrack();
+		}
+		
+		DeckLoadRequest req = new DeckLoadRequest(nextTrack.getTitle(), nextTrack.getArtist(), nextTrack.getDuration(), nextTrack.getLibraryName(), LibraryManager.getLibraryForName(nextTrack.getLibraryName()).getPathInLibrary(nextTrack), deckNum);
+		EventBus.fireEvent(new Event(EventType.DECK_REQUEST_LOAD, req));
+	}
+	
+	// Pick a random, not-yet-played track from the SnP libraries
+	// I can see this leading to all kinds of fun, given I'm picking from a random library too!
+	protected static LibraryEntry pickRandomTrack() {
+		LibraryEntry nextTrack = null;
+		
 		while ( nextTrack == null ) {
-			// If there is no tentative track to load, pick something randomly
-			// I can see this leading to all kinds of fun, given I'm picking from a random library too!
 			List<Library> libList = LibraryManager.getSnPLibraries();
 			int chosenLibIndex = SDPConsole2.random.nextInt(libList.size());
 			try {
@@ -434,8 +778,7 @@ public class Deck implements Loadable {
 			}
 		}
 		
-		DeckLoadRequest req = new DeckLoadRequest(nextTrack.getTitle(), nextTrack.getArtist(), nextTrack.getDuration(), nextTrack.getLibraryName(), LibraryManager.getLibraryForName(nextTrack.getLibraryName()).getPathInLibrary(nextTrack), deckNum);
-		EventBus.fireEvent(new Event(EventType.DECK_REQUEST_LOAD, req));
+		return nextTrack;
 	}
 	
 	// Handle a load error
@@ -448,6 +791,69 @@ public class Deck implements Loadable {
 		}
 	}
 	
+	// Notify this deck that the writer found the ring buffer empty before EOF (i.e. the decoder fell behind)
+	protected void notifyStarved() {
+		starved = true;
+		
+		if ( Prefs.loadBoolean(Prefs.LOW_LATENCY) && ringBufferSec < MAX_BUFFER_SEC ) {
+			ringBufferSec = Math.min(ringBufferSec * 2, MAX_BUFFER_SEC);
+			ringBuffer.grow();
+			System.err.println("Deck " + deckNum + " starved - growing its ring buffer to " + ringBufferSec + " seconds");
+		}
+	}
+	
+	// Return where we are in the current track right now, in frames from the very start of the file (leading silence and all),
+	// or -1 if it hasn't started playing since it was loaded/cued/seeked (or it's stopped, and all of it has been heard)
+	// This goes by what's actually come out of the sound card, not by what's been decoded or mixed, so it's safe to show as-is
+	public long getPositionFrames() {
+		AudioInputStream audio = this.audio;
+		long heard = voice.getHeardFrames();
+		if ( audio == null || heard == -1 ) {
+			return -1;
+		}
+		
+		double ratio = audio.getFormat().getSampleRate() / MixEngine.getMaster().getFormat().getSampleRate();
+		return reader.getStartFrame() + (long)(heard * ratio);
+	}
+	
+	// Return the length of the current track in frames
+	// (If the decoder didn't know, this is an estimate going by the track's duration - or 0 if we don't know that yet either)
+	public long getTotalFrames() {
+		AudioInputStream audio = this.audio;
+		if ( audio == null ) {
+			return 0;
+		}
+		else if ( trackFrames != AudioSystem.NOT_SPECIFIED ) {
+			return trackFrames;
+		}
+		
+		return Math.max(0, (long)confirmedDuration * (long)audio.getFormat().getSampleRate() / 10);
+	}
+	
+	// Return the number of frames per second that the above are counted in
+	public float getFrameRate() {
+		AudioInputStream audio = this.audio;
+		return (audio == null) ? 0 : audio.getFormat().getSampleRate();
+	}
+	
+	// Return the time remaining in the current track (in tenths of seconds), going by getPositionFrames(),
+	// or -1 if the clock isn't running
+	public int getRemainingTenths() {
+		long position = getPositionFrames();
+		long total = getTotalFrames();
+		float rate = getFrameRate();
+		if ( position == -1 || total == 0 || rate == 0 ) {
+			return -1;
+		}
+		
+		return (int)Math.max(0, (total - position) * 10 / (long)rate);
+	}
+	
+	// Return this deck's underrun count and ring buffer fill level history
+	public PlayoutStats getStats() {
+		return stats;
+	}
+	
 	// Notify this deck that, after EOF, all buffered audio has played out
 	protected void notifyAudioPoof() {
 		playing = false;
@@ -0,0 +1,261 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * DeckReader: Decodes a deck's track into its ring buffer, a chunk at a time, on the
+ * playout scheduler's workers
+ */
+package com.stereodustparticles.console.deck;
+
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
+import com.stereodustparticles.console.event.Event;
+import com.stereodustparticles.console.event.EventBus;
+import com.stereodustparticles.console.event.EventType;
+
+public class DeckReader implements PlayoutJob {
+	
+	private volatile AudioInputStream audio = null;
+	private volatile boolean active = false; // Got a source, and haven't hit EOF on it yet
+	private Deck deck;
+	private volatile SampleRing ringBuffer;
+	private volatile int samplesPerSecond = 1;
+	private int frameSize = 1;
+	private RetainedIntro intro = null;
+	private final TrackProgress progress;
+	private volatile long startFrame = 0; // Where in the file the first frame written to the ring buffer came from
+	private final byte[] readBuffer = new byte[4096];
+	private final float[] samples = new float[readBuffer.length / 2]; // What readBuffer unpacks to
+	
+	// The decoder read happens without our lock held (so a slow one doesn't hold up a seek), which means the source can
+	// change out from under it - the generation goes up every time it does, so the step can tell what it read is stale
+	// A stream that gets swapped out mid-read isn't closed until the read's done with it
+	private int generation = 0;
+	private AudioInputStream reading = null;
+	private AudioInputStream closeAfterRead = null;
+	
+	// Constants
+	protected static final int SNP_WINDOW = 170; // tenths of seconds
+	protected static final float CUE_THRESHOLD = 0.01f;
+	
+	public DeckReader(Deck deck) {
+		this.deck = deck;
+		progress = new TrackProgress(deck::setSeguePoint, deck::clearSeguePoint, this::onCued);
+	}
+	
+	// Set the audio input stream to read from
+	// Also set the confirmed duration of the track (which we will perform further calculations on later) - this may be -1
+	// if the deck is still looking it up, in which case it'll tell us via setDuration() once it knows
+	// If intro is given, the start of the track (after the leading silence) gets captured into it
+	// If the stream starts partway into the track (i.e. it's a re-cue from a retained intro), skippedBytes says how far in
+	// If alreadyCued is set (i.e. we've just seeked), don't go looking for the end of the leading silence
+	// Whatever we were reading from before gets closed (once we're done with it)
+	public synchronized void setSource(AudioInputStream audio, int duration, RetainedIntro intro, long skippedBytes, boolean alreadyCued) {
+		AudioInputStream old = this.audio;
+		generation++;
+		this.audio = audio;
+		this.intro = intro;
+		
+		// Get info about the stream for use in calculating the current time position (for time display)
+		AudioFormat format = audio.getFormat();
+		progress.reset(format, duration, skippedBytes, alreadyCued);
+		samplesPerSecond = (int)format.getSampleRate() * format.getChannels();
+		frameSize = format.getFrameSize();
+		startFrame = skippedBytes / frameSize;
+		
+		ringBuffer = deck.getRingBuffer();
+		active = true;
+		
+		if ( old != null && old != audio ) {
+			try {
+				letGo(old);
+			}
+			catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	// Stop reading, and close whatever we were reading from (once we're done with it)
+	// Throws if the stream could be closed right away, and that didn't go well
+	public synchronized void detach() throws IOException {
+		AudioInputStream old = audio;
+		generation++;
+		audio = null;
+		active = false;
+		
+		if ( old != null ) {
+			letGo(old);
+		}
+	}
+	
+	// Close the given stream, unless a step is in the middle of reading it - then that step closes it on its way out
+	// Call this with our lock held
+	private void letGo(AudioInputStream old) throws IOException {
+		if ( old == reading ) {
+			closeAfterRead = old;
+		}
+		else {
+			old.close();
+		}
+	}
+	
+	// Ask for another go once there's room in the ring buffer for a whole chunk, by the time the deck would run dry
+	// Decks that aren't on the air can wait until everybody that is has plenty in hand
+	@Override
+	public long getDeadline(long now) {
+		SampleRing ring = ringBuffer;
+		if ( ! active || ring == null || ring.getSpaceLeft() < samples.length ) {
+			return IDLE;
+		}
+		
+		long deadline = now + (long)ring.getAvailable() * 1000000000L / samplesPerSecond;
+		return deck.isPlaying() ? deadline : deadline + PlayoutScheduler.OFF_AIR_SLACK_NANOS;
+	}
+	
+	// There's only room in the ring once the writer's taken something out of it, and the scheduler hears about that
+	@Override
+	public long getRecheckTime(long now) {
+		return IDLE;
+	}
+	
+	@Override
+	public boolean mayBlock() {
+		return true;
+	}
+	
+	// Decode one chunk into the ring buffer
+	// (The scheduler never runs this on two workers at once, so readBuffer is ours alone even outside the lock)
+	@Override
+	public boolean step() {
+		AudioInputStream audio;
+		int generation;
+		synchronized (this) {
+			// If the deck is closing, or there's nothing to read from (or room to put it), there's nothing to do
+			if ( ! active || deck.isClosing() || ringBuffer.getSpaceLeft() < samples.length ) {
+				return false;
+			}
+			
+			audio = this.audio;
+			generation = this.generation;
+			reading = audio;
+		}
+		
+		// The watchdog keeps an eye on how long this takes (e.g. if the file's on a network share that went away)
+		PlayoutStats stats = deck.getStats();
+		stats.beginRead(System.nanoTime());
+		int nBytesRead;
+		IOException readError = null;
+		try {
+			nBytesRead = audio.read(readBuffer, 0, readBuffer.length);
+		}
+		catch (IOException e) {
+			nBytesRead = 0;
+			readError = e;
+		}
+		finally {
+			stats.endRead(System.nanoTime());
+		}
+		
+		synchronized (this) {
+			reading = null;
+			
+			// If we got seeked/reloaded while we were reading, what we got belongs to the old stream - drop it (and the stream)
+			if ( generation != this.generation ) {
+				if ( closeAfterRead != null ) {
+					try {
+						closeAfterRead.close();
+					}
+					catch (IOException e) {
+						e.printStackTrace();
+					}
+					closeAfterRead = null;
+				}
+				return true;
+			}
+			
+			if ( readError != null ) {
+				readError.printStackTrace();
+				return false;
+			}
+			
+			return process(audio, nBytesRead);
+		}
+	}
+	
+	// Deal with a chunk fresh out of the decoder
+	// Call this with our lock held
+	private boolean process(AudioInputStream audio, int nBytesRead) {
+		try {
+			// If we got EOF, sit tight until a new file gets loaded
+			if ( nBytesRead == -1 ) {
+				if ( intro != null ) {
+					intro.markEOF();
+				}
+				deck.notifyEOF();
+				active = false;
+				return true;
+			}
+			
+			// The decoder doesn't have anything for us just yet
+			else if ( nBytesRead == 0 ) {
+				return false;
+			}
+			
+			// Write the data we got into the ring buffer, assuming we've reached music
+			// It gets unpacked right here, once - everything from here to the mix works on the floats
+			// Skip the leading silence, keep count of where we are, and do Stream 'n' Poop(TM) stuff if we have to
+			// (before the audio goes into the ring buffer, so the segue point is set before the writer can get there)
+			int nSamples = AudioKungFu.unpack(readBuffer, nBytesRead, audio.getFormat(), samples);
+			if ( ! progress.accept(nBytesRead, samples, nSamples, Decks.snpIsEnabled()) ) {
+				return true;
+			}
+			
+			// Hang on to the start of the track, so we can re-cue without going back to the decoder
+			if ( intro != null ) {
+				intro.capture(readBuffer, nBytesRead);
+			}
+			
+			// We checked for room up top, and nobody else writes to the ring, so there's still room now
+			ringBuffer.write(samples, 0, nSamples);
+			return true;
+		}
+		catch (IOException e) {
+			// The ring only gets closed out from under us once the deck's shutting down, and then there's nothing to say
+			if ( ! deck.isClosing() ) {
+				e.printStackTrace();
+			}
+			return false;
+		}
+	}
+	
+	// Called (from process(), so with our lock held) once the leading silence is over
+	private void onCued() {
+		long leadInBytes = progress.getLeadInBytes();
+		if ( intro != null ) {
+			intro.setLeadIn(leadInBytes);
+		}
+		startFrame += leadInBytes / frameSize;
+		
+		// Fire a Deck Ready event
+		deck.notifyReady();
+		EventBus.fireEvent(new Event(EventType.DECK_READY, deck.getNumber(), progress.getRemainingTime()));
+	}
+	
+	// Set the duration of the track (in tenths of seconds), once the deck has managed to look it up
+	protected void setDuration(int duration) {
+		progress.setDuration(duration);
+	}
+	
+	// Return where in the file (in frames from the very start) the audio going into the ring buffer picks up
+	// (i.e. wherever we were told to start, plus whatever leading silence got skipped)
+	protected long getStartFrame() {
+		return startFrame;
+	}
+}
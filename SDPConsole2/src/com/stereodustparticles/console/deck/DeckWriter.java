@@ -0,0 +1,278 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * DeckWriter: Moves audio from a deck's ring buffer out to its voice in the mix
+ * engine (and starts and stops the voice), a chunk at a time, on the playout
+ * scheduler's workers
+ */
+package com.stereodustparticles.console.deck;
+
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+
+import com.stereodustparticles.console.Utils;
+import com.stereodustparticles.console.event.Event;
+import com.stereodustparticles.console.event.EventBus;
+import com.stereodustparticles.console.event.EventType;
+import com.stereodustparticles.console.pref.Prefs;
+
+public class DeckWriter implements PlayoutJob {
+	private volatile StreamVoice voice = null;
+	private Deck deck;
+	private int framesPerTenth;
+	private int frameCounter;
+	private int channels;
+	private volatile boolean eofReached = false;
+	private volatile SampleRing ringBuffer;
+	private volatile boolean rebinding = false;
+	private boolean primed = false;
+	private volatile boolean running = false; // We've started the voice, and haven't stopped it yet
+	private volatile boolean stopping = false; // We're letting the voice play out what it's got before stopping it
+	private volatile boolean priming = false; // Keeping the stopped voice topped up (i.e. primed play mode)
+	private volatile float mixRate = 1;
+	private final float[] playBuffer = new float[2048];
+	
+	public DeckWriter(Deck deck) {
+		this.deck = deck;
+	}
+	
+	// Set the voice that will be written to
+	public synchronized void setVoice(StreamVoice voice) {
+		this.voice = voice;
+		
+		// Get info about the stream, so we know how often to take a look at the ring buffer
+		AudioFormat format = voice.getFormat();		
+		framesPerTenth = (int)format.getSampleRate() / 10;
+		channels = format.getChannels();
+		mixRate = MixEngine.getMaster().getFormat().getSampleRate();
+		
+		frameCounter = 0;
+		eofReached = false;
+		primed = false;
+		priming = Prefs.loadBoolean(Prefs.PRIMED_PLAY);
+		
+		ringBuffer = deck.getRingBuffer();
+		
+		// If we were holding off for a seek, we can carry on now
+		rebinding = false;
+		PlayoutScheduler.wake();
+	}
+	
+	// Tell this writer to hold off until setVoice() is called with a new ring buffer
+	// Used when seeking (since we may well be playing at the time), and before anything else that swaps the ring buffer out
+	// Once this returns, we're guaranteed not to be in the middle of pulling audio out of the old one
+	protected synchronized void beginRebind() {
+		rebinding = true;
+	}
+	
+	// Ask for another go by the time the voice runs dry (which is never far off, since the voice only holds a few blocks)
+	// Starting and stopping can't wait at all
+	@Override
+	public long getDeadline(long now) {
+		StreamVoice voice = this.voice;
+		SampleRing ring = ringBuffer;
+		if ( rebinding || voice == null || ring == null ) {
+			return IDLE;
+		}
+		
+		boolean playing = deck.isPlaying();
+		if ( running && (stopping || ! playing) ) {
+			return (! stopping || voice.isDrained()) ? now : IDLE;
+		}
+		else if ( ! running && playing ) {
+			return now;
+		}
+		
+		if ( running && eofReached && ring.getAvailable() == 0 ) {
+			return now;
+		}
+		else if ( ! running && (! priming || ring.getAvailable() == 0) ) {
+			return IDLE;
+		}
+		else if ( voice.getWritableFrames() == 0 ) {
+			return IDLE;
+		}
+		
+		long deadline = now + (long)(voice.getBufferedFrames() * 1000000000.0 / mixRate);
+		return running ? deadline : deadline + PlayoutScheduler.OFF_AIR_SLACK_NANOS;
+	}
+	
+	// The voice only ever empties out when a block gets mixed, and the mix thread tells the scheduler every time
+	@Override
+	public long getRecheckTime(long now) {
+		return IDLE;
+	}
+	
+	// We only ever shuffle what's already in the ring buffer, so there's nothing to wait on
+	@Override
+	public boolean mayBlock() {
+		return false;
+	}
+	
+	// Do whichever of the above is called for
+	@Override
+	public synchronized boolean step() {
+		// Don't touch the ring buffer while it's being swapped out from under us
+		if ( rebinding || voice == null || deck.isClosing() ) {
+			return false;
+		}
+		
+		try {
+			boolean playing = deck.isPlaying();
+			
+			// Once we've started stopping, see it through (even if PLAY got pressed again in the meantime)
+			if ( running && (stopping || ! playing) ) {
+				return stop();
+			}
+			else if ( ! running ) {
+				if ( playing ) {
+					start();
+					return true;
+				}
+				
+				// In primed mode, we keep the (stopped) voice topped up with the start of whatever's cued in the meantime,
+				// so that pressing PLAY only has to start the voice
+				return priming && prime() > 0;
+			}
+			
+			return transfer();
+		}
+		catch (IOException e) {
+			// If the ring buffer got closed for a seek, that's expected
+			if ( ! rebinding ) {
+				// TODO figure out what lands us here
+				e.printStackTrace();
+			}
+			return false;
+		}
+	}
+	
+	// Start the voice
+	private void start() {
+		voice.start();
+		running = true;
+		deck.getStats().resetWriteClock();
+		
+		// Fire a deck playback started event
+		// (unless we're being held for a segue, in which case the deck fires it once we're let go)
+		if ( ! voice.isHeld() ) {
+			EventBus.fireEvent(new Event(EventType.DECK_PLAYBACK_STARTED, deck.getNumber()));
+		}
+	}
+	
+	// Let the voice play out whatever it's got, then stop it
+	// Return false if it's still playing out
+	private boolean stop() {
+		if ( ! stopping ) {
+			voice.beginDrain();
+			stopping = true;
+		}
+		if ( ! voice.isDrained() ) {
+			return false;
+		}
+		
+		voice.stop();
+		running = false;
+		stopping = false;
+		priming = Prefs.loadBoolean(Prefs.PRIMED_PLAY);
+		
+		// Fire the deck stopped event
+		EventBus.fireEvent(new Event(EventType.DECK_PLAYBACK_STOPPED, deck.getNumber()));
+		
+		// If Stream 'n' Poop(TM) is running, load the next track (if there is one)
+		if ( Decks.snpIsEnabled() ) {
+			// If we never made it to a segue point (or got stopped early), trip Stream 'n' Poop(TM) now
+			if ( ! deck.isSegueDone() ) {
+				deck.notifySegueDone();
+				
+				EventBus.fireEvent(new Event(EventType.SNP_TRIGGER, deck.getNumber()));
+			}
+			
+			Utils.runInBackground(() -> {
+				// Wait a moment so that SnP doesn't load next tentative before the upcoming track is marked played
+				// TODO this solution is really lame
+				try {
+					Thread.sleep(500);
+				}
+				catch (InterruptedException e) {
+					// This shouldn't happen
+					e.printStackTrace();
+				}
+				
+				deck.autoLoad();
+			});
+		}
+		
+		return true;
+	}
+	
+	// Move whatever the voice has room for out of the ring buffer, while we're playing
+	// Return false if there was nothing to move
+	private boolean transfer() throws IOException {
+		int available = ringBuffer.getAvailable();
+		if ( eofReached && available == 0 ) {
+			deck.notifyAudioPoof();
+			return true;
+		}
+		
+		// If the ring buffer ran dry before EOF, the decoder isn't keeping up
+		if ( available == 0 ) {
+			if ( primed ) {
+				primed = false;
+				deck.notifyStarved();
+			}
+			return false;
+		}
+		primed = true;
+		
+		if ( prime() <= 0 ) {
+			return false;
+		}
+		deck.getStats().recordWrite(System.nanoTime());
+		
+		// Every tenth of a second's worth, note how full the ring buffer is
+		// (The time display goes by the deck's clock, not by us - see Deck.getPositionFrames())
+		if ( frameCounter >= framesPerTenth ) {
+			frameCounter -= framesPerTenth;
+			
+			deck.getStats().recordFill((float)ringBuffer.getAvailable() / ringBuffer.getSize());
+		}
+		
+		return true;
+	}
+	
+	// Move whatever the voice has room for out of the ring buffer (without blocking)
+	// Return the number of frames moved, 0 if the ring buffer's empty for now, or -1 if there's no point trying again for a bit
+	private int prime() throws IOException {
+		if ( voice.getFormat() == null ) {
+			return -1;
+		}
+		
+		int room = voice.getWritableFrames();
+		if ( room == 0 ) {
+			return -1;
+		}
+		
+		int n = Math.min(Math.min(ringBuffer.getAvailable() / channels, room), playBuffer.length / channels);
+		if ( n == 0 ) {
+			return eofReached ? -1 : 0;
+		}
+		
+		ringBuffer.read(playBuffer, 0, n * channels);
+		
+		// There's room for all of it
+		n = voice.write(playBuffer, 0, n);
+		frameCounter += n;
+		return n;
+	}
+	
+	// Notify this writer that EOF has been reached by the reader
+	protected void notifyEOF() {
+		eofReached = true;
+	}
+}
@@ -4,91 +4,235 @@
  * 
  * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
  * 
- * Decks: Houses the actual instances of the Deck class
+ * Decks: Houses the actual instances of the Deck class, and routes deck events to them
  */
 package com.stereodustparticles.console.deck;
 
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+import com.stereodustparticles.console.Utils;
+import com.stereodustparticles.console.event.Event;
 import com.stereodustparticles.console.event.EventBus;
 import com.stereodustparticles.console.event.EventType;
 import com.stereodustparticles.console.multi.MultiConsole;
+import com.stereodustparticles.console.pref.Prefs;
 
 public class Decks {
-	public static Deck deck1 = null;
-	public static Deck deck2 = null;
+	// Deck n lives at index n - 1
+	private static Deck[] decks = new Deck[0];
+	private static int deckCount = 0;
 	
 	private static boolean snpEnabled = false;
+	private static TickPump tickPump = null;
+	private static PlayoutWatchdog watchdog = null;
 	
 	// These booleans only operate in the Slave mode
-	private static boolean deck1Playing = false;
-	private static boolean deck2Playing = false;
+	private static boolean[] decksPlaying = new boolean[0];
 	
 	public static void init() {
+		deckCount = Prefs.loadInt(Prefs.DECK_COUNT);
+		
 		// Don't initialize backend in MC Slave mode
 		if ( MultiConsole.getDeckMode() != 'S' ) {
-			deck1 = new Deck(1);
-			deck2 = new Deck(2);
+			decks = new Deck[deckCount];
+			for ( int i = 0; i < deckCount; i++ ) {
+				decks[i] = new Deck(i + 1);
+			}
+			tickPump = new TickPump(decks);
+			watchdog = new PlayoutWatchdog(decks);
+			
+			// Route the UI's deck events straight to the deck they're meant for, rather than having every deck
+			// listen for everything and throw out what isn't theirs
+			EventBus.registerListener(EventType.DECK_PLAY_PRESSED, (e) -> {
+				Deck target = routeTo(e, ((Integer)e.getParams()[0]).intValue());
+				if ( target != null ) {
+					target.onPlayPressed();
+				}
+			});
+			
+			EventBus.registerListener(EventType.DECK_CUE_PRESSED, (e) -> {
+				Deck target = routeTo(e, ((Integer)e.getParams()[0]).intValue());
+				if ( target != null ) {
+					target.cue();
+				}
+			});
+			
+			EventBus.registerListener(EventType.DECK_REQUEST_LOAD, (e) -> {
+				DeckLoadRequest req = (DeckLoadRequest)e.getParams()[0];
+				Deck target = routeTo(e, req.getDeckNum());
+				if ( target != null ) {
+					target.onLoadRequest(req);
+				}
+			});
+			
+			EventBus.registerListener(EventType.DECK_VOLUME_ADJUST, (e) -> {
+				Deck target = routeTo(e, ((Integer)e.getParams()[0]).intValue());
+				if ( target != null ) {
+					float newVolume = ((Float)e.getParams()[1]).floatValue();
+					target.onVolumeAdjust(newVolume);
+				}
+			});
+			
+			EventBus.registerListener(EventType.DECK_SEEK, (e) -> {
+				Deck target = routeTo(e, ((Integer)e.getParams()[0]).intValue());
+				if ( target != null ) {
+					target.onSeekRequest(((Integer)e.getParams()[1]).intValue());
+				}
+			});
+			
+			// Stream 'n' Poop(TM) hands off to the next deck in line
+			EventBus.registerListener(EventType.SNP_TRIGGER, (e) -> {
+				if ( snpIsEnabled() ) { // This check may not strictly be necessary, but it may prevent some stupidity somewhere...
+					int deckOrig = ((Integer)e.getParams()[0]).intValue();
+					Deck next = get(nextDeckNum(deckOrig));
+					if ( next != null && next.getNumber() != deckOrig ) {
+						next.onSNPTrigger();
+					}
+				}
+			});
 		}
 		else {
+			decksPlaying = new boolean[deckCount];
+			
 			EventBus.registerListener(EventType.DECK_PLAYBACK_STARTED, (e) -> {
 				int deckNum = ((Integer)e.getParams()[0]).intValue();
 				
-				if ( deckNum == 1 ) {
-					deck1Playing = true;
-				}
-				
-				else if ( deckNum == 2 ) {
-					deck2Playing = true;
+				if ( deckNum >= 1 && deckNum <= deckCount ) {
+					decksPlaying[deckNum - 1] = true;
 				}
 			});
 			
 			EventBus.registerListener(EventType.DECK_PLAYBACK_STOPPED, (e) -> {
 				int deckNum = ((Integer)e.getParams()[0]).intValue();
 				
-				if ( deckNum == 1 ) {
-					deck1Playing = false;
-				}
-				
-				else if ( deckNum == 2 ) {
-					deck2Playing = false;
+				if ( deckNum >= 1 && deckNum <= deckCount ) {
+					decksPlaying[deckNum - 1] = false;
 				}
 			});
 		}
 	}
 	
-	public static void cleanUp() {
-		if ( deck1 != null ) {
-			deck1.cleanUp();
-		}
-		if ( deck2 != null ) {
-			deck2.cleanUp();
+	// Find the deck an event is meant for, or return null if it isn't ours to act on
+	private static Deck routeTo(Event ev, int deckNum) {
+		if ( ! eventMatters(ev) ) {
+			return null;
 		}
+		
+		return get(deckNum);
 	}
 	
-	public static boolean deck1IsPlaying() {
-		if ( MultiConsole.getDeckMode() == 'S' ) {
-			return deck1Playing;
+	// Check if the specified event applies to our decks
+	private static boolean eventMatters(Event ev) {
+		char mcMode = MultiConsole.getDeckMode();
+		if ( mcMode == 'M' ) {
+			return true;
+		}
+		else if ( mcMode == 'A' && ev.getOriginator().equals(Prefs.loadString(Prefs.MC_IDENTITY)) ) {
+			return true;
 		}
 		else {
-			return deck1.isPlaying();
+			return false;
+		}
+	}
+	
+	public static void cleanUp() {
+		if ( tickPump != null ) {
+			tickPump.interrupt();
+		}
+		if ( watchdog != null ) {
+			watchdog.interrupt();
 		}
+		Prefetcher.discard();
+		for ( Deck deck : decks ) {
+			deck.cleanUp();
+		}
+	}
+	
+	// Return the deck with the given number (starting from 1), or null if there is no such deck (or we're in slave mode)
+	public static Deck get(int deckNum) {
+		if ( deckNum < 1 || deckNum > decks.length ) {
+			return null;
+		}
+		
+		return decks[deckNum - 1];
+	}
+	
+	// Return the number of decks
+	public static int getCount() {
+		return deckCount;
 	}
 	
-	public static boolean deck2IsPlaying() {
+	// Return the number of the deck that follows the given one (wrapping around at the end)
+	public static int nextDeckNum(int deckNum) {
+		return (deckNum % deckCount) + 1;
+	}
+	
+	public static boolean isPlaying(int deckNum) {
 		if ( MultiConsole.getDeckMode() == 'S' ) {
-			return deck2Playing;
+			return deckNum >= 1 && deckNum <= deckCount && decksPlaying[deckNum - 1];
 		}
 		else {
-			return deck2.isPlaying();
+			Deck deck = get(deckNum);
+			return deck != null && deck.isPlaying();
 		}
 	}
 	
 	// Enable/disable Stream 'n' Poop(TM)
 	public static void setSNPEnabled(boolean enable) {
 		snpEnabled = enable;
+		
+		// Any deck that's armed for a segue needs to stand down, and there's nothing left to prefetch for
+		if ( ! enable ) {
+			for ( Deck deck : decks ) {
+				deck.disarm();
+			}
+			Prefetcher.discard();
+		}
+		// Otherwise, get the first track ready
+		else {
+			Utils.runInBackground(() -> Prefetcher.prefetchNext());
+		}
 	}
 	
 	// Return the current state of Stream 'n' Poop(TM)
 	public static boolean snpIsEnabled() {
 		return snpEnabled;
 	}
+	
+	// Return a rundown of how playout is holding up (underruns and PLAY latency for each deck, plus the output line), for display
+	public static String getPlayoutStatus() {
+		if ( MultiConsole.getDeckMode() == 'S' ) {
+			return "The decks are being played on another console.";
+		}
+		
+		String stat = "";
+		for ( Deck deck : decks ) {
+			PlayoutStats stats = deck.getStats();
+			stat += "Deck " + deck.getNumber() + ": " + stats.getUnderruns() + " underruns";
+			if ( stats.getLastStartLatency() >= 0 ) {
+				stat += String.format(", PLAY latency %.1f ms (average %.1f ms, worst %.1f ms)", stats.getLastStartLatency(), stats.getAverageStartLatency(), stats.getMaxStartLatency());
+			}
+			stat += "\n  Write jitter: " + stats.getWriteJitter().summarize();
+			stat += "\n  Decoder reads: " + stats.getReadLatency().summarize();
+			stat += "\n";
+		}
+		
+		MixEngine master = MixEngine.getMaster();
+		if ( master != null ) {
+			stat += "\nOutput line: " + master.getLineStats().getUnderruns() + " underruns";
+			if ( master.getLine() != null ) {
+				stat += " (going to: " + master.getLine().getDescription() + ")";
+			}
+			stat += "\n  Write jitter: " + master.getLineStats().getWriteJitter().summarize();
+		}
+		
+		// Keep tabs on the garbage collector too, since a long enough pause will starve everything at once
+		stat += "\n\nAudio buffers: " + AudioPool.summarize();
+		for ( GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans() ) {
+			stat += "\nGC (" + gc.getName() + "): " + gc.getCollectionCount() + " pauses, " + gc.getCollectionTime() + " ms total";
+		}
+		
+		return stat;
+	}
 }
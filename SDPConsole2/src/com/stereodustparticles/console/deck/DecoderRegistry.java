@@ -0,0 +1,162 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * DecoderRegistry: Stands in for AudioSystem.getAudioInputStream(), which makes every
+ * installed decoder take a crack at every file until one of them bites
+ * We figure out what kind of file it is from its first few bytes (or its extension),
+ * and go straight to whichever decoder handled that kind of file last time
+ */
+package com.stereodustparticles.console.deck;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import javax.sound.sampled.spi.AudioFileReader;
+
+import org.jflac.sound.spi.FlacAudioFileReader;
+
+import javazoom.spi.mpeg.sampled.file.MpegAudioFileReader;
+import javazoom.spi.vorbis.sampled.file.VorbisAudioFileReader;
+
+public class DecoderRegistry {
+	// Which decoder worked for each kind of file (keyed by what identify() comes up with)
+	private static final Map<String, AudioFileReader> winners = new ConcurrentHashMap<String, AudioFileReader>();
+	
+	// Every installed decoder, in the order we try them when we don't know any better
+	private static List<AudioFileReader> providers = null;
+	
+	static {
+		// These are a safe bet, so there's no need to learn them the hard way
+		winners.put("MP3", new MpegAudioFileReader());
+		winners.put("FLAC", new FlacAudioFileReader());
+		winners.put("OGG", new VorbisAudioFileReader());
+	}
+	
+	// Open an (encoded) audio stream of the given file, a la AudioSystem.getAudioInputStream()
+	public static AudioInputStream getAudioInputStream(URL file) throws UnsupportedAudioFileException, IOException {
+		String kind = identify(file);
+		
+		AudioFileReader known = winners.get(kind);
+		if ( known != null ) {
+			try {
+				return known.getAudioInputStream(file);
+			}
+			catch (UnsupportedAudioFileException e) {
+				// Something that looked the same turned out not to be - go ask around
+			}
+		}
+		
+		for ( AudioFileReader reader : getProviders() ) {
+			if ( known != null && reader.getClass() == known.getClass() ) {
+				continue;
+			}
+			
+			try {
+				AudioInputStream in = reader.getAudioInputStream(file);
+				
+				// No name means we've no idea what it was, so there's nothing to learn for next time
+				// (Otherwise every odd file with no extension would go straight to whichever decoder took the last one)
+				if ( ! kind.isEmpty() ) {
+					winners.put(kind, reader);
+				}
+				return in;
+			}
+			catch (UnsupportedAudioFileException e) {
+				continue;
+			}
+		}
+		
+		throw new UnsupportedAudioFileException("None of the installed decoders could make heads or tails of " + file);
+	}
+	
+	// Figure out what kind of file this is
+	// Return a name for the kind of file (going by its first few bytes), or failing that, its extension
+	private static String identify(URL file) {
+		String path = file.getPath();
+		int dot = path.lastIndexOf('.');
+		String ext = (dot == -1 || dot < path.lastIndexOf('/')) ? "" : path.substring(dot).toLowerCase();
+		
+		// Only peek at local files - anything else, we'd be downloading twice
+		if ( ! "file".equals(file.getProtocol()) ) {
+			return ext;
+		}
+		
+		byte[] magic = new byte[12];
+		int n = 0;
+		File f = SeekIndex.toFile(file);
+		try ( InputStream in = new FileInputStream(f) ) {
+			int got;
+			while ( n < magic.length && (got = in.read(magic, n, magic.length - n)) != -1 ) {
+				n += got;
+			}
+		}
+		catch (IOException e) {
+			return ext;
+		}
+		if ( n < magic.length ) {
+			return ext;
+		}
+		
+		String head = new String(magic, 0, 4, StandardCharsets.ISO_8859_1);
+		String form = new String(magic, 8, 4, StandardCharsets.ISO_8859_1);
+		if ( head.equals("fLaC") ) {
+			return "FLAC";
+		}
+		else if ( head.equals("OggS") ) {
+			return "OGG";
+		}
+		else if ( head.startsWith("ID3") || ((magic[0] & 0xFF) == 0xFF && (magic[1] & 0xE0) == 0xE0) ) {
+			return "MP3";
+		}
+		else if ( head.equals("RIFF") && form.equals("WAVE") ) {
+			return "WAV";
+		}
+		else if ( head.equals("FORM") && (form.equals("AIFF") || form.equals("AIFC")) ) {
+			return "AIFF";
+		}
+		else if ( head.equals(".snd") ) {
+			return "AU";
+		}
+		else if ( new String(magic, 4, 4, StandardCharsets.ISO_8859_1).equals("ftyp") ) {
+			return "MP4";
+		}
+		
+		return ext;
+	}
+	
+	// Return all of the installed decoders
+	// The MP3 decoder goes last, since it's been known to claim files that aren't MP3s at all
+	private static synchronized List<AudioFileReader> getProviders() {
+		if ( providers == null ) {
+			List<AudioFileReader> list = new ArrayList<AudioFileReader>();
+			List<AudioFileReader> greedy = new ArrayList<AudioFileReader>();
+			for ( AudioFileReader reader : ServiceLoader.load(AudioFileReader.class) ) {
+				if ( reader instanceof MpegAudioFileReader ) {
+					greedy.add(reader);
+				}
+				else {
+					list.add(reader);
+				}
+			}
+			list.addAll(greedy);
+			providers = list;
+		}
+		
+		return providers;
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * FileOutput: Writes the mix to a file (WAV or FLAC, going by the extension) instead
+ * of the sound card, keeping time the same way VirtualOutput does
+ */
+package com.stereodustparticles.console.deck;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+
+public class FileOutput extends VirtualOutput {
+	private final File dest;
+	private final AudioFileWriter writer;
+	private boolean failed = false;
+	
+	public FileOutput(File dest, AudioFormat format, int bufferSize, boolean flatOut) throws IOException {
+		super(format, bufferSize, flatOut);
+		this.dest = dest;
+		writer = AudioFileWriter.open(dest, format);
+	}
+	
+	@Override
+	protected void consume(byte[] b, int off, int len) {
+		if ( failed ) {
+			return;
+		}
+		
+		try {
+			writer.write(b, off, len);
+		}
+		catch (IOException e) {
+			// Keep the clock going, so playout carries on either way - just don't spam the console about it
+			e.printStackTrace();
+			failed = true;
+		}
+	}
+	
+	@Override
+	public void close() {
+		try {
+			writer.close();
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	@Override
+	public String getDescription() {
+		return (failed ? "File (failed writing to " : "File (") + dest + ")";
+	}
+}
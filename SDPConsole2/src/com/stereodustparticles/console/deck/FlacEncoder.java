@@ -0,0 +1,386 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * FlacEncoder: Encodes 16-bit PCM audio into FLAC frames as it comes
+ * (jflac only decodes, so this is a bare-bones encoder of our own: fixed
+ * predictors and Rice-coded residuals, which gets most of the way there)
+ */
+package com.stereodustparticles.console.deck;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+
+import javax.sound.sampled.AudioFormat;
+
+import com.stereodustparticles.console.SDPConsole2;
+
+public class FlacEncoder {
+	// Gets each frame as soon as it's encoded
+	// The frame is only good until the call returns, since the buffer gets reused
+	public interface FrameHandler {
+		public void onFrame(byte[] frame, int len, int samples) throws IOException;
+	}
+	
+	private static final int BLOCK_SIZE = 4096;
+	private static final int BITS_PER_SAMPLE = 16;
+	private static final int MAX_FIXED_ORDER = 4;
+	private static final int MAX_RICE_PARAM = 14; // 15 is the escape code
+	
+	// Metadata block types
+	public static final int METADATA_STREAMINFO = 0;
+	public static final int METADATA_VORBIS_COMMENT = 4;
+	
+	private final FrameHandler handler;
+	private final int channels;
+	private final int sampleRate;
+	
+	// Samples waiting to fill up a block, one array per channel
+	private final int[][] block;
+	private int blockFill = 0;
+	
+	// Scratch space for encoding
+	private final int[] residual = new int[BLOCK_SIZE];
+	private final BitWriter bits = new BitWriter();
+	
+	private long frameNumber = 0;
+	private long totalSamples = 0;
+	private int minFrameSize = Integer.MAX_VALUE;
+	private int maxFrameSize = 0;
+	
+	public FlacEncoder(AudioFormat format, FrameHandler handler) {
+		this.handler = handler;
+		channels = format.getChannels();
+		sampleRate = (int)format.getSampleRate();
+		block = new int[channels][BLOCK_SIZE];
+	}
+	
+	// Return a metadata block header, for a block of the given type and length
+	public static byte[] metadataHeader(int type, int length, boolean last) {
+		return new byte[] { (byte)((last ? 0x80 : 0) | type), (byte)(length >> 16), (byte)(length >> 8), (byte)length };
+	}
+	
+	// Build a VORBIS_COMMENT block (minus the header) with the given comments (in "NAME=value" form)
+	// Some decoders (jflac's SPI among them) choke if STREAMINFO is the last metadata block, so this is always worth tacking on
+	public static byte[] vorbisComment(String... comments) {
+		try {
+			ByteArrayOutputStream ret = new ByteArrayOutputStream();
+			writeCommentString(ret, ("SDP Mooler Caster Console v" + SDPConsole2.PROG_VERSION).getBytes("UTF-8"));
+			writeLittleEndian(ret, comments.length);
+			for ( String comment : comments ) {
+				writeCommentString(ret, comment.getBytes("UTF-8"));
+			}
+			return ret.toByteArray();
+		}
+		catch (UnsupportedEncodingException e) {
+			// Not gonna happen - UTF-8 is always there
+			throw new RuntimeException(e);
+		}
+	}
+	
+	// Vorbis comments are length-prefixed, and (unlike everything else in FLAC) little-endian
+	private static void writeCommentString(ByteArrayOutputStream out, byte[] str) {
+		writeLittleEndian(out, str.length);
+		out.write(str, 0, str.length);
+	}
+	
+	private static void writeLittleEndian(ByteArrayOutputStream out, int value) {
+		out.write(value);
+		out.write(value >> 8);
+		out.write(value >> 16);
+		out.write(value >> 24);
+	}
+	
+	// Build the STREAMINFO block (minus the header) from what we know so far
+	// Before any frames are encoded, the sizes and sample count are all zero, meaning "unknown" (which is what a stream wants)
+	public byte[] getStreamInfo() {
+		BitWriter info = new BitWriter();
+		info.write(BLOCK_SIZE, 16);
+		info.write(BLOCK_SIZE, 16);
+		info.write(maxFrameSize == 0 ? 0 : minFrameSize, 24);
+		info.write(maxFrameSize, 24);
+		info.write(sampleRate, 20);
+		info.write(channels - 1, 3);
+		info.write(BITS_PER_SAMPLE - 1, 5);
+		info.write((int)(totalSamples >>> 32) & 0xF, 4);
+		info.write((int)totalSamples, 32);
+		
+		// No MD5 (all zeroes means "not computed")
+		for ( int i = 0; i < 4; i++ ) {
+			info.write(0, 32);
+		}
+		
+		return info.toByteArray();
+	}
+	
+	// Encode some whole frames of audio, handing off each FLAC frame as it fills up
+	public void write(byte[] pcm, int off, int len) throws IOException {
+		int frameSize = channels * 2;
+		for ( int i = off; i + frameSize <= off + len; i += frameSize ) {
+			for ( int c = 0; c < channels; c++ ) {
+				block[c][blockFill] = (short)((pcm[i + c * 2 + 1] << 8) | (pcm[i + c * 2] & 0xFF));
+			}
+			
+			if ( ++blockFill == BLOCK_SIZE ) {
+				writeFrame();
+			}
+		}
+	}
+	
+	// Encode whatever's left over as a final (short) frame
+	public void finish() throws IOException {
+		if ( blockFill > 0 ) {
+			writeFrame();
+		}
+	}
+	
+	// Encode whatever's in the block as one frame
+	private void writeFrame() throws IOException {
+		int n = blockFill;
+		bits.reset();
+		
+		// Frame header
+		bits.write(0x3FFE, 14); // Sync code
+		bits.write(0, 1); // Reserved
+		bits.write(0, 1); // Fixed block size
+		bits.write(0x7, 4); // Block size is in a 16-bit field at the end of the header
+		bits.write(0x0, 4); // Sample rate is in STREAMINFO
+		bits.write(channels - 1, 4); // Independent channels
+		bits.write(0x4, 3); // 16 bits per sample
+		bits.write(0, 1); // Reserved
+		writeUTF8(frameNumber);
+		bits.write(n - 1, 16);
+		bits.write(crc8(bits.getBuffer(), bits.getByteCount()), 8);
+		
+		// One subframe per channel
+		for ( int c = 0; c < channels; c++ ) {
+			writeSubframe(block[c], n);
+		}
+		
+		// Pad to a byte boundary, then the footer
+		bits.alignToByte();
+		bits.write(crc16(bits.getBuffer(), bits.getByteCount()), 16);
+		
+		int frameBytes = bits.getByteCount();
+		handler.onFrame(bits.getBuffer(), frameBytes, n);
+		
+		minFrameSize = Math.min(minFrameSize, frameBytes);
+		maxFrameSize = Math.max(maxFrameSize, frameBytes);
+		totalSamples += n;
+		frameNumber++;
+		blockFill = 0;
+	}
+	
+	// Encode one channel of the block, with whichever fixed predictor makes for the smallest residual
+	private void writeSubframe(int[] samples, int n) {
+		// A block of all the same sample is easy
+		boolean constant = true;
+		for ( int i = 1; i < n && constant; i++ ) {
+			constant = samples[i] == samples[0];
+		}
+		if ( constant ) {
+			bits.write(0, 1);
+			bits.write(0x00, 6);
+			bits.write(0, 1);
+			bits.write(samples[0], BITS_PER_SAMPLE);
+			return;
+		}
+		
+		// Pick the predictor order with the smallest residual
+		int bestOrder = 0;
+		long bestSum = Long.MAX_VALUE;
+		for ( int order = 0; order <= Math.min(MAX_FIXED_ORDER, n - 1); order++ ) {
+			long sum = 0;
+			for ( int i = order; i < n; i++ ) {
+				sum += Math.abs(predictionError(samples, i, order));
+			}
+			if ( sum < bestSum ) {
+				bestSum = sum;
+				bestOrder = order;
+			}
+		}
+		
+		int count = n - bestOrder;
+		for ( int i = bestOrder; i < n; i++ ) {
+			residual[i - bestOrder] = predictionError(samples, i, bestOrder);
+		}
+		
+		// Pick the Rice parameter that comes out shortest
+		int bestParam = 0;
+		long bestBits = Long.MAX_VALUE;
+		for ( int k = 0; k <= MAX_RICE_PARAM; k++ ) {
+			long total = (long)count * (k + 1);
+			for ( int i = 0; i < count; i++ ) {
+				total += zigzag(residual[i]) >>> k;
+			}
+			if ( total < bestBits ) {
+				bestBits = total;
+				bestParam = k;
+			}
+		}
+		
+		// If prediction doesn't help (i.e. it's noise), just store the samples as they are
+		if ( bestBits + (long)bestOrder * BITS_PER_SAMPLE + 10 >= (long)n * BITS_PER_SAMPLE ) {
+			bits.write(0, 1);
+			bits.write(0x01, 6);
+			bits.write(0, 1);
+			for ( int i = 0; i < n; i++ ) {
+				bits.write(samples[i], BITS_PER_SAMPLE);
+			}
+			return;
+		}
+		
+		bits.write(0, 1);
+		bits.write(0x08 | bestOrder, 6);
+		bits.write(0, 1);
+		
+		// Warm-up samples
+		for ( int i = 0; i < bestOrder; i++ ) {
+			bits.write(samples[i], BITS_PER_SAMPLE);
+		}
+		
+		// Residual: Rice coding with a 4-bit parameter, in a single partition
+		bits.write(0, 2);
+		bits.write(0, 4);
+		bits.write(bestParam, 4);
+		for ( int i = 0; i < count; i++ ) {
+			int u = zigzag(residual[i]);
+			bits.writeUnary(u >>> bestParam);
+			if ( bestParam > 0 ) {
+				bits.write(u & ((1 << bestParam) - 1), bestParam);
+			}
+		}
+	}
+	
+	// Return the difference between a sample and the given fixed predictor's guess at it
+	private static int predictionError(int[] s, int i, int order) {
+		switch ( order ) {
+			case 0:
+				return s[i];
+			case 1:
+				return s[i] - s[i - 1];
+			case 2:
+				return s[i] - 2 * s[i - 1] + s[i - 2];
+			case 3:
+				return s[i] - 3 * s[i - 1] + 3 * s[i - 2] - s[i - 3];
+			default:
+				return s[i] - 4 * s[i - 1] + 6 * s[i - 2] - 4 * s[i - 3] + s[i - 4];
+		}
+	}
+	
+	// Fold signed values into unsigned ones (0, -1, 1, -2, 2... becomes 0, 1, 2, 3, 4...)
+	private static int zigzag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+	
+	// Write the frame number, UTF-8 style
+	private void writeUTF8(long value) {
+		if ( value < 0x80 ) {
+			bits.write((int)value, 8);
+			return;
+		}
+		
+		// Figure out how many continuation bytes we need (each one holds 6 bits, and the first byte loses a bit for each)
+		int extra = 1;
+		while ( value >= (1L << (5 * extra + 6)) ) {
+			extra++;
+		}
+		
+		int prefix = (0xFF00 >> (extra + 1)) & 0xFF;
+		bits.write(prefix | (int)(value >>> (6 * extra)), 8);
+		for ( int i = extra - 1; i >= 0; i-- ) {
+			bits.write(0x80 | (int)((value >>> (6 * i)) & 0x3F), 8);
+		}
+	}
+	
+	private static int crc8(byte[] data, int len) {
+		int crc = 0;
+		for ( int i = 0; i < len; i++ ) {
+			crc ^= data[i] & 0xFF;
+			for ( int b = 0; b < 8; b++ ) {
+				crc = ((crc & 0x80) != 0) ? ((crc << 1) ^ 0x07) : (crc << 1);
+				crc &= 0xFF;
+			}
+		}
+		return crc;
+	}
+	
+	private static int crc16(byte[] data, int len) {
+		int crc = 0;
+		for ( int i = 0; i < len; i++ ) {
+			crc ^= (data[i] & 0xFF) << 8;
+			for ( int b = 0; b < 8; b++ ) {
+				crc = ((crc & 0x8000) != 0) ? ((crc << 1) ^ 0x8005) : (crc << 1);
+				crc &= 0xFFFF;
+			}
+		}
+		return crc;
+	}
+	
+	// Packs bits MSB-first into a growing byte array
+	private static class BitWriter {
+		private byte[] buffer = new byte[16384];
+		private int bytePos = 0;
+		private long acc = 0;
+		private int accBits = 0;
+		
+		public void reset() {
+			bytePos = 0;
+			acc = 0;
+			accBits = 0;
+		}
+		
+		// Write the low n bits of value (n <= 32)
+		public void write(int value, int n) {
+			acc = (acc << n) | (value & (0xFFFFFFFFL >>> (32 - n)));
+			accBits += n;
+			while ( accBits >= 8 ) {
+				accBits -= 8;
+				putByte((int)(acc >>> accBits));
+			}
+		}
+		
+		// Write q zeroes followed by a one
+		public void writeUnary(int q) {
+			while ( q >= 32 ) {
+				write(0, 32);
+				q -= 32;
+			}
+			write(1, q + 1);
+		}
+		
+		public void alignToByte() {
+			if ( accBits > 0 ) {
+				write(0, 8 - accBits);
+			}
+		}
+		
+		private void putByte(int b) {
+			if ( bytePos == buffer.length ) {
+				byte[] bigger = new byte[buffer.length * 2];
+				System.arraycopy(buffer, 0, bigger, 0, bytePos);
+				buffer = bigger;
+			}
+			buffer[bytePos++] = (byte)b;
+		}
+		
+		// Return the number of whole bytes written so far
+		public int getByteCount() {
+			return bytePos;
+		}
+		
+		public byte[] getBuffer() {
+			return buffer;
+		}
+		
+		public byte[] toByteArray() {
+			byte[] ret = new byte[bytePos];
+			System.arraycopy(buffer, 0, ret, 0, bytePos);
+			return ret;
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * FlacFileWriter: Writes 16-bit PCM audio out to a FLAC file as it comes, filling
+ * in the STREAMINFO block once we know how it all turned out
+ */
+package com.stereodustparticles.console.deck;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+import javax.sound.sampled.AudioFormat;
+
+public class FlacFileWriter extends AudioFileWriter {
+	private static final int STREAMINFO_OFFSET = 8; // After "fLaC" and the metadata block header
+	
+	private final File dest;
+	private final OutputStream out;
+	private final FlacEncoder encoder;
+	
+	public FlacFileWriter(File dest, AudioFormat format) throws IOException {
+		this.dest = dest;
+		out = new BufferedOutputStream(new FileOutputStream(dest), 65536);
+		encoder = new FlacEncoder(format, (frame, len, samples) -> out.write(frame, 0, len));
+		
+		out.write(new byte[] { 'f', 'L', 'a', 'C' });
+		
+		byte[] info = encoder.getStreamInfo();
+		out.write(FlacEncoder.metadataHeader(FlacEncoder.METADATA_STREAMINFO, info.length, false));
+		out.write(info);
+		
+		byte[] comment = FlacEncoder.vorbisComment();
+		out.write(FlacEncoder.metadataHeader(FlacEncoder.METADATA_VORBIS_COMMENT, comment.length, true));
+		out.write(comment);
+	}
+	
+	@Override
+	public void write(byte[] pcm, int off, int len) throws IOException {
+		encoder.write(pcm, off, len);
+	}
+	
+	@Override
+	public void close() throws IOException {
+		encoder.finish();
+		out.close();
+		
+		// Go back and fill in the sizes, now that we know them
+		try (RandomAccessFile raf = new RandomAccessFile(dest, "rw")) {
+			raf.seek(STREAMINFO_OFFSET);
+			raf.write(encoder.getStreamInfo());
+		}
+	}
+}
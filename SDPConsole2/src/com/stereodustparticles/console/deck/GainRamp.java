@@ -0,0 +1,63 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * GainRamp: Applies a gain that glides smoothly (sample by sample) to wherever
+ * it was last told to go, so fader moves don't zipper
+ */
+package com.stereodustparticles.console.deck;
+
+public class GainRamp {
+	// Below this, we call it close enough and snap to the target
+	private static final float SNAP_THRESHOLD = 0.00001f;
+	
+	private volatile float target = 1.0f;
+	private float current = 1.0f; // Only touched from the mix thread
+	private final float coeff;
+	
+	// The gain moves roughly 63% of the way to its target every smoothingFrames frames
+	public GainRamp(double smoothingFrames) {
+		coeff = (float)(1.0 - Math.exp(-1.0 / smoothingFrames));
+	}
+	
+	// Set the (linear) gain to glide to
+	// Can be called as often as you like, from any thread - each new target just takes over from wherever we are
+	public void setTarget(float linear) {
+		target = linear;
+	}
+	
+	// Return the (linear) gain we're gliding to
+	public float getTarget() {
+		return target;
+	}
+	
+	// Apply the gain to the given frames, and add the result to the mix
+	public void mixInto(float[] in, float[] mix, int frames, int channels) {
+		float t = target;
+		float g = current;
+		int samples = frames * channels;
+		
+		// Fast path: we're already there
+		if ( g == t ) {
+			for ( int i = 0; i < samples; i++ ) {
+				mix[i] += in[i] * g;
+			}
+			return;
+		}
+		
+		for ( int i = 0; i < samples; i += channels ) {
+			g += (t - g) * coeff;
+			for ( int c = 0; c < channels; c++ ) {
+				mix[i + c] += in[i + c] * g;
+			}
+		}
+		
+		if ( Math.abs(t - g) < SNAP_THRESHOLD ) {
+			g = t;
+		}
+		current = g;
+	}
+}
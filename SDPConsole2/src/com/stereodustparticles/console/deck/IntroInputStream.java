@@ -0,0 +1,170 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * IntroInputStream: Plays back a retained intro, then picks up where it left off
+ * from a fresh decoder (which gets opened and skipped forward in the background)
+ * If that decoder can't be had, whoever set us up gets told (rather than the track
+ * just quietly ending once the intro runs out)
+ */
+package com.stereodustparticles.console.deck;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.function.BiConsumer;
+
+import com.stereodustparticles.console.Utils;
+
+public class IntroInputStream extends InputStream {
+	private final RetainedIntro intro;
+	private int position = 0;
+	private InputStream rest = null;
+	private boolean restReady = false;
+	private IOException restError = null; // Why we couldn't get the rest of the track, if we couldn't
+	private volatile boolean closed = false;
+	
+	// The handler gets called (from a background thread) with this stream and what went wrong, if the rest of the track can't be opened
+	public IntroInputStream(RetainedIntro intro, URL file, BiConsumer<IntroInputStream, Exception> onRestFailed) {
+		this.intro = intro;
+		
+		// If the intro doesn't cover the whole track, get the rest of it ready while the intro plays
+		if ( intro.coversWholeTrack() ) {
+			restReady = true;
+		}
+		else {
+			Utils.runInBackground(() -> openRest(file, onRestFailed));
+		}
+	}
+	
+	// Play back an intro, then carry on from a decoder that's already been fast-forwarded past it
+	public IntroInputStream(RetainedIntro intro, InputStream rest) {
+		this.intro = intro;
+		this.rest = rest;
+		restReady = true;
+	}
+	
+	// Open the decoder for the rest of the track, and fast-forward it to the end of the intro
+	private void openRest(URL file, BiConsumer<IntroInputStream, Exception> onRestFailed) {
+		InputStream decoded = null;
+		Exception error = null;
+		try {
+			decoded = Deck.openDecoded(file);
+			
+			long toSkip = intro.getLeadInBytes() + intro.getLength();
+			byte[] scratch = AudioPool.takeBytes(4096);
+			try {
+				while ( toSkip > 0 ) {
+					long skipped = decoded.skip(toSkip);
+					
+					// Some decoders won't skip, so read through it instead
+					if ( skipped <= 0 ) {
+						skipped = decoded.read(scratch, 0, (int)Math.min(scratch.length, toSkip));
+						if ( skipped == -1 ) {
+							break;
+						}
+					}
+					
+					toSkip -= skipped;
+				}
+			}
+			finally {
+				AudioPool.give(scratch);
+			}
+		}
+		catch (Exception e) {
+			closeQuietly(decoded);
+			decoded = null;
+			error = e;
+		}
+		
+		synchronized (this) {
+			if ( closed ) {
+				closeQuietly(decoded);
+			}
+			else if ( error != null ) {
+				restError = new IOException("Couldn't pick the track back up after its intro", error);
+			}
+			else {
+				rest = decoded;
+			}
+			
+			restReady = true;
+		}
+		
+		if ( error != null && ! closed && onRestFailed != null ) {
+			onRestFailed.accept(this, error);
+		}
+	}
+	
+	@Override
+	public int read() throws IOException {
+		byte[] b = new byte[1];
+		int n = read(b, 0, 1);
+		return n == -1 ? -1 : b[0] & 0xFF;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		// Serve up the intro first...
+		if ( position < intro.getLength() ) {
+			int n = Math.min(len, intro.getLength() - position);
+			System.arraycopy(intro.getData(), position, b, off, n);
+			position += n;
+			return n;
+		}
+		
+		// ...then the rest, once it's ready
+		// (Until then, we come back empty-handed rather than waiting, since a deck reader can't afford to hang around)
+		InputStream from;
+		synchronized (this) {
+			if ( ! restReady && ! closed ) {
+				return 0;
+			}
+			
+			// The rest of the track is there, we just couldn't get at it - that's not the end of it, so don't say it is
+			// (The reader hears about it once, then it's the same as waiting on a decoder that never comes through)
+			if ( restError != null && ! closed ) {
+				IOException e = restError;
+				restError = null;
+				rest = null;
+				restReady = false;
+				throw e;
+			}
+			
+			from = rest;
+		}
+		
+		if ( closed || from == null ) {
+			return -1;
+		}
+		
+		return from.read(b, off, len);
+	}
+	
+	@Override
+	public int available() throws IOException {
+		return intro.getLength() - position;
+	}
+	
+	@Override
+	public synchronized void close() throws IOException {
+		closed = true;
+		closeQuietly(rest);
+		rest = null;
+	}
+	
+	private static void closeQuietly(InputStream in) {
+		if ( in != null ) {
+			try {
+				in.close();
+			}
+			catch (IOException e) {
+				// Don't care
+			}
+		}
+	}
+}
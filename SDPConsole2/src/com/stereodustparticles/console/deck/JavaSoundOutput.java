@@ -0,0 +1,57 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * JavaSoundOutput: Sends the mix to the sound card, by way of a good old SourceDataLine
+ */
+package com.stereodustparticles.console.deck;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+public class JavaSoundOutput implements AudioOutput {
+	private final SourceDataLine line;
+	
+	public JavaSoundOutput(AudioFormat format, int bufferSize) throws LineUnavailableException {
+		DataLine.Info info = new DataLine.Info(SourceDataLine.class, format);
+		line = (SourceDataLine) AudioSystem.getLine(info);
+		line.open(format, bufferSize);
+		line.start();
+	}
+	
+	@Override
+	public int getBufferSize() {
+		return line.getBufferSize();
+	}
+	
+	@Override
+	public int available() {
+		return line.available();
+	}
+	
+	@Override
+	public int write(byte[] b, int off, int len) {
+		return line.write(b, off, len);
+	}
+	
+	@Override
+	public long getLongFramePosition() {
+		return line.getLongFramePosition();
+	}
+	
+	@Override
+	public void close() {
+		line.close();
+	}
+	
+	@Override
+	public String getDescription() {
+		return "Sound card";
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * LatencyHistogram: Counts up how long things took (or how far apart they came),
+ * a la HdrHistogram - every power of two gets split into the same number of
+ * buckets, so a 20 us blip and a 2 second stall are both kept to within a few
+ * percent, in a fixed (small) amount of memory, with nothing allocated per sample
+ */
+package com.stereodustparticles.console.deck;
+
+public class LatencyHistogram {
+	// Each power of two gets split into 2^SUB_BITS buckets (so everything's kept to within about 3%)
+	private static final int SUB_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	
+	// Values are counted in microseconds, up to 2^32 of them (a bit over an hour) - anything longer goes in the top bucket
+	private static final int MAX_BITS = 32;
+	
+	private final long[] counts = new long[(MAX_BITS - SUB_BITS + 1) * SUB_BUCKETS];
+	private long total = 0;
+	private long max = 0; // in nanoseconds
+	
+	// Count one value (in nanoseconds)
+	public synchronized void record(long nanos) {
+		if ( nanos < 0 ) {
+			return;
+		}
+		
+		counts[indexOf(nanos / 1000)]++;
+		total++;
+		if ( nanos > max ) {
+			max = nanos;
+		}
+	}
+	
+	// Return the number of values counted so far
+	public synchronized long getCount() {
+		return total;
+	}
+	
+	// Return the biggest value counted so far, in milliseconds
+	public synchronized double getMaxMillis() {
+		return max / 1000000.0;
+	}
+	
+	// Return the value (in milliseconds) that the given percentage of everything counted so far comes in at or under
+	public synchronized double getPercentileMillis(double percent) {
+		if ( total == 0 ) {
+			return 0;
+		}
+		
+		long wanted = Math.max(1, (long)Math.ceil(total * percent / 100));
+		long seen = 0;
+		for ( int i = 0; i < counts.length; i++ ) {
+			seen += counts[i];
+			if ( seen >= wanted ) {
+				return Math.min(highestValueAt(i), max / 1000.0) / 1000.0;
+			}
+		}
+		
+		return max / 1000000.0;
+	}
+	
+	// Return a one-line rundown, for display
+	public synchronized String summarize() {
+		if ( total == 0 ) {
+			return "nothing yet";
+		}
+		
+		return String.format("median %.2f ms, 99%% %.2f ms, 99.9%% %.2f ms, worst %.2f ms", getPercentileMillis(50), getPercentileMillis(99), getPercentileMillis(99.9), getMaxMillis());
+	}
+	
+	// Return the bucket the given value (in microseconds) goes in
+	private static int indexOf(long micros) {
+		if ( micros < SUB_BUCKETS ) {
+			return (int)micros;
+		}
+		
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		if ( exponent >= MAX_BITS ) {
+			return (MAX_BITS - SUB_BITS + 1) * SUB_BUCKETS - 1;
+		}
+		
+		// The top SUB_BITS + 1 bits pick the bucket within this power of two
+		int shift = exponent - SUB_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int)(micros >>> shift) - SUB_BUCKETS;
+	}
+	
+	// Return the highest value (in microseconds) that goes in the given bucket
+	private static double highestValueAt(int index) {
+		if ( index < SUB_BUCKETS ) {
+			return index;
+		}
+		
+		int shift = index / SUB_BUCKETS - 1;
+		long lowest = (long)(index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,431 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * MappedPCMInputStream: Plays uncompressed WAV/AIFF files straight out of a memory
+ * mapping of their data chunk, skipping the whole AudioSystem song and dance
+ * 16-bit little-endian files come out as-is - anything else gets converted to that
+ * on the way out
+ */
+package com.stereodustparticles.console.deck;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
+public class MappedPCMInputStream extends InputStream {
+	private static final int WAVE_FORMAT_PCM = 1;
+	private static final int WAVE_FORMAT_EXTENSIBLE = 0xFFFE;
+	
+	private final ByteBuffer data;
+	private final ByteBuffer view; // Our own window onto the mapping, for bulk copies (so they don't need a fresh one each time)
+	private final int channels;
+	private final int bytesPerSample;
+	private final boolean bigEndian;
+	private final boolean unsigned8; // 8-bit WAV is unsigned (8-bit AIFF isn't)
+	private final boolean passThrough; // Already 16-bit little-endian, so no conversion needed
+	private final int frameSize;
+	private final long frameCount;
+	private long frame = 0;
+	private long mark = 0;
+	private int markPending = 0;
+	private volatile boolean closed = false;
+	
+	// A frame that got split across reads (when somebody asks for less than a whole frame at a time)
+	private final byte[] pending;
+	private int pendingPos = 0;
+	private int pendingLen = 0;
+	
+	private MappedPCMInputStream(ByteBuffer data, int channels, int bits, boolean bigEndian, boolean unsigned8) {
+		this.data = data;
+		view = data.duplicate();
+		this.channels = channels;
+		this.bigEndian = bigEndian;
+		this.unsigned8 = unsigned8;
+		bytesPerSample = bits / 8;
+		frameSize = bytesPerSample * channels;
+		frameCount = data.capacity() / frameSize;
+		passThrough = (bits == 16 && ! bigEndian);
+		pending = new byte[channels * 2];
+	}
+	
+	// If the given file is an uncompressed WAV or AIFF we can handle, map it and return a 16-bit PCM stream of it
+	// Otherwise, return null (and let AudioSystem have a go at it)
+	public static AudioInputStream open(URL file) throws IOException {
+		if ( ! "file".equals(file.getProtocol()) ) {
+			return null;
+		}
+		
+		File f = SeekIndex.toFile(file);
+		String name = f.getName().toLowerCase();
+		if ( ! (name.endsWith(".wav") || name.endsWith(".aif") || name.endsWith(".aiff") || name.endsWith(".aifc")) ) {
+			return null;
+		}
+		
+		try ( RandomAccessFile raf = new RandomAccessFile(f, "r") ) {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer head = ByteBuffer.allocate(12);
+			if ( channel.read(head, 0) < 12 ) {
+				return null;
+			}
+			
+			String riff = new String(head.array(), 0, 4, "US-ASCII");
+			String form = new String(head.array(), 8, 4, "US-ASCII");
+			MappedPCMInputStream stream;
+			float rate;
+			if ( riff.equals("RIFF") && form.equals("WAVE") ) {
+				float[] rateOut = new float[1];
+				stream = openWAV(channel, rateOut);
+				rate = rateOut[0];
+			}
+			else if ( riff.equals("FORM") && (form.equals("AIFF") || form.equals("AIFC")) ) {
+				float[] rateOut = new float[1];
+				stream = openAIFF(channel, form.equals("AIFC"), rateOut);
+				rate = rateOut[0];
+			}
+			else {
+				return null;
+			}
+			
+			if ( stream == null ) {
+				return null;
+			}
+			
+			// The mapping outlives the channel, so we don't need to hang onto the file
+			AudioFormat format = new AudioFormat(rate, 16, stream.channels, true, false);
+			return new AudioInputStream(stream, format, stream.frameCount);
+		}
+	}
+	
+	// Find the format and data chunks of a WAV file, and map the data
+	private static MappedPCMInputStream openWAV(FileChannel channel, float[] rate) throws IOException {
+		ByteBuffer fmt = null;
+		long pos = 12;
+		ByteBuffer chunk = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+		while ( true ) {
+			chunk.clear();
+			if ( channel.read(chunk, pos) < 8 ) {
+				return null;
+			}
+			
+			String id = new String(chunk.array(), 0, 4, "US-ASCII");
+			long size = chunk.getInt(4) & 0xFFFFFFFFL;
+			
+			if ( id.equals("fmt ") ) {
+				fmt = ByteBuffer.allocate((int)Math.min(size, 40)).order(ByteOrder.LITTLE_ENDIAN);
+				channel.read(fmt, pos + 8);
+			}
+			else if ( id.equals("data") ) {
+				if ( fmt == null || fmt.capacity() < 16 ) {
+					return null;
+				}
+				
+				int tag = fmt.getShort(0) & 0xFFFF;
+				if ( tag == WAVE_FORMAT_EXTENSIBLE && fmt.capacity() >= 26 ) {
+					tag = fmt.getShort(24) & 0xFFFF; // First two bytes of the subformat GUID
+				}
+				if ( tag != WAVE_FORMAT_PCM ) {
+					return null;
+				}
+				
+				int channels = fmt.getShort(2);
+				int bits = fmt.getShort(14);
+				rate[0] = fmt.getInt(4);
+				
+				ByteBuffer data = map(channel, pos + 8, size);
+				return (data == null) ? null : create(data, channels, bits, false, bits == 8);
+			}
+			
+			// Chunks are padded out to an even length
+			pos += 8 + size + (size & 1);
+		}
+	}
+	
+	// Find the COMM and SSND chunks of an AIFF (or uncompressed AIFF-C) file, and map the sound data
+	private static MappedPCMInputStream openAIFF(FileChannel channel, boolean aifc, float[] rate) throws IOException {
+		ByteBuffer comm = null;
+		long pos = 12;
+		ByteBuffer chunk = ByteBuffer.allocate(8); // Big-endian, like everything else in AIFF
+		while ( true ) {
+			chunk.clear();
+			if ( channel.read(chunk, pos) < 8 ) {
+				return null;
+			}
+			
+			String id = new String(chunk.array(), 0, 4, "US-ASCII");
+			long size = chunk.getInt(4) & 0xFFFFFFFFL;
+			
+			if ( id.equals("COMM") ) {
+				comm = ByteBuffer.allocate((int)Math.min(size, 22));
+				channel.read(comm, pos + 8);
+			}
+			else if ( id.equals("SSND") ) {
+				if ( comm == null || comm.capacity() < 18 ) {
+					return null;
+				}
+				
+				// AIFF-C is only any good to us uncompressed - "NONE" is big-endian, "sowt" is little-endian
+				boolean bigEndian = true;
+				if ( aifc ) {
+					if ( comm.capacity() < 22 ) {
+						return null;
+					}
+					String compression = new String(comm.array(), 18, 4, "US-ASCII");
+					if ( compression.equals("sowt") ) {
+						bigEndian = false;
+					}
+					else if ( ! compression.equals("NONE") ) {
+						return null;
+					}
+				}
+				
+				int channels = comm.getShort(0);
+				int bits = comm.getShort(6);
+				rate[0] = (float)readExtended(comm, 8);
+				
+				// The sound data starts after an offset (which is almost always 0)
+				ByteBuffer offsetBuf = ByteBuffer.allocate(4);
+				channel.read(offsetBuf, pos + 8);
+				long offset = offsetBuf.getInt(0) & 0xFFFFFFFFL;
+				
+				ByteBuffer data = map(channel, pos + 16 + offset, size - 8 - offset);
+				return (data == null) ? null : create(data, channels, (bits + 7) / 8 * 8, bigEndian, false);
+			}
+			
+			pos += 8 + size + (size & 1);
+		}
+	}
+	
+	// Map the given part of the file (trimmed to what's actually there, in case the header's lying)
+	private static ByteBuffer map(FileChannel channel, long start, long size) throws IOException {
+		long available = channel.size() - start;
+		if ( size == 0 || size > available ) {
+			size = available;
+		}
+		if ( size <= 0 || size > Integer.MAX_VALUE ) {
+			return null;
+		}
+		
+		MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+		data.order(ByteOrder.LITTLE_ENDIAN);
+		return data;
+	}
+	
+	private static MappedPCMInputStream create(ByteBuffer data, int channels, int bits, boolean bigEndian, boolean unsigned8) {
+		if ( channels < 1 || (bits != 8 && bits != 16 && bits != 24 && bits != 32) ) {
+			return null;
+		}
+		return new MappedPCMInputStream(data, channels, bits, bigEndian, unsigned8);
+	}
+	
+	// Decode an 80-bit IEEE extended float (which is how AIFF stores its sample rate)
+	private static double readExtended(ByteBuffer b, int off) {
+		int exponent = ((b.get(off) & 0x7F) << 8) | (b.get(off + 1) & 0xFF);
+		long mantissa = b.getLong(off + 2);
+		double value = (mantissa >>> 1) * Math.pow(2, exponent - 16383 - 62);
+		return ((b.get(off) & 0x80) != 0) ? -value : value;
+	}
+	
+	@Override
+	public synchronized int read() throws IOException {
+		if ( closed ) {
+			return -1;
+		}
+		
+		// One byte at a time means splitting frames up
+		if ( pendingPos == pendingLen ) {
+			if ( frame >= frameCount ) {
+				return -1;
+			}
+			convert(frame++, 1, pending, 0);
+			pendingPos = 0;
+			pendingLen = pending.length;
+		}
+		return pending[pendingPos++] & 0xFF;
+	}
+	
+	@Override
+	public synchronized int read(byte[] b, int off, int len) throws IOException {
+		if ( closed ) {
+			return -1;
+		}
+		if ( len == 0 ) {
+			return 0;
+		}
+		
+		// Finish off a frame that got split up last time before starting on the next one
+		if ( pendingPos < pendingLen ) {
+			int n = Math.min(len, pendingLen - pendingPos);
+			System.arraycopy(pending, pendingPos, b, off, n);
+			pendingPos += n;
+			return n;
+		}
+		
+		if ( frame >= frameCount ) {
+			return -1;
+		}
+		
+		int outFrameSize = pending.length;
+		int frames = (int)Math.min(len / outFrameSize, frameCount - frame);
+		
+		// Less than a frame's worth asked for - hand out the start of one, and keep the rest for next time
+		if ( frames == 0 ) {
+			convert(frame++, 1, pending, 0);
+			System.arraycopy(pending, 0, b, off, len);
+			pendingPos = len;
+			pendingLen = outFrameSize;
+			return len;
+		}
+		
+		convert(frame, frames, b, off);
+		frame += frames;
+		return frames * outFrameSize;
+	}
+	
+	// Copy the given frames out of the mapping as 16-bit little-endian
+	private void convert(long start, int frames, byte[] b, int off) {
+		int pos = (int)(start * frameSize);
+		if ( passThrough ) {
+			// Nothing to convert - this is the one and only copy
+			view.position(pos);
+			view.get(b, off, frames * frameSize);
+		}
+		else {
+			int out = off;
+			int samples = frames * channels;
+			for ( int i = 0; i < samples; i++ ) {
+				int sample = sampleAt(pos);
+				b[out++] = (byte)sample;
+				b[out++] = (byte)(sample >> 8);
+				pos += bytesPerSample;
+			}
+		}
+	}
+	
+	// Return the sample at the given position, cut down (or built up) to 16 bits
+	private int sampleAt(int pos) {
+		switch (bytesPerSample) {
+			case 1:
+				return unsigned8 ? ((data.get(pos) & 0xFF) - 128) << 8 : data.get(pos) << 8;
+			case 2:
+				return bigEndian ? (data.get(pos) << 8) | (data.get(pos + 1) & 0xFF) : (data.get(pos + 1) << 8) | (data.get(pos) & 0xFF);
+			case 3:
+				return bigEndian ? (data.get(pos) << 8) | (data.get(pos + 1) & 0xFF) : (data.get(pos + 2) << 8) | (data.get(pos + 1) & 0xFF);
+			default:
+				return bigEndian ? (data.get(pos) << 8) | (data.get(pos + 1) & 0xFF) : (data.get(pos + 3) << 8) | (data.get(pos + 2) & 0xFF);
+		}
+	}
+	
+	// Skipping is just a matter of moving along the mapping, so seeks are instant
+	// (Whatever's left of a split-up frame gets skipped first, which may leave us short of n - callers skip again for the rest)
+	@Override
+	public synchronized long skip(long n) throws IOException {
+		if ( n <= 0 ) {
+			return 0;
+		}
+		if ( pendingPos < pendingLen ) {
+			int skipped = (int)Math.min(n, pendingLen - pendingPos);
+			pendingPos += skipped;
+			return skipped;
+		}
+		
+		long frames = Math.max(0, Math.min(n / pending.length, frameCount - frame));
+		frame += frames;
+		return frames * pending.length;
+	}
+	
+	@Override
+	public synchronized int available() throws IOException {
+		return closed ? 0 : (int)Math.min(Integer.MAX_VALUE, (frameCount - frame) * pending.length + (pendingLen - pendingPos));
+	}
+	
+	@Override
+	public boolean markSupported() {
+		return true;
+	}
+	
+	// If we're partway through a frame, the mark goes at the start of it (along with how far in we were)
+	@Override
+	public synchronized void mark(int readlimit) {
+		if ( pendingPos < pendingLen ) {
+			mark = frame - 1;
+			markPending = pendingPos;
+		}
+		else {
+			mark = frame;
+			markPending = 0;
+		}
+	}
+	
+	@Override
+	public synchronized void reset() throws IOException {
+		// The mapping's gone once we're closed, and touching it would take the whole JVM down
+		if ( closed ) {
+			throw new IOException("Stream closed");
+		}
+		
+		frame = mark;
+		pendingPos = 0;
+		pendingLen = 0;
+		if ( markPending > 0 ) {
+			convert(frame++, 1, pending, 0);
+			pendingPos = markPending;
+			pendingLen = pending.length;
+		}
+	}
+	
+	// Let go of the mapping right away, rather than whenever the garbage collector gets to it
+	// (Windows won't let anyone rename, re-tag or delete the file while it's mapped)
+	// Reads hold our lock, so nobody can be in the middle of one when it goes
+	@Override
+	public synchronized void close() throws IOException {
+		if ( ! closed ) {
+			closed = true;
+			unmap(data);
+		}
+	}
+	
+	// Java doesn't have a proper way to unmap a file, so we have to go around the back
+	// If neither way works on this JVM, the mapping is left for the garbage collector, same as it ever was
+	private static void unmap(ByteBuffer buffer) {
+		try {
+			// Java 9 and up
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+		}
+		catch (NoSuchMethodException e) {
+			// Java 8
+			try {
+				Method getCleaner = buffer.getClass().getMethod("cleaner");
+				getCleaner.setAccessible(true);
+				Object cleaner = getCleaner.invoke(buffer);
+				if ( cleaner != null ) {
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+			}
+			catch (Exception e2) {
+				// Oh well
+			}
+		}
+		catch (Exception e) {
+			// Oh well
+		}
+	}
+}
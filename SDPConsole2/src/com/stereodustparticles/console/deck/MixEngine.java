@@ -0,0 +1,356 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * MixEngine: Sums the audio from all decks and spots into a single output line
+ * (which is usually the sound card, but see AudioOutput)
+ */
+package com.stereodustparticles.console.deck;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+
+import com.stereodustparticles.console.multi.MultiConsole;
+import com.stereodustparticles.console.pref.Prefs;
+import com.stereodustparticles.console.ui.Microwave;
+
+public class MixEngine {
+	// Every voice gets mixed in blocks of this many frames
+	public static final int BLOCK_FRAMES = 512;
+	
+	// Number of blocks' worth of audio to keep queued up in the output line
+	// In low-latency mode, we start at the minimum and work our way up whenever the line runs dry
+	private static final int LINE_BUFFER_BLOCKS = 8;
+	private static final int MIN_LINE_BLOCKS = 2;
+	private static final int MAX_LINE_BLOCKS = 32;
+	
+	// What we fall back to if the sound card won't take the configured sample rate
+	private static final float FALLBACK_SAMPLE_RATE = 44100f;
+	
+	// How long things have to stay smooth before low-latency mode tries shrinking the queue back down
+	private static final long CALM_MILLIS = 30000;
+	
+	// Keep samples just shy of full scale, since SimpleAudioConversion wraps around at exactly 1.0
+	private static final float CLIP_MAX = 32767f / 32768f;
+	
+	// The mix engine that feeds the main output
+	private static MixEngine master = null;
+	
+	private final AudioFormat format;
+	
+	// Voices and taps get copied on write (by hand), so the mix thread can walk them without allocating an iterator every block
+	private volatile MixVoice[] voices = new MixVoice[0];
+	private volatile MixTap[] taps = new MixTap[0];
+	private final float[] voiceTapSamples; // Scratch space for tapped voices
+	private final byte[] voiceTapBuffer;
+	private volatile AudioOutput line = null;
+	private MixThread mixer;
+	private volatile boolean closing = false;
+	
+	private volatile boolean lowLatency = false;
+	private volatile int targetBlocks = LINE_BUFFER_BLOCKS;
+	private long lastAdjust = 0;
+	private final PlayoutStats lineStats = new PlayoutStats();
+	private volatile int lineQueuedFrames = 0; // How much was already waiting in the line when the current block was mixed
+	private volatile long framesMixed = 0; // Every frame we've ever mixed (only the mix thread writes this)
+	private volatile long lineBase = 0; // Frames mixed before the current line was opened (its frame position counts from there)
+	
+	public MixEngine(AudioFormat format) {
+		this.format = format;
+		voiceTapSamples = new float[BLOCK_FRAMES * format.getChannels()];
+		voiceTapBuffer = new byte[BLOCK_FRAMES * format.getFrameSize()];
+	}
+	
+	// Initialize the master mix engine (called from main)
+	public static void init() {
+		// In slave mode on both decks and soundboard, we'll never make a peep, so don't bother
+		if ( MultiConsole.getDeckMode() == 'S' && MultiConsole.getSoundboardMode() == 'S' ) {
+			return;
+		}
+		
+		// Everything gets mixed at one fixed rate, and anything else gets resampled on the way in,
+		// so the line stays open all night no matter what gets loaded
+		float rate = Prefs.loadInt(Prefs.OUTPUT_SAMPLE_RATE);
+		try {
+			master = new MixEngine(new AudioFormat(rate, 16, 2, true, false));
+			try {
+				master.open();
+			}
+			catch (LineUnavailableException | IllegalArgumentException e) {
+				if ( rate == FALLBACK_SAMPLE_RATE ) {
+					throw e;
+				}
+				
+				// If the sound card doesn't like that rate, try the old standby before giving up
+				e.printStackTrace();
+				master = new MixEngine(new AudioFormat(FALLBACK_SAMPLE_RATE, 16, 2, true, false));
+				master.open();
+			}
+		}
+		catch (LineUnavailableException | IllegalArgumentException | IOException e) {
+			Microwave.showException("Error Opening Output", "The sound card refused to give up an output line (or the output file couldn't be opened), so the decks and soundboard are going to be awfully quiet.\n\nMake sure nothing else is hogging the sound card, then restart the console.", e);
+			
+			// Keep everything running on time anyway
+			master.line = new VirtualOutput(master.format, master.getLineBufferSize(), false);
+		}
+		master.setLowLatency(Prefs.loadBoolean(Prefs.LOW_LATENCY));
+		master.start();
+	}
+	
+	// Return the master mix engine
+	public static MixEngine getMaster() {
+		return master;
+	}
+	
+	// Shut down the master mix engine
+	public static void cleanUpMaster() {
+		if ( master != null ) {
+			master.close();
+		}
+	}
+	
+	// Open the output line (whichever kind the prefs call for)
+	public void open() throws LineUnavailableException, IOException {
+		line = AudioOutput.open(format, getLineBufferSize());
+	}
+	
+	// Close the output line and open a fresh one in its place (e.g. the sound card stopped taking audio)
+	// If that doesn't work, carry on with a virtual one, so the decks at least keep time
+	public void reopenLine() {
+		AudioOutput old = line;
+		AudioOutput fresh;
+		try {
+			fresh = AudioOutput.open(format, getLineBufferSize());
+		}
+		catch (LineUnavailableException | IllegalArgumentException | IOException e) {
+			e.printStackTrace();
+			fresh = new VirtualOutput(format, getLineBufferSize(), false);
+		}
+		
+		// The new line starts counting from 0, so the deck clocks have to pick up from wherever the mix has got to
+		lineBase = framesMixed;
+		line = fresh;
+		
+		// If the mix thread is stuck writing to the old one, this should shake it loose
+		if ( old != null ) {
+			old.close();
+		}
+	}
+	
+	// The line gets as much room as we'd ever want - how much of it we actually use is up to the mix thread
+	private int getLineBufferSize() {
+		return BLOCK_FRAMES * MAX_LINE_BLOCKS * format.getFrameSize();
+	}
+	
+	// Start mixing
+	public void start() {
+		mixer = new MixThread(this);
+	}
+	
+	// Stop mixing and close the output line
+	public void close() {
+		closing = true;
+		if ( mixer != null ) {
+			mixer.interrupt();
+		}
+		if ( line != null ) {
+			line.close();
+		}
+	}
+	
+	// Return the format that all voices are mixed in (and sent to the output line)
+	public AudioFormat getFormat() {
+		return format;
+	}
+	
+	// Add a voice to the mix
+	public synchronized <V extends MixVoice> V addVoice(V voice) {
+		MixVoice[] newVoices = Arrays.copyOf(voices, voices.length + 1);
+		newVoices[voices.length] = voice;
+		voices = newVoices;
+		return voice;
+	}
+	
+	// Remove a voice from the mix
+	public synchronized void removeVoice(MixVoice voice) {
+		voices = without(voices, voice);
+	}
+	
+	// Return a copy of the given array, minus the given item (if it's in there)
+	private static <T> T[] without(T[] items, T item) {
+		for ( int i = 0; i < items.length; i++ ) {
+			if ( items[i] == item ) {
+				T[] ret = Arrays.copyOf(items, items.length - 1);
+				System.arraycopy(items, i + 1, ret, i, items.length - i - 1);
+				return ret;
+			}
+		}
+		return items;
+	}
+	
+	// Mix the next block from all active voices into the given buffer (BLOCK_FRAMES frames in our format)
+	// voiceBuffer is scratch space of the same size
+	// This is the whole mix, start to finish - the mix thread paces it to the output line, while the show renderer just runs it flat out
+	protected void mixBlock(float[] mix, float[] voiceBuffer) {
+		int channels = format.getChannels();
+		int blockSamples = BLOCK_FRAMES * channels;
+		
+		Arrays.fill(mix, 0f);
+		
+		MixVoice[] voices = this.voices;
+		for ( MixVoice voice : voices ) {
+			if ( voice.isActive() ) {
+				voice.prepare(BLOCK_FRAMES);
+			}
+		}
+		
+		// Sum up everyone who has something to say
+		for ( MixVoice voice : voices ) {
+			MixTap tap = voice.getTap();
+			if ( ! voice.isActive() ) {
+				// Even if it's quiet, a tapped voice has to keep up with everyone else
+				if ( tap != null ) {
+					tapVoice(tap, voiceBuffer, 0);
+				}
+				continue;
+			}
+			
+			int frames = voice.render(voiceBuffer, BLOCK_FRAMES);
+			if ( tap != null ) {
+				tapVoice(tap, voiceBuffer, frames);
+			}
+			voice.mixInto(voiceBuffer, mix, frames, channels);
+		}
+		
+		clip(mix, blockSamples);
+		framesMixed += BLOCK_FRAMES;
+	}
+	
+	// Hand a voice's block to its tap (with silence after the frames it actually rendered)
+	private void tapVoice(MixTap tap, float[] rendered, int frames) {
+		int samples = frames * format.getChannels();
+		System.arraycopy(rendered, 0, voiceTapSamples, 0, samples);
+		Arrays.fill(voiceTapSamples, samples, voiceTapSamples.length, 0f);
+		clip(voiceTapSamples, voiceTapSamples.length);
+		tap.tap(voiceTapBuffer, SimpleAudioConversion.pack(voiceTapSamples, voiceTapBuffer, voiceTapSamples.length, format));
+	}
+	
+	// Hard-clip anything that's too hot
+	private static void clip(float[] samples, int count) {
+		for ( int i = 0; i < count; i++ ) {
+			if ( samples[i] > CLIP_MAX ) {
+				samples[i] = CLIP_MAX;
+			}
+			else if ( samples[i] < -1f ) {
+				samples[i] = -1f;
+			}
+		}
+	}
+	
+	// Add a tap, which gets a copy of every block of the finished mix
+	public synchronized void addTap(MixTap tap) {
+		MixTap[] newTaps = Arrays.copyOf(taps, taps.length + 1);
+		newTaps[taps.length] = tap;
+		taps = newTaps;
+	}
+	
+	// Remove a tap
+	public synchronized void removeTap(MixTap tap) {
+		taps = without(taps, tap);
+	}
+	
+	// Hand a finished (packed) block of the mix to all taps
+	protected void tapBlock(byte[] block, int len) {
+		for ( MixTap tap : taps ) {
+			tap.tap(block, len);
+		}
+	}
+	
+	// Return the voices currently in the mix
+	protected Iterable<MixVoice> getVoices() {
+		return Arrays.asList(voices);
+	}
+	
+	// Return the output line (may be null if we're not playing out, i.e. we're rendering)
+	protected AudioOutput getLine() {
+		return line;
+	}
+	
+	// Turn low-latency mode on or off
+	public void setLowLatency(boolean enable) {
+		lowLatency = enable;
+		targetBlocks = enable ? MIN_LINE_BLOCKS : LINE_BUFFER_BLOCKS;
+	}
+	
+	// Return the number of frames the mix thread should keep queued up in the output line
+	protected int getTargetFrames() {
+		return targetBlocks * BLOCK_FRAMES;
+	}
+	
+	// Called from the mix thread when the output line runs dry
+	protected void notifyUnderrun() {
+		lineStats.recordUnderrun();
+		
+		if ( lowLatency && targetBlocks < MAX_LINE_BLOCKS ) {
+			targetBlocks = Math.min(targetBlocks * 2, MAX_LINE_BLOCKS);
+			lastAdjust = System.nanoTime();
+		}
+	}
+	
+	// Called from the mix thread every so often - if things have been calm for a while, ease the latency back down
+	protected void checkCalm() {
+		if ( ! lowLatency || targetBlocks <= MIN_LINE_BLOCKS ) {
+			return;
+		}
+		
+		long now = System.nanoTime();
+		if ( ! lineStats.underrunWithin(CALM_MILLIS) && (now - lastAdjust) > CALM_MILLIS * 1000000L ) {
+			targetBlocks--;
+			lastAdjust = now;
+		}
+	}
+	
+	// Note how many frames are queued up in the output line ahead of the block about to be mixed (called from the mix thread)
+	protected void setLineQueuedFrames(int frames) {
+		lineQueuedFrames = frames;
+	}
+	
+	// Return the number of frames mixed so far (ever) - while a block is being mixed, this is where that block starts
+	protected long getMixedFrames() {
+		return framesMixed;
+	}
+	
+	// Return the number of frames that have actually come out of the sound card so far (ever)
+	// This is what the deck clocks go by, so they show what's being heard rather than what's been mixed
+	// Every block we mix goes to the line, so the two count from the same place (without a line, mixed is as good as heard)
+	public long getHeardFrames() {
+		long mixed = framesMixed;
+		AudioOutput line = this.line;
+		if ( line == null ) {
+			return mixed;
+		}
+		
+		return Math.min(lineBase + line.getLongFramePosition(), mixed);
+	}
+	
+	// Return how long the block currently being mixed will wait in the output line before it's heard, in nanoseconds
+	protected long getLineDelayNanos() {
+		return (long)(lineQueuedFrames * 1000000000.0 / format.getSampleRate());
+	}
+	
+	// Return the underrun count and fill level history of the output line
+	public PlayoutStats getLineStats() {
+		return lineStats;
+	}
+	
+	// Return whether or not we've been told to shut down
+	protected boolean isClosing() {
+		return closing;
+	}
+}
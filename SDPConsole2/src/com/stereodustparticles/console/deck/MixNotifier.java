@@ -0,0 +1,87 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * MixNotifier: Passes word of things that happen on the mix thread (a spot running
+ * out, a deck hitting its segue point) on to the rest of the console, from a thread
+ * of its own
+ * The mix thread can't afford to fire events itself (they look up prefs, queue up
+ * UI updates and go out over the network to other consoles), or even allocate
+ * anything - all it does here is raise the flag on a notice that was set up ahead
+ * of time, and give our thread a nudge
+ */
+package com.stereodustparticles.console.deck;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+public class MixNotifier {
+	private static final List<Notice> notices = new CopyOnWriteArrayList<Notice>();
+	private static volatile Thread thread = null;
+	
+	// Something that can be posted from the mix thread, and gets acted on from ours
+	public static class Notice {
+		private final Runnable action;
+		private volatile boolean pending = false;
+		
+		private Notice(Runnable action) {
+			this.action = action;
+		}
+		
+		// Raise the flag - this never blocks or allocates, so it's safe to call from the mix thread
+		// Posting it again before the action gets to run only runs it once
+		public void post() {
+			pending = true;
+			Thread t = thread;
+			if ( t != null ) {
+				LockSupport.unpark(t);
+			}
+		}
+	}
+	
+	// Set up a notice that runs the given action (on the notifier thread) whenever it's posted
+	// Do this ahead of time, not from the mix thread
+	public static synchronized Notice register(Runnable action) {
+		Notice notice = new Notice(action);
+		notices.add(notice);
+		
+		if ( thread == null ) {
+			Thread t = new Thread(MixNotifier::deliver, "Mix Notifier");
+			t.setDaemon(true);
+			thread = t;
+			t.start();
+		}
+		
+		return notice;
+	}
+	
+	// Stop acting on the given notice
+	public static void unregister(Notice notice) {
+		notices.remove(notice);
+	}
+	
+	// What our thread does: wait for a nudge, then act on whatever's been posted
+	// (A nudge that comes while we're busy isn't lost - it just means the next wait doesn't)
+	private static void deliver() {
+		while ( true ) {
+			LockSupport.park();
+			
+			for ( Notice notice : notices ) {
+				if ( notice.pending ) {
+					notice.pending = false;
+					try {
+						notice.action.run();
+					}
+					catch (RuntimeException e) {
+						// Don't let one bad handler take everyone else's notices down with it
+						e.printStackTrace();
+					}
+				}
+			}
+		}
+	}
+}
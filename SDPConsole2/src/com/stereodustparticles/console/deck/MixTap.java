@@ -0,0 +1,17 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * MixTap: Interface for anything that wants a copy of the finished mix (e.g.
+ * streaming and recording)
+ */
+package com.stereodustparticles.console.deck;
+
+public interface MixTap {
+	// Called from the mix thread with each block of the mix, in the mix engine's format
+	// The block is only good until this returns, and this must NEVER block (copy it and get out!)
+	public void tap(byte[] block, int len);
+}
@@ -0,0 +1,108 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * MixThread: Defines the thread that sums all active voices, one block at a time,
+ * and writes the result out to the sound card
+ */
+package com.stereodustparticles.console.deck;
+
+import javax.sound.sampled.AudioFormat;
+
+public class MixThread extends Thread {
+	private MixEngine engine;
+	
+	public MixThread(MixEngine engine) {
+		this.engine = engine;
+		setPriority(MAX_PRIORITY);
+		setDaemon(true);
+		start();
+	}
+	
+	@Override
+	public void run() {
+		AudioFormat format = engine.getFormat();
+		int channels = format.getChannels();
+		int blockSamples = MixEngine.BLOCK_FRAMES * channels;
+		long blockNanos = (long)(MixEngine.BLOCK_FRAMES * 1000000000.0 / format.getSampleRate());
+		
+		float[] mix = new float[blockSamples];
+		float[] voiceBuffer = new float[blockSamples];
+		byte[] outBuffer = new byte[MixEngine.BLOCK_FRAMES * format.getFrameSize()];
+		int frameSize = format.getFrameSize();
+		
+		// Check up on the output line about every tenth of a second
+		int blocksPerCheck = Math.max(1, Math.round(format.getSampleRate() / 10 / MixEngine.BLOCK_FRAMES));
+		int blockCount = 0;
+		boolean primed = false;
+		
+		while ( ! engine.isClosing() ) {
+			// Don't get any further ahead of the sound card than we have to
+			AudioOutput line = engine.getLine();
+			if ( line != null ) {
+				try {
+					waitForRoom(line, frameSize, blockNanos);
+				}
+				catch (InterruptedException e) {
+					break;
+				}
+			}
+			
+			// Whatever's still in the line goes out ahead of this block (which voices need to know to time their starts)
+			int queued = (line == null) ? 0 : line.getBufferSize() - line.available();
+			engine.setLineQueuedFrames(queued / frameSize);
+			
+			engine.mixBlock(mix, voiceBuffer);
+			
+			// The deck writers can top their voices back up now
+			PlayoutScheduler.blockMixed();
+			int nBytes = SimpleAudioConversion.pack(mix, outBuffer, blockSamples, format);
+			engine.tapBlock(outBuffer, nBytes);
+			
+			// The line (along with waitForRoom()) is what paces us
+			// If there's no line, pace ourselves so the decks still run in real time
+			if ( line != null ) {
+				// If the line ran completely dry, we fell behind
+				if ( primed && queued == 0 ) {
+					engine.notifyUnderrun();
+				}
+				
+				line.write(outBuffer, 0, nBytes);
+				engine.getLineStats().recordWrite(System.nanoTime());
+				primed = true;
+				
+				if ( ++blockCount >= blocksPerCheck ) {
+					blockCount = 0;
+					engine.getLineStats().recordFill((float)queued / line.getBufferSize());
+					engine.checkCalm();
+				}
+			}
+			else {
+				try {
+					Thread.sleep(blockNanos / 1000000, (int)(blockNanos % 1000000));
+				}
+				catch (InterruptedException e) {
+					break;
+				}
+			}
+		}
+	}
+	
+	// Sleep until the output line is down to the mix engine's target latency
+	// (or the line gets swapped out from under us)
+	private void waitForRoom(AudioOutput line, int frameSize, long blockNanos) throws InterruptedException {
+		while ( ! engine.isClosing() && engine.getLine() == line ) {
+			int queued = (line.getBufferSize() - line.available()) / frameSize;
+			int excess = queued - engine.getTargetFrames();
+			if ( excess <= 0 ) {
+				return;
+			}
+			
+			long nanos = excess * blockNanos / MixEngine.BLOCK_FRAMES;
+			Thread.sleep(nanos / 1000000, (int)(nanos % 1000000));
+		}
+	}
+}
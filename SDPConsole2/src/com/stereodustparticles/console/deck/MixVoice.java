@@ -0,0 +1,61 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * MixVoice: Base class for anything that feeds audio into the mix engine
+ */
+package com.stereodustparticles.console.deck;
+
+public abstract class MixVoice {
+	// Gain changes glide over about this many frames (~6 ms), which is quick enough to feel instant on a fader,
+	// but slow enough not to click
+	private static final int GAIN_SMOOTHING_FRAMES = 256;
+	
+	private final GainRamp gain = new GainRamp(GAIN_SMOOTHING_FRAMES);
+	private volatile float gainDB = 0.0f;
+	private volatile MixTap tap = null;
+	
+	// Set the gain of this voice, in dB
+	// The mixer ramps over to it, so this is cheap enough to call on every fader event
+	public void setGain(float dB) {
+		gainDB = dB;
+		gain.setTarget((float)Math.pow(10.0, dB / 20.0));
+	}
+	
+	// Return the gain of this voice, in dB
+	public float getGain() {
+		return gainDB;
+	}
+	
+	// Apply this voice's gain to the frames it just rendered, and add them to the mix (called from the mix thread)
+	protected void mixInto(float[] rendered, float[] mix, int frames, int channels) {
+		gain.mixInto(rendered, mix, frames, channels);
+	}
+	
+	// Set a tap to get a copy of everything this voice puts out (before its gain), or null for none
+	// While there's a tap, the voice gets tapped for every block, silent or not, so it lines up with the rest of the mix
+	public void setTap(MixTap tap) {
+		this.tap = tap;
+	}
+	
+	// Return this voice's tap (or null if it doesn't have one)
+	protected MixTap getTap() {
+		return tap;
+	}
+	
+	// Return whether or not the mixer should bother asking this voice for audio
+	public abstract boolean isActive();
+	
+	// Called on every active voice before any of them are rendered for the next block
+	// Anything that needs to affect other voices within the same block (i.e. segues) happens here
+	protected void prepare(int frames) {
+	}
+	
+	// Fill the given buffer with up to the given number of frames of audio (in the mix engine's format)
+	// Return the number of frames actually rendered - the mixer treats the rest as silence
+	// This is called from the mix thread, so it must NEVER block!
+	protected abstract int render(float[] buffer, int frames);
+}
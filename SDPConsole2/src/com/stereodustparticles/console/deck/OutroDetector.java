@@ -0,0 +1,81 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * OutroDetector: Watches decoded audio go by, frame by frame, and finds where the
+ * track fades out (i.e. where Stream 'n' Poop(TM) should segue)
+ */
+package com.stereodustparticles.console.deck;
+
+import java.util.function.LongConsumer;
+
+import javax.sound.sampled.AudioFormat;
+
+public class OutroDetector {
+	private static final float SNP_TRIP_POINT = 0.12f;
+	private static final double ENVELOPE_RELEASE = 0.05; // seconds
+	
+	private final LongConsumer onFound;
+	private final Runnable onLost;
+	
+	private int channels;
+	private float peak = 0f;
+	private float envelope = 0f;
+	private float envelopeDecay;
+	private long quietStart = -1; // Frame where the outro (seems to) start, or -1 if we haven't found it
+	
+	// onFound gets called with the frame where the outro starts, and onLost if it turns out it hasn't started after all
+	public OutroDetector(LongConsumer onFound, Runnable onLost) {
+		this.onFound = onFound;
+		this.onLost = onLost;
+	}
+	
+	// Start over on a new stream
+	// If keepPeak is set (i.e. we're just jumping around in the same track), hang on to the track's peak level
+	public void reset(AudioFormat format, boolean keepPeak) {
+		if ( ! keepPeak ) {
+			peak = 0f;
+		}
+		envelope = 0f;
+		quietStart = -1;
+		channels = format.getChannels();
+		envelopeDecay = (float)Math.exp(-1.0 / (ENVELOPE_RELEASE * format.getSampleRate()));
+	}
+	
+	// Look for the start of the outro in the given (unpacked) audio, which starts at the given frame of the stream
+	// Once we're close to the end of the track (inWindow), the first frame where the level drops (and stays) below the trip point
+	// becomes the segue point - if the level comes back up before playback gets there, the segue point is called off
+	public void process(float[] samples, int len, long firstFrame, boolean inWindow) {
+		for ( int i = 0; i + channels <= len; i += channels ) {
+			float framePeak = 0f;
+			for ( int c = 0; c < channels; c++ ) {
+				float level = Math.abs(samples[i + c]);
+				if ( level > framePeak ) {
+					framePeak = level;
+				}
+			}
+			
+			// If the peak of the current frame is higher than our record for the track, make it our new record
+			if ( framePeak > peak ) {
+				peak = framePeak;
+			}
+			
+			// Follow the envelope, so we don't mistake every zero crossing for the outro
+			envelope = Math.max(framePeak, envelope * envelopeDecay);
+			
+			if ( inWindow && envelope < (SNP_TRIP_POINT * peak) ) {
+				if ( quietStart == -1 ) {
+					quietStart = firstFrame + i / channels;
+					onFound.accept(quietStart);
+				}
+			}
+			else if ( quietStart != -1 ) {
+				quietStart = -1;
+				onLost.run();
+			}
+		}
+	}
+}
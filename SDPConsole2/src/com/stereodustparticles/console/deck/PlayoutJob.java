@@ -0,0 +1,35 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * PlayoutJob: A bit of decoding (or buffer shuffling) that gets done a chunk at a
+ * time by the playout scheduler's workers, instead of on a thread of its own
+ */
+package com.stereodustparticles.console.deck;
+
+public interface PlayoutJob {
+	// What getDeadline() returns when there's nothing to do right now
+	public static final long IDLE = Long.MAX_VALUE;
+	
+	// Return when (in System.nanoTime() terms) whatever we're feeding runs dry, i.e. how soon we need to be stepped again,
+	// or IDLE if there's nothing for us to do right now (e.g. our buffer is full)
+	// This gets called with the scheduler locked, so it mustn't take this job's own lock - stick to volatile fields
+	// and the buffers' own getters
+	public long getDeadline(long now);
+	
+	// If getDeadline() came back IDLE because of a buffer that empties out on its own (without anybody telling the scheduler),
+	// return when it'll be worth asking again - otherwise IDLE (whatever frees us up gives the scheduler a nudge)
+	// Same rules as getDeadline()
+	public long getRecheckTime(long now);
+	
+	// Return whether step() can block (i.e. it reads from a decoder, which could be sitting on a slow file)
+	// Jobs that never block get a worker of their own, so they never wait behind the ones that do
+	public boolean mayBlock();
+	
+	// Do one chunk of work, without ever waiting on a buffer to fill up or empty out
+	// Return false if it turned out there was nothing to do after all (so the scheduler leaves us be for a moment)
+	public boolean step();
+}
@@ -0,0 +1,277 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * PlayoutScheduler: Runs the decoding for every deck, preview and prefetch on one
+ * small pool of worker threads (the same size no matter how many decks there are)
+ * Whichever job is going to run out of audio soonest goes first, so the on-air deck
+ * with the emptiest buffer never waits behind a preview or a prefetch
+ * Jobs that might block (anything that reads from a decoder) and jobs that never do
+ * (the deck writers, which keep the voices topped up) get separate lanes, so a
+ * decoder that's stuck on a slow file can't hold up what's going out on the air
+ * Nobody polls - an idle worker sleeps until something it's waiting on changes (a
+ * step in the other lane, a block getting mixed, a wake() call), or until the next
+ * time a job asked to be checked on
+ */
+package com.stereodustparticles.console.deck;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+public class PlayoutScheduler {
+	// A job that turned out to have nothing to do gets left alone for this long
+	private static final long BENCH_NANOS = 2000000;
+	
+	// How far down the pecking order everything that isn't an on-air deck goes
+	// (added on to their deadlines, so they only win out once every on-air buffer has at least this much in it)
+	protected static final long PREVIEW_SLACK_NANOS = 10000000000L;
+	protected static final long OFF_AIR_SLACK_NANOS = 20000000000L;
+	protected static final long PREFETCH_SLACK_NANOS = 60000000000L;
+	
+	// The decoders get two workers between them (so one slow file doesn't hold everybody else up),
+	// and the writers get one all to themselves
+	private static final Lane decoders = new Lane("Playout Worker", 2);
+	private static final Lane writers = new Lane("Playout Writer", 1);
+	
+	// A set of jobs, and the workers that run them
+	private static class Lane {
+		final String name;
+		final int size;
+		final List<Slot> slots = new ArrayList<Slot>();
+		volatile Thread[] workers = null;
+		
+		Lane(String name, int size) {
+			this.name = name;
+			this.size = size;
+		}
+		
+		// Start the workers, if they aren't already running
+		void start() {
+			if ( workers != null ) {
+				return;
+			}
+			
+			Thread[] started = new Thread[size];
+			for ( int i = 0; i < size; i++ ) {
+				started[i] = new Thread(() -> work(this), (size == 1) ? name : name + " " + (i + 1));
+				
+				// Just under the mix thread - nothing else should get in the way of the decoding
+				started[i].setPriority(Thread.MAX_PRIORITY - 1);
+				started[i].setDaemon(true);
+			}
+			workers = started;
+			for ( Thread worker : started ) {
+				worker.start();
+			}
+		}
+		
+		// Give every worker (other than the given one) a nudge, so it takes another look at its jobs
+		// This never blocks or allocates, so it's safe to call from anywhere, the mix thread included
+		void nudge(Thread except) {
+			Thread[] workers = this.workers;
+			if ( workers == null ) {
+				return;
+			}
+			
+			for ( int i = 0; i < workers.length; i++ ) {
+				if ( workers[i] != except ) {
+					LockSupport.unpark(workers[i]);
+				}
+			}
+		}
+		
+		// Return whether the given thread is one of our current workers (as opposed to one left over from before a cleanUp())
+		boolean isWorker(Thread t) {
+			Thread[] workers = this.workers;
+			if ( workers == null ) {
+				return false;
+			}
+			
+			for ( Thread worker : workers ) {
+				if ( worker == t ) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+	
+	// A job, and how it's getting on
+	private static class Slot {
+		final PlayoutJob job;
+		boolean busy = false; // Being stepped by a worker right now
+		long benchedUntil;
+		
+		Slot(PlayoutJob job) {
+			this.job = job;
+			benchedUntil = System.nanoTime();
+		}
+	}
+	
+	// Start handing out work to the given job (starting its lane's workers if they aren't already running)
+	public static synchronized void add(PlayoutJob job) {
+		Lane lane = job.mayBlock() ? decoders : writers;
+		lane.slots.add(new Slot(job));
+		lane.start();
+		lane.nudge(null);
+	}
+	
+	// Stop handing out work to the given job
+	// If a worker is in the middle of stepping it, that step still finishes
+	public static synchronized void remove(PlayoutJob job) {
+		Lane lane = job.mayBlock() ? decoders : writers;
+		for ( int i = 0; i < lane.slots.size(); i++ ) {
+			if ( lane.slots.get(i).job == job ) {
+				lane.slots.remove(i);
+				return;
+			}
+		}
+	}
+	
+	// Let the workers know that something just got more urgent (e.g. PLAY got pressed), rather than waiting for them to notice
+	public static void wake() {
+		writers.nudge(null);
+		decoders.nudge(null);
+	}
+	
+	// Let the writers know a block just got mixed (so the voices have room again, or have played out)
+	// Called from the mix thread, so this takes no locks
+	protected static void blockMixed() {
+		writers.nudge(null);
+	}
+	
+	// Stop the workers (called on the way out)
+	public static void cleanUp() {
+		List<Thread> stopping = new ArrayList<Thread>();
+		synchronized (PlayoutScheduler.class) {
+			for ( Lane lane : new Lane[] {decoders, writers} ) {
+				if ( lane.workers != null ) {
+					for ( Thread worker : lane.workers ) {
+						stopping.add(worker);
+					}
+				}
+				lane.workers = null;
+				lane.slots.clear();
+			}
+		}
+		
+		for ( Thread worker : stopping ) {
+			worker.interrupt();
+		}
+	}
+	
+	// What each worker does: step whichever job in its lane has the soonest deadline, over and over
+	private static void work(Lane lane) {
+		Thread me = Thread.currentThread();
+		Lane other = (lane == decoders) ? writers : decoders;
+		while (true) {
+			Slot next;
+			long sleepUntil = PlayoutJob.IDLE;
+			synchronized (PlayoutScheduler.class) {
+				if ( ! lane.isWorker(me) ) {
+					return;
+				}
+				
+				long now = System.nanoTime();
+				next = pick(lane, now);
+				if ( next == null ) {
+					sleepUntil = nextCheck(lane, now);
+				}
+				else {
+					next.busy = true;
+				}
+			}
+			
+			// Nothing to do - sleep until somebody nudges us, or it's time to check back on somebody
+			// (A nudge that comes in between here and there isn't lost - the park just returns straight away)
+			if ( next == null ) {
+				if ( sleepUntil == PlayoutJob.IDLE ) {
+					LockSupport.park();
+				}
+				else {
+					LockSupport.parkNanos(sleepUntil - System.nanoTime());
+				}
+				
+				if ( me.isInterrupted() ) {
+					return;
+				}
+				continue;
+			}
+			
+			boolean worked = false;
+			try {
+				worked = next.job.step();
+			}
+			catch (RuntimeException e) {
+				// Don't let one bad track take a worker down with it
+				e.printStackTrace();
+			}
+			
+			synchronized (PlayoutScheduler.class) {
+				next.busy = false;
+				if ( ! worked ) {
+					next.benchedUntil = System.nanoTime() + BENCH_NANOS;
+				}
+			}
+			
+			// Whatever we just did may well have given somebody else something to do
+			// (i.e. a reader filled a ring for its writer, or a writer made room in a ring for its reader)
+			if ( worked ) {
+				other.nudge(null);
+				lane.nudge(me);
+			}
+		}
+	}
+	
+	// Return the free job in the given lane with the soonest deadline, or null if nobody's got anything to do
+	private static Slot pick(Lane lane, long now) {
+		Slot best = null;
+		long bestDeadline = PlayoutJob.IDLE;
+		for ( int i = 0; i < lane.slots.size(); i++ ) {
+			Slot slot = lane.slots.get(i);
+			if ( slot.busy || slot.benchedUntil - now > 0 ) {
+				continue;
+			}
+			
+			long deadline = slot.job.getDeadline(now);
+			if ( deadline != PlayoutJob.IDLE && (best == null || deadline - bestDeadline < 0) ) {
+				best = slot;
+				bestDeadline = deadline;
+			}
+		}
+		
+		return best;
+	}
+	
+	// Return when the soonest job in the given lane is worth another look without anybody nudging us
+	// (i.e. when its time on the bench is up, or when a buffer nobody tells us about should have room),
+	// or IDLE if there's nobody to look at until we get nudged
+	private static long nextCheck(Lane lane, long now) {
+		long soonest = PlayoutJob.IDLE;
+		for ( int i = 0; i < lane.slots.size(); i++ ) {
+			Slot slot = lane.slots.get(i);
+			if ( slot.busy ) {
+				continue;
+			}
+			
+			long check = (slot.benchedUntil - now > 0) ? slot.benchedUntil : slot.job.getRecheckTime(now);
+			if ( check == PlayoutJob.IDLE ) {
+				continue;
+			}
+			
+			// Don't spin on a buffer that's only a hair short of having room
+			if ( check - now < BENCH_NANOS ) {
+				check = now + BENCH_NANOS;
+			}
+			if ( soonest == PlayoutJob.IDLE || check - soonest < 0 ) {
+				soonest = check;
+			}
+		}
+		
+		return soonest;
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * PlayoutStats: Keeps track of underruns, buffer fill levels and timings for a deck
+ * (or the output line), so we can tell when the box is struggling to keep up
+ */
+package com.stereodustparticles.console.deck;
+
+public class PlayoutStats {
+	// Number of fill level samples to keep (at one per tenth of a second, this is a minute's worth)
+	private static final int HISTORY_LENGTH = 600;
+	
+	private final float[] fillHistory = new float[HISTORY_LENGTH];
+	private int historyPos = 0;
+	private int historyCount = 0;
+	
+	private volatile int underruns = 0;
+	private volatile long lastUnderrun = 0;
+	
+	// How long it took from pressing PLAY to the first sample hitting the sound card (in nanoseconds)
+	private long lastStartLatency = -1;
+	private long maxStartLatency = 0;
+	private long totalStartLatency = 0;
+	private int starts = 0;
+	
+	// How far apart the writes to the voice (or line) come while we're playing, and how long each decoder read takes
+	// Timestamps are System.nanoTime() - 0 means there's nothing to go by (i.e. we've just started, or no read is underway)
+	private final LatencyHistogram writeJitter = new LatencyHistogram();
+	private final LatencyHistogram readLatency = new LatencyHistogram();
+	private volatile long lastWrite = 0;
+	private volatile long readStarted = 0;
+	
+	// Record the current fill level of the buffer, as a fraction of its size
+	public synchronized void recordFill(float fraction) {
+		fillHistory[historyPos] = fraction;
+		historyPos = (historyPos + 1) % HISTORY_LENGTH;
+		if ( historyCount < HISTORY_LENGTH ) {
+			historyCount++;
+		}
+	}
+	
+	// Record that the buffer ran dry
+	public void recordUnderrun() {
+		underruns++;
+		lastUnderrun = System.nanoTime();
+	}
+	
+	// Return the number of underruns so far
+	public int getUnderruns() {
+		return underruns;
+	}
+	
+	// Return whether or not there's been an underrun within the given number of milliseconds
+	public boolean underrunWithin(long millis) {
+		return lastUnderrun != 0 && (System.nanoTime() - lastUnderrun) < millis * 1000000L;
+	}
+	
+	// Record how long it took from pressing PLAY to the first sample hitting the sound card
+	public synchronized void recordStartLatency(long nanos) {
+		lastStartLatency = nanos;
+		maxStartLatency = Math.max(maxStartLatency, nanos);
+		totalStartLatency += nanos;
+		starts++;
+	}
+	
+	// Return the PLAY latency of the last start, in milliseconds (or -1 if we haven't started yet)
+	public synchronized double getLastStartLatency() {
+		return (lastStartLatency < 0) ? -1 : lastStartLatency / 1000000.0;
+	}
+	
+	// Return the average PLAY latency so far, in milliseconds (or -1 if we haven't started yet)
+	public synchronized double getAverageStartLatency() {
+		return (starts == 0) ? -1 : totalStartLatency / (starts * 1000000.0);
+	}
+	
+	// Return the worst PLAY latency so far, in milliseconds
+	public synchronized double getMaxStartLatency() {
+		return maxStartLatency / 1000000.0;
+	}
+	
+	// Note that audio just got written out (only ever called from one thread at a time)
+	public void recordWrite(long now) {
+		long last = lastWrite;
+		if ( last != 0 ) {
+			writeJitter.record(now - last);
+		}
+		lastWrite = now;
+	}
+	
+	// Forget when the last write was, so that a pause (e.g. being stopped) doesn't get counted as jitter
+	public void resetWriteClock() {
+		lastWrite = 0;
+	}
+	
+	// Return when audio was last written out (0 if it hasn't been since the write clock was reset)
+	public long getLastWrite() {
+		return lastWrite;
+	}
+	
+	// Note that a decoder read is starting
+	public void beginRead(long now) {
+		readStarted = now;
+	}
+	
+	// Note that the decoder read that started with beginRead() is done
+	public void endRead(long now) {
+		readLatency.record(now - readStarted);
+		readStarted = 0;
+	}
+	
+	// Return how long the decoder read that's underway right now has been going (0 if there isn't one)
+	public long getReadNanos(long now) {
+		long started = readStarted;
+		return (started == 0) ? 0 : now - started;
+	}
+	
+	public LatencyHistogram getWriteJitter() {
+		return writeJitter;
+	}
+	
+	public LatencyHistogram getReadLatency() {
+		return readLatency;
+	}
+	
+	// Return the recorded fill levels, oldest first
+	public synchronized float[] getFillHistory() {
+		float[] ret = new float[historyCount];
+		int start = (historyPos - historyCount + HISTORY_LENGTH) % HISTORY_LENGTH;
+		for ( int i = 0; i < historyCount; i++ ) {
+			ret[i] = fillHistory[(start + i) % HISTORY_LENGTH];
+		}
+		return ret;
+	}
+}
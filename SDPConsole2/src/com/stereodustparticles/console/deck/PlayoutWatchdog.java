@@ -0,0 +1,135 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * PlayoutWatchdog: Keeps an eye out for decks that have gone quiet while they're
+ * supposed to be playing, decoder reads that never come back, and an output line
+ * that's stopped taking audio
+ * Each of those fires a PLAYOUT_STALL (once per stall, not once per check), and if
+ * the prefs say so, we try to get back on the air - a stalled deck hands off to the
+ * next one, and a stalled line gets closed and opened again
+ */
+package com.stereodustparticles.console.deck;
+
+import com.stereodustparticles.console.event.Event;
+import com.stereodustparticles.console.event.EventBus;
+import com.stereodustparticles.console.event.EventType;
+import com.stereodustparticles.console.pref.Prefs;
+
+public class PlayoutWatchdog extends Thread {
+	// How often to check in (the stall threshold is in the prefs, and is a good deal longer than this)
+	private static final long POLL_MILLIS = 100;
+	
+	private final Deck[] decks;
+	
+	// When each thing we're watching first looked stuck this time around (0 if it's fine), and whether we've said so yet
+	private final long[] deckQuietSince;
+	private final boolean[] deckAlarmed;
+	private final boolean[] readAlarmed;
+	private boolean lineAlarmed = false;
+	
+	public PlayoutWatchdog(Deck[] decks) {
+		super("Playout Watchdog");
+		this.decks = decks;
+		deckQuietSince = new long[decks.length];
+		deckAlarmed = new boolean[decks.length];
+		readAlarmed = new boolean[decks.length];
+		setDaemon(true);
+		start();
+	}
+	
+	@Override
+	public void run() {
+		while ( true ) {
+			long threshold = Prefs.loadInt(Prefs.WATCHDOG_STALL_MILLIS) * 1000000L;
+			boolean recover = Prefs.loadBoolean(Prefs.WATCHDOG_RECOVER);
+			long now = System.nanoTime();
+			
+			for ( int i = 0; i < decks.length; i++ ) {
+				checkDeck(i, now, threshold, recover);
+			}
+			checkLine(now, threshold, recover);
+			
+			try {
+				Thread.sleep(POLL_MILLIS);
+			}
+			catch (InterruptedException e) {
+				break;
+			}
+		}
+	}
+	
+	// See whether the given deck has gone quiet on the air, or is stuck waiting on its decoder
+	private void checkDeck(int i, long now, long threshold, boolean recover) {
+		Deck deck = decks[i];
+		StreamVoice voice = deck.getVoice();
+		
+		// A deck that's playing (and not being held for a segue) with nothing at all in its voice is putting out dead air
+		if ( deck.isPlaying() && ! deck.isClosing() && voice.isActive() && voice.getBufferedFrames() == 0 ) {
+			if ( deckQuietSince[i] == 0 ) {
+				deckQuietSince[i] = now;
+			}
+			
+			long stalled = now - deckQuietSince[i];
+			if ( stalled > threshold && ! deckAlarmed[i] ) {
+				deckAlarmed[i] = true;
+				alarm(deck.getNumber(), stalled, recover ? "Deck went quiet - handing off to the next deck" : "Deck went quiet");
+				if ( recover ) {
+					deck.failOver();
+				}
+			}
+		}
+		else {
+			deckQuietSince[i] = 0;
+			deckAlarmed[i] = false;
+		}
+		
+		// A decoder read that hasn't come back (e.g. the file's on a network share that went away)
+		// There's nothing we can do to hurry that along - if it's on the air, the check above will catch the dead air
+		long reading = deck.getStats().getReadNanos(now);
+		if ( reading > threshold ) {
+			if ( ! readAlarmed[i] ) {
+				readAlarmed[i] = true;
+				alarm(deck.getNumber(), reading, "Decoder stopped responding");
+			}
+		}
+		else {
+			readAlarmed[i] = false;
+		}
+	}
+	
+	// See whether the output line has stopped taking audio
+	private void checkLine(long now, long threshold, boolean recover) {
+		MixEngine master = MixEngine.getMaster();
+		if ( master == null ) {
+			return;
+		}
+		
+		long lastWrite = master.getLineStats().getLastWrite();
+		long stalled = now - lastWrite;
+		if ( lastWrite != 0 && stalled > threshold ) {
+			if ( ! lineAlarmed ) {
+				lineAlarmed = true;
+				
+				// Only the sound card is worth reopening - a file would get clobbered, and the virtual clock can't get stuck
+				boolean reopen = recover && master.getLine() instanceof JavaSoundOutput;
+				alarm(0, stalled, reopen ? "Output line stopped taking audio - reopening it" : "Output line stopped taking audio");
+				if ( reopen ) {
+					master.reopenLine();
+				}
+			}
+		}
+		else {
+			lineAlarmed = false;
+		}
+	}
+	
+	// Let everyone know something's stuck
+	private void alarm(int deckNum, long stalledNanos, String what) {
+		System.err.println("Playout stall on " + (deckNum == 0 ? "output line" : "deck " + deckNum) + " (" + stalledNanos / 1000000 + " ms): " + what);
+		EventBus.fireEvent(new Event(EventType.PLAYOUT_STALL, deckNum, (int)(stalledNanos / 1000000), what));
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * PolyphaseResampler: Converts interleaved float audio from one sample rate to
+ * another, using a bank of windowed-sinc filters (one per fractional position)
+ */
+package com.stereodustparticles.console.deck;
+
+public class PolyphaseResampler {
+	// Filter length (in input frames), and number of fractional positions the filter bank covers
+	// In-between positions are interpolated from the two nearest filters
+	private static final int TAPS = 32;
+	private static final int PHASES = 256;
+	
+	// Keep the passband a little shy of Nyquist, so the transition band has somewhere to go
+	private static final double PASSBAND = 0.95;
+	
+	private static final int HALF = TAPS / 2;
+	
+	private final int channels;
+	private final double step; // Input frames per output frame
+	private final float[] filters; // (PHASES + 1) filters of TAPS coefficients each
+	
+	// Input that hasn't been fully used yet (interleaved), along with enough history to run the filter over it
+	private float[] pending;
+	private int pendingFrames;
+	private double pos; // Position of the next output frame, in frames from the start of pending
+	
+	public PolyphaseResampler(int channels, double inRate, double outRate) {
+		this.channels = channels;
+		step = inRate / outRate;
+		
+		// When going down in rate, the cutoff has to come down with it
+		double cutoff = Math.min(1.0, 1.0 / step) * PASSBAND;
+		
+		filters = new float[(PHASES + 1) * TAPS];
+		for ( int p = 0; p <= PHASES; p++ ) {
+			double frac = (double)p / PHASES;
+			double sum = 0.0;
+			
+			for ( int t = 0; t < TAPS; t++ ) {
+				double d = (t - HALF + 1) - frac; // Distance from the output position
+				double h = cutoff * sinc(cutoff * d) * blackman(d);
+				filters[p * TAPS + t] = (float)h;
+				sum += h;
+			}
+			
+			// Normalize, so DC comes through at unity gain no matter the position
+			for ( int t = 0; t < TAPS; t++ ) {
+				filters[p * TAPS + t] /= sum;
+			}
+		}
+		
+		pending = new float[TAPS * 4 * channels];
+		reset();
+	}
+	
+	private static double sinc(double x) {
+		if ( x == 0.0 ) {
+			return 1.0;
+		}
+		
+		return Math.sin(Math.PI * x) / (Math.PI * x);
+	}
+	
+	// Blackman window spanning the filter (d runs from -HALF to +HALF)
+	private static double blackman(double d) {
+		double x = (d + HALF) / TAPS;
+		if ( x <= 0.0 || x >= 1.0 ) {
+			return 0.0;
+		}
+		
+		return 0.42 - 0.5 * Math.cos(2 * Math.PI * x) + 0.08 * Math.cos(4 * Math.PI * x);
+	}
+	
+	// Forget all history (i.e. start over at a discontinuity)
+	public void reset() {
+		// Start with silence behind us, so the first output lands right on the first input frame
+		pendingFrames = HALF - 1;
+		for ( int i = 0; i < pendingFrames * channels; i++ ) {
+			pending[i] = 0f;
+		}
+		pos = HALF - 1;
+	}
+	
+	// Return the maximum number of output frames that can result from feeding in the given number of input frames
+	public int maxOutputFrames(int inFrames) {
+		return (int)Math.ceil((inFrames + TAPS) / step) + 1;
+	}
+	
+	// Feed in some (interleaved) input frames, and write as many output frames as they allow to out, starting at the given frame
+	// Return the number of output frames produced
+	public int process(float[] in, int inFrames, float[] out, int outOffset) {
+		// Tack the new input onto whatever we had left
+		int needed = (pendingFrames + inFrames) * channels;
+		if ( pending.length < needed ) {
+			float[] bigger = new float[needed * 2];
+			System.arraycopy(pending, 0, bigger, 0, pendingFrames * channels);
+			pending = bigger;
+		}
+		System.arraycopy(in, 0, pending, pendingFrames * channels, inFrames * channels);
+		pendingFrames += inFrames;
+		
+		// Produce output for as long as we have the whole filter's worth of input around it
+		int produced = 0;
+		while ( (int)pos + HALF < pendingFrames ) {
+			int center = (int)pos;
+			double phase = (pos - center) * PHASES;
+			int p = (int)phase;
+			float pf = (float)(phase - p);
+			int f0 = p * TAPS;
+			int f1 = f0 + TAPS;
+			int base = (center - HALF + 1) * channels;
+			int o = (outOffset + produced) * channels;
+			
+			for ( int c = 0; c < channels; c++ ) {
+				float acc = 0f;
+				int idx = base + c;
+				for ( int t = 0; t < TAPS; t++ ) {
+					float coeff = filters[f0 + t] + (filters[f1 + t] - filters[f0 + t]) * pf;
+					acc += coeff * pending[idx];
+					idx += channels;
+				}
+				out[o + c] = acc;
+			}
+			
+			produced++;
+			pos += step;
+		}
+		
+		// Throw out whatever's too far behind us to matter anymore
+		int drop = (int)pos - HALF + 1;
+		if ( drop > 0 ) {
+			drop = Math.min(drop, pendingFrames);
+			System.arraycopy(pending, drop * channels, pending, 0, (pendingFrames - drop) * channels);
+			pendingFrames -= drop;
+			pos -= drop;
+		}
+		
+		return produced;
+	}
+	
+	// Push the last few input frames through (by feeding in silence), for when there's no more input coming
+	// Return the number of output frames produced
+	public int finish(float[] out, int outOffset) {
+		return process(new float[TAPS * channels], HALF, out, outOffset);
+	}
+}
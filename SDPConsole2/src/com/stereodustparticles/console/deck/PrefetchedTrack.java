@@ -0,0 +1,249 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * PrefetchedTrack: A track that's been downloaded, opened and had its intro
+ * decoded ahead of time, waiting to be swapped into a deck
+ */
+package com.stereodustparticles.console.deck;
+
+import java.io.IOException;
+import java.net.URL;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
+import com.stereodustparticles.console.cache.CachedAudio;
+import com.stereodustparticles.console.library.Library;
+import com.stereodustparticles.console.library.LibraryEntry;
+import com.stereodustparticles.console.library.LibraryManager;
+
+public class PrefetchedTrack implements PlayoutJob {
+	private final LibraryEntry entry;
+	private final String library;
+	private final String location;
+	private final boolean random;
+	
+	private URL file = null;
+	private AudioInputStream rest = null;
+	private RetainedIntro intro = null;
+	private int duration = 0;
+	
+	// While the intro's being decoded
+	private volatile AudioInputStream decoding = null;
+	private RetainedIntro capturing = null;
+	private long leadIn = 0;
+	private boolean cued = false;
+	private byte[] buffer = null; // From the audio pool, while we're decoding
+	
+	private boolean done = false;
+	private boolean failed = false;
+	private volatile boolean discarded = false;
+	
+	public PrefetchedTrack(LibraryEntry entry, boolean random) {
+		this.entry = entry;
+		this.random = random;
+		library = entry.getLibraryName();
+		location = LibraryManager.getLibraryForName(library).getPathInLibrary(entry);
+	}
+	
+	// Download the track (if need be) and open it, then hand it over to the playout scheduler to skip its
+	// leading silence and decode its intro (see step())
+	// The decoder is left open right where the intro ends
+	protected void fill() {
+		AudioInputStream decoded = null;
+		
+		try {
+			Library lib = LibraryManager.getLibraryForName(library);
+			CachedAudio.cacheAndLoad(lib.getURLFromPath(location), (url) -> file = url);
+			if ( file == null ) {
+				throw new IOException("Download of " + location + " didn't pan out");
+			}
+			
+			decoded = Deck.openDecoded(file);
+			duration = (entry.getDuration() == -1) ? Deck.readDuration(file) : entry.getDuration();
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			failed = true;
+		}
+		
+		synchronized (this) {
+			if ( failed || discarded ) {
+				closeQuietly(decoded);
+				done = true;
+				notifyAll();
+				return;
+			}
+			
+			decoding = decoded;
+			capturing = new RetainedIntro(decoded.getFormat(), Deck.INTRO_RETAIN_SEC);
+			buffer = AudioPool.takeBytes(4096);
+		}
+		PlayoutScheduler.add(this);
+	}
+	
+	// There's no hurry on any of this - it only gets done once everything on the air has plenty in hand
+	@Override
+	public long getDeadline(long now) {
+		return (decoding == null || discarded) ? IDLE : now + PlayoutScheduler.PREFETCH_SLACK_NANOS;
+	}
+	
+	@Override
+	public long getRecheckTime(long now) {
+		return IDLE;
+	}
+	
+	@Override
+	public boolean mayBlock() {
+		return true;
+	}
+	
+	// Decode a chunk of the intro
+	@Override
+	public synchronized boolean step() {
+		if ( decoding == null || discarded ) {
+			return false;
+		}
+		
+		try {
+			AudioFormat format = decoding.getFormat();
+			
+			// Don't read past the end of the intro, or we'd lose whatever didn't fit
+			int n = decoding.read(buffer, 0, Math.min(buffer.length, capturing.getRoom()));
+			if ( n == -1 ) {
+				capturing.markEOF();
+			}
+			else if ( n == 0 ) {
+				return false;
+			}
+			
+			// Skip the leading silence, same as a deck reader would
+			else if ( ! cued ) {
+				if ( AudioKungFu.getPeak(buffer, n, format) > DeckReader.CUE_THRESHOLD ) {
+					cued = true;
+					capturing.setLeadIn(leadIn);
+					capturing.capture(buffer, n);
+				}
+				else {
+					leadIn += n;
+				}
+			}
+			else {
+				capturing.capture(buffer, n);
+			}
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+			failed = true;
+			closeQuietly(decoding);
+		}
+		
+		// All done?
+		if ( failed || capturing.isComplete() ) {
+			if ( ! failed ) {
+				rest = decoding;
+				intro = capturing;
+			}
+			else {
+				capturing.release();
+			}
+			decoding = null;
+			capturing = null;
+			AudioPool.give(buffer);
+			buffer = null;
+			done = true;
+			notifyAll();
+			PlayoutScheduler.remove(this);
+		}
+		
+		return true;
+	}
+	
+	// Wait for the track to finish prefetching
+	// Return true if it's good to go
+	protected synchronized boolean await() {
+		while ( ! done && ! discarded ) {
+			try {
+				wait();
+			}
+			catch (InterruptedException e) {
+				return false;
+			}
+		}
+		
+		return ! failed && ! discarded;
+	}
+	
+	// Throw out the track (and stop working on it, if we still were)
+	protected synchronized void discard() {
+		discarded = true;
+		PlayoutScheduler.remove(this);
+		closeQuietly(decoding);
+		decoding = null;
+		closeQuietly(rest);
+		rest = null;
+		
+		// Nobody's going to claim the intro now (and we're not in the middle of a step, since we've got the lock)
+		if ( capturing != null ) {
+			capturing.release();
+			capturing = null;
+		}
+		if ( intro != null ) {
+			intro.release();
+			intro = null;
+		}
+		AudioPool.give(buffer);
+		buffer = null;
+		notifyAll();
+	}
+	
+	// Return whether or not this is the track at the given library location
+	public boolean matches(String library, String location) {
+		return this.library.equals(library) && this.location.equals(location);
+	}
+	
+	// Return whether or not this is the same track as the given library entry
+	public boolean matches(LibraryEntry other) {
+		return other != null && matches(other.getLibraryName(), LibraryManager.getLibraryForName(other.getLibraryName()).getPathInLibrary(other));
+	}
+	
+	// Return whether or not this track was picked randomly (as opposed to coming from the playlist)
+	public boolean isRandom() {
+		return random;
+	}
+	
+	public LibraryEntry getEntry() {
+		return entry;
+	}
+	
+	public URL getFile() {
+		return file;
+	}
+	
+	public RetainedIntro getIntro() {
+		return intro;
+	}
+	
+	public AudioInputStream getRest() {
+		return rest;
+	}
+	
+	public int getDuration() {
+		return duration;
+	}
+	
+	private static void closeQuietly(AudioInputStream in) {
+		if ( in != null ) {
+			try {
+				in.close();
+			}
+			catch (IOException e) {
+				// Don't care
+			}
+		}
+	}
+}
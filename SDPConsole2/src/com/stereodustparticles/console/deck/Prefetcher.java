@@ -0,0 +1,93 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * Prefetcher: Gets the next track Stream 'n' Poop(TM) is going to load ready
+ * while the current one plays, so loading it onto a deck is just a swap
+ */
+package com.stereodustparticles.console.deck;
+
+import com.stereodustparticles.console.Utils;
+import com.stereodustparticles.console.library.LibraryEntry;
+import com.stereodustparticles.console.multi.MultiConsole;
+import com.stereodustparticles.console.playlist.Playlist;
+
+public class Prefetcher {
+	// Only one track gets prefetched at a time (the intro buffer is a few MB)
+	private static PrefetchedTrack pending = null;
+	
+	// Start getting the next track ready, unless the one we've got is still the right one
+	public static void prefetchNext() {
+		if ( ! Decks.snpIsEnabled() || MultiConsole.getDeckMode() == 'S' ) {
+			return;
+		}
+		
+		// The next tentative track always wins; otherwise, a random pick will do
+		LibraryEntry next = Playlist.peekLoadableTentative();
+		
+		synchronized (Prefetcher.class) {
+			if ( pending != null ) {
+				if ( (next == null && pending.isRandom()) || pending.matches(next) ) {
+					return;
+				}
+				
+				// The playlist changed out from under us
+				pending.discard();
+				pending = null;
+			}
+		}
+		
+		boolean random = false;
+		if ( next == null ) {
+			next = Deck.pickRandomTrack();
+			random = true;
+		}
+		
+		PrefetchedTrack track = new PrefetchedTrack(next, random);
+		synchronized (Prefetcher.class) {
+			if ( pending != null ) {
+				// Someone beat us to it
+				return;
+			}
+			pending = track;
+		}
+		
+		Utils.runInBackground(() -> track.fill());
+	}
+	
+	// Return the track we're getting ready if it was picked randomly, or null if it wasn't (or there is none)
+	public static synchronized LibraryEntry getRandomPick() {
+		if ( pending != null && pending.isRandom() ) {
+			return pending.getEntry();
+		}
+		
+		return null;
+	}
+	
+	// Hand over the prefetched track if it's the one at the given library location (waiting for it to finish if need be)
+	// Otherwise, return null and leave it be
+	public static PrefetchedTrack claim(String library, String location) {
+		PrefetchedTrack track;
+		synchronized (Prefetcher.class) {
+			if ( pending == null || ! pending.matches(library, location) ) {
+				return null;
+			}
+			
+			track = pending;
+			pending = null;
+		}
+		
+		return track.await() ? track : null;
+	}
+	
+	// Throw out whatever we've got
+	public static synchronized void discard() {
+		if ( pending != null ) {
+			pending.discard();
+			pending = null;
+		}
+	}
+}
@@ -0,0 +1,273 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * Preview: Plays a track out of a sound card of its own (i.e. the DJ's headphones),
+ * so it can be checked out without loading it onto a deck
+ * This stays well away from the on-air chain - it has its own line and a small buffer,
+ * and its decoding goes through the playout scheduler well behind the on-air decks'
+ */
+package com.stereodustparticles.console.deck;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Line;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.Mixer;
+import javax.sound.sampled.SourceDataLine;
+
+import com.stereodustparticles.console.Utils;
+import com.stereodustparticles.console.cache.CachedAudio;
+import com.stereodustparticles.console.library.LibraryEntry;
+import com.stereodustparticles.console.pref.Prefs;
+import com.stereodustparticles.console.ui.Microwave;
+
+import javafx.application.Platform;
+
+public class Preview {
+	// Milliseconds of audio to keep queued up in the preview line
+	private static final int LINE_BUFFER_MILLIS = 250;
+	
+	private static PreviewJob player = null;
+	
+	// Start previewing the given track (stopping whatever was previewing before)
+	// onDone gets run on the application thread once the preview is over, whether it played out or got stopped
+	public static synchronized void play(LibraryEntry entry, Runnable onDone) {
+		stop();
+		PreviewJob job = new PreviewJob(entry.getLocationAsURL(), onDone);
+		player = job;
+		Utils.runInBackground(() -> job.open());
+	}
+	
+	// Stop previewing
+	public static synchronized void stop() {
+		if ( player != null ) {
+			player.finish();
+			player = null;
+		}
+	}
+	
+	// Return whether or not something's previewing right now
+	public static synchronized boolean isPlaying() {
+		return player != null && ! player.isFinished();
+	}
+	
+	// Clean up (called on the way out)
+	public static void cleanUp() {
+		stop();
+	}
+	
+	// Return the names of all the sound cards that can play audio (for picking the preview one)
+	public static List<String> getMixerNames() {
+		List<String> names = new ArrayList<String>();
+		for ( Mixer.Info info : AudioSystem.getMixerInfo() ) {
+			if ( AudioSystem.getMixer(info).isLineSupported(new Line.Info(SourceDataLine.class)) ) {
+				names.add(info.getName());
+			}
+		}
+		return names;
+	}
+	
+	// Open a line on the preview sound card
+	private static SourceDataLine openLine(AudioFormat format) throws LineUnavailableException {
+		String name = Prefs.loadString(Prefs.PREVIEW_MIXER);
+		
+		// No falling back on the default sound card here - that's the one that's on the air!
+		for ( Mixer.Info info : AudioSystem.getMixerInfo() ) {
+			if ( info.getName().equals(name) ) {
+				SourceDataLine line = AudioSystem.getSourceDataLine(format, info);
+				int bufferFrames = (int)(format.getSampleRate() * LINE_BUFFER_MILLIS / 1000);
+				line.open(format, bufferFrames * format.getFrameSize());
+				line.start();
+				return line;
+			}
+		}
+		
+		throw new LineUnavailableException(name.isEmpty() ? "No preview output has been chosen" : "The preview output (" + name + ") isn't there anymore");
+	}
+	
+	private static class PreviewJob implements PlayoutJob {
+		private final URL file;
+		private final Runnable onDone;
+		private AudioInputStream audio = null;
+		private volatile SourceDataLine line = null;
+		private final byte[] buffer = new byte[4096];
+		private int leftover = 0;
+		private volatile long endsAt = -1; // Once we've hit EOF, when the line plays out (System.nanoTime())
+		private volatile boolean finished = false;
+		private int bytesPerSecond;
+		
+		PreviewJob(URL file, Runnable onDone) {
+			this.file = file;
+			this.onDone = onDone;
+		}
+		
+		// Get the track and the line ready, then hand ourselves over to the playout scheduler
+		void open() {
+			try {
+				// If it's a remote file, use (or fill) the download cache, same as the decks do
+				CachedAudio.cacheAndLoad(file, (toPlay) -> {
+					try {
+						AudioInputStream decoded = Deck.openDecoded(toPlay);
+						AudioFormat format = decoded.getFormat();
+						SourceDataLine opened;
+						try {
+							opened = openLine(format);
+						}
+						catch (LineUnavailableException e) {
+							decoded.close();
+							throw e;
+						}
+						
+						synchronized (this) {
+							if ( finished ) {
+								decoded.close();
+								opened.close();
+								return;
+							}
+							
+							audio = decoded;
+							bytesPerSecond = (int)format.getSampleRate() * format.getFrameSize();
+							line = opened;
+						}
+						PlayoutScheduler.add(this);
+					}
+					catch (Exception e) {
+						fail(e);
+					}
+				});
+			}
+			catch (IOException e) {
+				fail(e);
+			}
+			
+			// The download didn't pan out (without throwing anything)
+			if ( line == null ) {
+				finish();
+			}
+		}
+		
+		// Ask for another go once the line has room for a chunk, by the time it runs dry (well behind any on-air deck)
+		// After EOF, our only remaining job is to close up once it's played out
+		@Override
+		public long getDeadline(long now) {
+			SourceDataLine line = this.line;
+			if ( finished || line == null ) {
+				return IDLE;
+			}
+			else if ( endsAt != -1 ) {
+				return (now - endsAt >= 0) ? now : IDLE;
+			}
+			
+			int room = line.available();
+			if ( room < buffer.length ) {
+				return IDLE;
+			}
+			
+			long queued = line.getBufferSize() - room;
+			return now + queued * 1000000000L / bytesPerSecond + PlayoutScheduler.PREVIEW_SLACK_NANOS;
+		}
+		
+		// The line plays out without telling anybody, so work out when it'll have room for a chunk (or be done)
+		@Override
+		public long getRecheckTime(long now) {
+			SourceDataLine line = this.line;
+			if ( finished || line == null ) {
+				return IDLE;
+			}
+			else if ( endsAt != -1 ) {
+				return endsAt;
+			}
+			
+			long needed = buffer.length - line.available();
+			return now + Math.max(0, needed) * 1000000000L / bytesPerSecond;
+		}
+		
+		@Override
+		public boolean mayBlock() {
+			return true;
+		}
+		
+		// Decode a chunk out to the line
+		@Override
+		public synchronized boolean step() {
+			if ( finished || line == null ) {
+				return false;
+			}
+			else if ( endsAt != -1 ) {
+				finish();
+				return true;
+			}
+			
+			try {
+				int n = audio.read(buffer, leftover, buffer.length - leftover);
+				if ( n == -1 ) {
+					long queued = line.getBufferSize() - line.available();
+					endsAt = System.nanoTime() + queued * 1000000000L / bytesPerSecond;
+					return true;
+				}
+				else if ( n == 0 ) {
+					return false;
+				}
+				
+				// Only whole frames go to the line (and there's room for all of them, so this won't block)
+				int frameSize = audio.getFormat().getFrameSize();
+				int total = leftover + n;
+				int whole = total - (total % frameSize);
+				line.write(buffer, 0, whole);
+				leftover = total - whole;
+				System.arraycopy(buffer, whole, buffer, 0, leftover);
+				return true;
+			}
+			catch (IOException e) {
+				fail(e);
+				return false;
+			}
+		}
+		
+		// Stop playing, and let whoever started us know
+		synchronized void finish() {
+			if ( finished ) {
+				return;
+			}
+			finished = true;
+			PlayoutScheduler.remove(this);
+			
+			if ( line != null ) {
+				line.close();
+			}
+			if ( audio != null ) {
+				try {
+					audio.close();
+				}
+				catch (IOException e) {
+					// Don't care
+				}
+			}
+			
+			if ( onDone != null ) {
+				Platform.runLater(onDone);
+			}
+		}
+		
+		boolean isFinished() {
+			return finished;
+		}
+		
+		private void fail(Exception e) {
+			if ( ! finished ) {
+				Platform.runLater(() -> Microwave.showException("Preview Error", "Couldn't preview that one.  If it's because there's no preview output, pick one in Misc. Settings.", e));
+			}
+			finish();
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * RetainedIntro: Holds on to the first few seconds of decoded audio (after the
+ * leading silence) from a deck's current track, so the deck can re-cue without
+ * going back to the decoder
+ */
+package com.stereodustparticles.console.deck;
+
+import javax.sound.sampled.AudioFormat;
+
+public class RetainedIntro {
+	private byte[] data;
+	private final int capacity;
+	private int length = 0;
+	private long leadInBytes = 0;
+	private volatile boolean complete = false;
+	private volatile boolean wholeTrack = false;
+	
+	public RetainedIntro(AudioFormat format, int seconds) {
+		capacity = (int)format.getSampleRate() * seconds * format.getFrameSize();
+		data = AudioPool.takeBytes(capacity);
+	}
+	
+	// Set the number of bytes of leading silence that got skipped before the intro
+	protected void setLeadIn(long bytes) {
+		leadInBytes = bytes;
+	}
+	
+	// Add some freshly-decoded audio to the intro, if there's still room
+	protected void capture(byte[] buffer, int len) {
+		if ( complete || data == null ) {
+			return;
+		}
+		
+		int n = Math.min(len, capacity - length);
+		System.arraycopy(buffer, 0, data, length, n);
+		length += n;
+		
+		if ( length == capacity ) {
+			complete = true;
+		}
+	}
+	
+	// Notify the intro that the decoder hit EOF before it filled up
+	// (in which case it's got the whole track)
+	protected void markEOF() {
+		if ( ! complete ) {
+			wholeTrack = true;
+			complete = true;
+		}
+	}
+	
+	// Return whether or not the intro is all captured and ready to be re-cued from
+	public boolean isComplete() {
+		return complete;
+	}
+	
+	// Return whether or not the intro contains everything up to the end of the track
+	public boolean coversWholeTrack() {
+		return wholeTrack;
+	}
+	
+	// Return the intro's data (only valid once it's complete)
+	protected byte[] getData() {
+		return data;
+	}
+	
+	// Return the length of the intro, in bytes
+	public int getLength() {
+		return length;
+	}
+	
+	// Return the number of bytes that can still be captured before the intro is full
+	public int getRoom() {
+		return capacity - length;
+	}
+	
+	// Hand our storage back to the audio pool, once nothing's going to play from us (or capture into us) again
+	// From then on, we look like an intro that never got finished, so nobody tries to re-cue from us
+	protected synchronized void release() {
+		if ( data != null ) {
+			complete = false;
+			AudioPool.give(data);
+			data = null;
+		}
+	}
+	
+	// Return the number of bytes of leading silence before the intro
+	public long getLeadInBytes() {
+		return leadInBytes;
+	}
+}
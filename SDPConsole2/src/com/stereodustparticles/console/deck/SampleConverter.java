@@ -0,0 +1,150 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * SampleConverter: Converts audio in a voice's own format (as PCM bytes, or float
+ * samples that have already been unpacked) into float samples in the mix engine's
+ * format (channel mapping and sample rate conversion included)
+ */
+package com.stereodustparticles.console.deck;
+
+import javax.sound.sampled.AudioFormat;
+
+public class SampleConverter {
+	private AudioFormat source;
+	private int srcChannels;
+	private int outChannels;
+	private int srcFrameSize;
+	private double rateRatio; // Source frames per output frame
+	
+	// Only there if the sample rates differ
+	private PolyphaseResampler resampler = null;
+	
+	// Scratch space for unpacked (but not yet converted) samples, and for channel-mapped samples on their way to the resampler
+	private float[] unpacked;
+	private float[] mapped;
+	private byte[] shifted;
+	
+	public SampleConverter(AudioFormat source, AudioFormat target) {
+		this.source = source;
+		srcChannels = source.getChannels();
+		outChannels = target.getChannels();
+		srcFrameSize = source.getFrameSize();
+		rateRatio = source.getSampleRate() / target.getSampleRate();
+		if ( source.getSampleRate() != target.getSampleRate() ) {
+			resampler = new PolyphaseResampler(outChannels, source.getSampleRate(), target.getSampleRate());
+		}
+		unpacked = new float[0];
+		mapped = new float[0];
+		shifted = new byte[0];
+	}
+	
+	// Return the source format
+	public AudioFormat getSourceFormat() {
+		return source;
+	}
+	
+	// Return the size of a source frame, in bytes
+	public int getSourceFrameSize() {
+		return srcFrameSize;
+	}
+	
+	// Return the maximum number of output frames that can result from converting the given number of source frames
+	public int maxOutputFrames(int srcFrames) {
+		return (resampler == null) ? srcFrames : resampler.maxOutputFrames(srcFrames);
+	}
+	
+	// Return the most source frames that can be converted without producing more than the given number of output frames
+	public int maxInputFrames(int outFrames) {
+		int srcFrames = (int)(outFrames * rateRatio);
+		while ( srcFrames > 0 && maxOutputFrames(srcFrames) > outFrames ) {
+			srcFrames--;
+		}
+		return srcFrames;
+	}
+	
+	// Forget any resampler history (i.e. start over at a discontinuity)
+	public void reset() {
+		if ( resampler != null ) {
+			resampler.reset();
+		}
+	}
+	
+	// Flush out whatever the resampler is still hanging onto, for when there's no more audio coming
+	// Output goes into the given array starting at the given frame; return the number of frames produced
+	public int finish(float[] out, int outOffset) {
+		return (resampler == null) ? 0 : resampler.finish(out, outOffset);
+	}
+	
+	// Convert the given number of whole source frames from the byte array into the output array
+	// Return the number of output frames produced
+	public int convert(byte[] in, int off, int srcFrames, float[] out) {
+		int nSamples = srcFrames * srcChannels;
+		if ( unpacked.length < nSamples ) {
+			unpacked = new float[nSamples];
+		}
+		
+		// SimpleAudioConversion only deals with the start of an array, so shift things if need be
+		int nBytes = srcFrames * srcFrameSize;
+		if ( off == 0 ) {
+			SimpleAudioConversion.unpack(in, unpacked, nBytes, source);
+		}
+		else {
+			if ( shifted.length < nBytes ) {
+				shifted = new byte[nBytes];
+			}
+			System.arraycopy(in, off, shifted, 0, nBytes);
+			SimpleAudioConversion.unpack(shifted, unpacked, nBytes, source);
+		}
+		
+		return convert(unpacked, 0, srcFrames, out);
+	}
+	
+	// Same as above, but for audio that's already been unpacked into (interleaved) float samples
+	public int convert(float[] in, int off, int srcFrames, float[] out) {
+		// Fast path: no rate conversion needed, only channel mapping
+		if ( resampler == null ) {
+			mapChannels(in, off, srcFrames, out);
+			return srcFrames;
+		}
+		
+		// Otherwise, map the channels, then run it through the resampler
+		int nMapped = srcFrames * outChannels;
+		if ( mapped.length < nMapped ) {
+			mapped = new float[nMapped];
+		}
+		mapChannels(in, off, srcFrames, mapped);
+		return resampler.process(mapped, srcFrames, out, 0);
+	}
+	
+	// Map the unpacked source channels onto the output channels
+	// Mono gets copied to every output channel, extra source channels get mixed down into mono output,
+	// and otherwise channels just line up (with any extras on the output side doubling up the last source channel)
+	private void mapChannels(float[] in, int off, int frames, float[] out) {
+		if ( outChannels == srcChannels ) {
+			System.arraycopy(in, off, out, 0, frames * outChannels);
+			return;
+		}
+		
+		if ( outChannels == 1 && srcChannels > 1 ) {
+			float scale = 1f / srcChannels;
+			for ( int f = 0; f < frames; f++ ) {
+				float sum = 0f;
+				for ( int c = 0; c < srcChannels; c++ ) {
+					sum += in[off + f * srcChannels + c];
+				}
+				out[f] = sum * scale;
+			}
+			return;
+		}
+		
+		for ( int f = 0; f < frames; f++ ) {
+			for ( int c = 0; c < outChannels; c++ ) {
+				out[f * outChannels + c] = in[off + f * srcChannels + Math.min(c, srcChannels - 1)];
+			}
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * SampleRing: The ring buffer between a deck's reader and writer, holding decoded
+ * audio as float samples (so it only gets unpacked from the decoder's bytes once)
+ * Neither side ever waits on the other - the reader checks for room before it
+ * writes, and the writer takes whatever's there
+ * Exactly one thread may write at a time, and exactly one may read (which the
+ * reader's and writer's own locks take care of), so there's no lock in here - each
+ * side just publishes how far it's got, a la BlockRing
+ */
+package com.stereodustparticles.console.deck;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class SampleRing {
+	// Where the write and read positions live in the positions array
+	// They're a cache line (and then some) apart, so the reader and writer don't keep stealing the same one off each other
+	private static final int HEAD = 7;
+	private static final int TAIL = 15;
+	
+	private float[] buffer;
+	private final int mask;
+	
+	// Positions only ever go up - the index into the buffer is the position masked down to the buffer size
+	// The head is only written by the writing side, and the tail only by the reading side
+	private final AtomicLongArray positions = new AtomicLongArray(TAIL + 8);
+	
+	// How much of the buffer we actually let fill up (this only ever grows, up to the whole thing)
+	private volatile int limit;
+	private volatile boolean closed = false;
+	
+	// Sizes are in samples, not frames
+	// The ring holds size samples to start with, and can grow to (at least) maxSize without losing anything
+	// Its storage comes out of the audio pool (which hands out power-of-two sizes, so the index can just be masked)
+	public SampleRing(int size, int maxSize) {
+		buffer = AudioPool.takeFloats(Math.max(size, maxSize));
+		mask = buffer.length - 1;
+		limit = size;
+	}
+	
+	public SampleRing(int size) {
+		this(size, size);
+	}
+	
+	// Copy as many of the given samples into the ring as will fit (writing side only)
+	// Return the number copied
+	public int write(float[] samples, int off, int len) throws IOException {
+		if ( closed ) {
+			throw new IOException("Ring buffer has been closed");
+		}
+		
+		long head = positions.get(HEAD);
+		int n = Math.min(len, limit - (int)(head - positions.get(TAIL)));
+		if ( n <= 0 ) {
+			return 0;
+		}
+		
+		int writePos = (int)head & mask;
+		int firstLen = Math.min(n, buffer.length - writePos);
+		System.arraycopy(samples, off, buffer, writePos, firstLen);
+		System.arraycopy(samples, off + firstLen, buffer, 0, n - firstLen);
+		
+		// Hands the samples over to the reading side (an ordered write is all that takes)
+		positions.lazySet(HEAD, head + n);
+		return n;
+	}
+	
+	// Copy up to len samples out of the ring (reading side only)
+	// Return the number copied (which is 0 if the ring's empty)
+	public int read(float[] samples, int off, int len) throws IOException {
+		if ( closed ) {
+			throw new IOException("Ring buffer has been closed");
+		}
+		
+		long tail = positions.get(TAIL);
+		int n = (int)Math.min(len, positions.get(HEAD) - tail);
+		if ( n <= 0 ) {
+			return 0;
+		}
+		
+		int readPos = (int)tail & mask;
+		int firstLen = Math.min(n, buffer.length - readPos);
+		System.arraycopy(buffer, readPos, samples, off, firstLen);
+		System.arraycopy(buffer, 0, samples, off + firstLen, n - firstLen);
+		
+		// Hands the room back to the writing side
+		positions.lazySet(TAIL, tail + n);
+		return n;
+	}
+	
+	// Close the ring, so that anyone still holding onto it (i.e. after a seek) finds out the hard way
+	public void close() {
+		closed = true;
+	}
+	
+	// Hand our storage back to the audio pool
+	// Only call this once the ring's been closed, and both sides have let go of it for good
+	public synchronized void release() {
+		if ( closed && buffer != null ) {
+			AudioPool.give(buffer);
+			buffer = null;
+		}
+	}
+	
+	// Return the number of samples waiting to be read
+	// (The tail goes first - the head can only have moved further on since, so this never comes out negative)
+	public int getAvailable() {
+		long tail = positions.get(TAIL);
+		return (int)(positions.get(HEAD) - tail);
+	}
+	
+	// Return the number of samples there's room for
+	public int getSpaceLeft() {
+		return Math.max(0, limit - getAvailable());
+	}
+	
+	// Return the capacity of the ring, in samples
+	public int getSize() {
+		return limit;
+	}
+	
+	// Double the size of the ring, keeping everything that's in it (as far as the size given up front allows)
+	// Used to give a struggling decoder more headroom without starting over
+	// The room was set aside when the ring was made, so nothing moves - only the limit goes up
+	// Our lock keeps two of these (or one and a release) from trampling each other, and once the ring's closed, this does nothing
+	public synchronized void grow() {
+		if ( closed || buffer == null ) {
+			return;
+		}
+		
+		limit = Math.min(limit * 2, buffer.length);
+	}
+}
@@ -0,0 +1,565 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * SeekIndex: Maps sample positions in a compressed file to byte offsets where a decoder
+ * can pick up, so the decks can jump around without decoding everything in between
+ */
+package com.stereodustparticles.console.deck;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.spi.AudioFileReader;
+
+import org.jflac.sound.spi.FlacAudioFileReader;
+
+import javazoom.spi.mpeg.sampled.file.MpegAudioFileReader;
+import javazoom.spi.vorbis.sampled.file.VorbisAudioFileReader;
+
+public class SeekIndex {
+	private enum Kind {
+		MP3,
+		FLAC,
+		OGG,
+		NONE // No index (this includes AAC/MP4 for now) - seeking falls back to decoding from the top and skipping
+	}
+	
+	private final Kind kind;
+	private byte[] header = new byte[0]; // Anything the decoder needs to see before the first frame (FLAC/Ogg)
+	private long[] frames = new long[256];
+	private long[] offsets = new long[256];
+	private int count = 0;
+	private int preRoll = 0; // Frames to start decoding ahead of the target, to let the decoder settle
+	
+	// Don't bother indexing points closer together than this (in seconds)
+	private static final double POINT_SPACING = 0.25;
+	
+	// Number of indexes to keep around
+	private static final int CACHE_SIZE = 16;
+	
+	private static final Map<String, SeekIndex> cache = Collections.synchronizedMap(new LinkedHashMap<String, SeekIndex>(CACHE_SIZE, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, SeekIndex> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	});
+	
+	private SeekIndex(Kind kind) {
+		this.kind = kind;
+	}
+	
+	// Return the index for the given file, building it if it's not in the cache
+	// The file's size and modification time go into the key too, so an index never outlives a re-encode or re-tag
+	public static SeekIndex get(URL file) {
+		File f = toFile(file);
+		String key = file.toString() + "|" + f.length() + "|" + f.lastModified();
+		SeekIndex index = cache.get(key);
+		if ( index == null ) {
+			index = build(file);
+			cache.put(key, index);
+		}
+		return index;
+	}
+	
+	// Open a decoded (16-bit PCM) stream of the given file, positioned at exactly the given frame
+	public static AudioInputStream openAt(URL file, long frame) throws Exception {
+		SeekIndex index = get(file);
+		int point = index.find(frame - index.preRoll);
+		
+		AudioInputStream decoded;
+		long position;
+		if ( point < 0 ) {
+			decoded = Deck.openDecoded(file);
+			position = 0;
+		}
+		else {
+			decoded = index.openFrom(file, point);
+			position = index.frames[point];
+		}
+		
+		// Decode our way up to the exact frame
+		long toSkip = (frame - position) * decoded.getFormat().getFrameSize();
+		byte[] scratch = AudioPool.takeBytes(4096);
+		try {
+			while ( toSkip > 0 ) {
+				long skipped = decoded.skip(toSkip);
+				if ( skipped <= 0 ) {
+					skipped = decoded.read(scratch, 0, (int)Math.min(scratch.length, toSkip));
+					if ( skipped == -1 ) {
+						break;
+					}
+				}
+				toSkip -= skipped;
+			}
+		}
+		finally {
+			AudioPool.give(scratch);
+		}
+		
+		return decoded;
+	}
+	
+	// Find the last index point at or before the given frame, or -1 if there isn't one
+	private int find(long frame) {
+		int lo = 0;
+		int hi = count - 1;
+		int found = -1;
+		while ( lo <= hi ) {
+			int mid = (lo + hi) >>> 1;
+			if ( frames[mid] <= frame ) {
+				found = mid;
+				lo = mid + 1;
+			}
+			else {
+				hi = mid - 1;
+			}
+		}
+		return found;
+	}
+	
+	// Open a decoder starting from the given index point
+	private AudioInputStream openFrom(URL file, int point) throws Exception {
+		FileInputStream fis = new FileInputStream(toFile(file));
+		fis.getChannel().position(offsets[point]);
+		InputStream in = new BufferedInputStream(new SequenceInputStream(new ByteArrayInputStream(header), fis));
+		
+		AudioFileReader reader;
+		switch (kind) {
+			case MP3:
+				reader = new MpegAudioFileReader();
+				break;
+			case FLAC:
+				reader = new FlacAudioFileReader();
+				break;
+			case OGG:
+				reader = new VorbisAudioFileReader();
+				break;
+			default:
+				fis.close();
+				throw new IOException("No index for this file");
+		}
+		
+		return Deck.decodeTo16Bit(reader.getAudioInputStream(in));
+	}
+	
+	// Add a point to the index
+	private void add(long frame, long offset) {
+		if ( count == frames.length ) {
+			long[] newFrames = new long[count * 2];
+			long[] newOffsets = new long[count * 2];
+			System.arraycopy(frames, 0, newFrames, 0, count);
+			System.arraycopy(offsets, 0, newOffsets, 0, count);
+			frames = newFrames;
+			offsets = newOffsets;
+		}
+		
+		frames[count] = frame;
+		offsets[count] = offset;
+		count++;
+	}
+	
+	// Figure out what kind of file this is, and index it accordingly
+	private static SeekIndex build(URL file) {
+		try ( FileWindow w = new FileWindow(toFile(file)) ) {
+			if ( w.at(0) == 'f' && w.at(1) == 'L' && w.at(2) == 'a' && w.at(3) == 'C' ) {
+				return buildFLAC(w);
+			}
+			else if ( w.at(0) == 'O' && w.at(1) == 'g' && w.at(2) == 'g' && w.at(3) == 'S' ) {
+				return buildOgg(w);
+			}
+			else if ( file.getPath().toLowerCase().endsWith(".mp3") ) {
+				return buildMP3(w);
+			}
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+		
+		return new SeekIndex(Kind.NONE);
+	}
+	
+	// MP3: walk the frame headers, counting samples as we go
+	private static SeekIndex buildMP3(FileWindow w) throws IOException {
+		SeekIndex index = new SeekIndex(Kind.MP3);
+		
+		// Skip any ID3v2 tag
+		long pos = 0;
+		if ( w.at(0) == 'I' && w.at(1) == 'D' && w.at(2) == '3' ) {
+			pos = 10 + ((w.at(6) & 0x7F) << 21 | (w.at(7) & 0x7F) << 14 | (w.at(8) & 0x7F) << 7 | (w.at(9) & 0x7F));
+			if ( (w.at(5) & 0x10) != 0 ) {
+				pos += 10; // Footer
+			}
+		}
+		
+		long sample = 0;
+		long lastPoint = Long.MIN_VALUE;
+		boolean locked = false;
+		int[] frame = new int[3];
+		int[] next = new int[3];
+		while ( pos + 4 <= w.length() ) {
+			if ( ! mp3Header(w, pos, frame) ) {
+				locked = false;
+				pos++;
+				continue;
+			}
+			
+			// While hunting for sync, make sure the next frame checks out too, so we don't get fooled by stray 0xFFs
+			if ( ! locked ) {
+				if ( pos + frame[0] + 4 <= w.length() && ! mp3Header(w, pos + frame[0], next) ) {
+					pos++;
+					continue;
+				}
+				locked = true;
+			}
+			
+			if ( sample - lastPoint >= frame[2] * POINT_SPACING ) {
+				index.add(sample, pos);
+				lastPoint = sample;
+			}
+			
+			// Layer III frames can borrow data from up to a couple frames back
+			index.preRoll = frame[1] * 2;
+			
+			sample += frame[1];
+			pos += frame[0];
+		}
+		
+		return index;
+	}
+	
+	private static final int[][] MP3_BITRATES = {
+		{ 0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448 }, // V1 L1
+		{ 0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384 }, // V1 L2
+		{ 0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320 }, // V1 L3
+		{ 0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256 }, // V2 L1
+		{ 0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160 } // V2 L2/L3
+	};
+	
+	private static final int[][] MP3_SAMPLE_RATES = {
+		{ 11025, 12000, 8000 }, // V2.5
+		{ 0, 0, 0 }, // Reserved
+		{ 22050, 24000, 16000 }, // V2
+		{ 44100, 48000, 32000 } // V1
+	};
+	
+	// Parse the MP3 frame header at the given position
+	// If it's valid, fill out with { frame length in bytes, samples per frame, sample rate } and return true
+	private static boolean mp3Header(FileWindow w, long pos, int[] out) throws IOException {
+		int b0 = w.at(pos);
+		int b1 = w.at(pos + 1);
+		int b2 = w.at(pos + 2);
+		if ( b0 != 0xFF || (b1 & 0xE0) != 0xE0 ) {
+			return false;
+		}
+		
+		int version = (b1 >> 3) & 3;
+		int layer = (b1 >> 1) & 3;
+		int bitrateIndex = (b2 >> 4) & 0xF;
+		int rateIndex = (b2 >> 2) & 3;
+		int padding = (b2 >> 1) & 1;
+		if ( version == 1 || layer == 0 || bitrateIndex == 0 || bitrateIndex == 15 || rateIndex == 3 ) {
+			return false;
+		}
+		
+		boolean v1 = (version == 3);
+		int table;
+		if ( v1 ) {
+			table = 3 - layer;
+		}
+		else {
+			table = (layer == 3) ? 3 : 4;
+		}
+		int bitrate = MP3_BITRATES[table][bitrateIndex] * 1000;
+		int sampleRate = MP3_SAMPLE_RATES[version][rateIndex];
+		
+		if ( layer == 3 ) { // Layer I
+			out[0] = (12 * bitrate / sampleRate + padding) * 4;
+			out[1] = 384;
+		}
+		else if ( layer == 2 || v1 ) { // Layer II, or MPEG-1 Layer III
+			out[0] = 144 * bitrate / sampleRate + padding;
+			out[1] = 1152;
+		}
+		else { // MPEG-2/2.5 Layer III
+			out[0] = 72 * bitrate / sampleRate + padding;
+			out[1] = 576;
+		}
+		out[2] = sampleRate;
+		
+		return true;
+	}
+	
+	// FLAC: use the seek table if there is one, otherwise go find the frame headers (which conveniently tell us their sample numbers)
+	private static SeekIndex buildFLAC(FileWindow w) throws IOException {
+		SeekIndex index = new SeekIndex(Kind.FLAC);
+		
+		long pos = 4;
+		int blockSize = 0;
+		int minFrameSize = 0;
+		int sampleRate = 44100;
+		long seekTable = -1;
+		int seekTableLen = 0;
+		boolean last = false;
+		while ( ! last ) {
+			int type = w.at(pos);
+			last = (type & 0x80) != 0;
+			type &= 0x7F;
+			int len = w.at(pos + 1) << 16 | w.at(pos + 2) << 8 | w.at(pos + 3);
+			
+			if ( type == 0 ) { // STREAMINFO
+				blockSize = w.at(pos + 4) << 8 | w.at(pos + 5);
+				minFrameSize = w.at(pos + 8) << 16 | w.at(pos + 9) << 8 | w.at(pos + 10);
+				sampleRate = w.at(pos + 14) << 12 | w.at(pos + 15) << 4 | w.at(pos + 16) >> 4;
+			}
+			else if ( type == 3 ) { // SEEKTABLE
+				seekTable = pos + 4;
+				seekTableLen = len;
+			}
+			
+			pos += 4 + len;
+		}
+		
+		long firstFrame = pos;
+		index.header = w.read(0, (int)firstFrame);
+		
+		if ( seekTable != -1 ) {
+			for ( long p = seekTable; p + 18 <= seekTable + seekTableLen; p += 18 ) {
+				long sample = w.readLong(p);
+				if ( sample == -1L ) {
+					break; // Placeholders from here on out
+				}
+				index.add(sample, firstFrame + w.readLong(p + 8));
+			}
+			
+			if ( index.count > 0 ) {
+				return index;
+			}
+		}
+		
+		long lastPoint = Long.MIN_VALUE;
+		long[] sample = new long[1];
+		while ( pos + 16 <= w.length() ) {
+			if ( flacHeader(w, pos, blockSize, sample) ) {
+				if ( sample[0] - lastPoint >= sampleRate * POINT_SPACING ) {
+					index.add(sample[0], pos);
+					lastPoint = sample[0];
+				}
+				pos += Math.max(minFrameSize, 1);
+			}
+			else {
+				pos++;
+			}
+		}
+		
+		return index;
+	}
+	
+	// Check for a valid FLAC frame header at the given position
+	// If it's there, put its first sample number in out[0] and return true
+	private static boolean flacHeader(FileWindow w, long pos, int blockSize, long[] out) throws IOException {
+		if ( w.at(pos) != 0xFF || (w.at(pos + 1) & 0xFE) != 0xF8 ) {
+			return false;
+		}
+		
+		boolean variable = (w.at(pos + 1) & 1) != 0;
+		int b2 = w.at(pos + 2);
+		int b3 = w.at(pos + 3);
+		int blockCode = b2 >> 4;
+		int rateCode = b2 & 0xF;
+		int channels = b3 >> 4;
+		int sizeCode = (b3 >> 1) & 7;
+		if ( blockCode == 0 || rateCode == 15 || channels > 10 || sizeCode == 3 || sizeCode == 7 || (b3 & 1) != 0 ) {
+			return false;
+		}
+		
+		// Frame/sample number, UTF-8 style
+		long p = pos + 4;
+		int first = w.at(p++);
+		long number;
+		int extra;
+		if ( (first & 0x80) == 0 ) {
+			number = first;
+			extra = 0;
+		}
+		else {
+			int ones = Integer.numberOfLeadingZeros(~(first << 24));
+			if ( ones < 2 || ones > 7 ) {
+				return false;
+			}
+			number = first & (0x7F >> ones);
+			extra = ones - 1;
+		}
+		for ( int i = 0; i < extra; i++ ) {
+			int b = w.at(p++);
+			if ( (b & 0xC0) != 0x80 ) {
+				return false;
+			}
+			number = (number << 6) | (b & 0x3F);
+		}
+		
+		if ( blockCode == 6 ) {
+			p += 1;
+		}
+		else if ( blockCode == 7 ) {
+			p += 2;
+		}
+		if ( rateCode == 12 ) {
+			p += 1;
+		}
+		else if ( rateCode == 13 || rateCode == 14 ) {
+			p += 2;
+		}
+		
+		// Check the CRC-8 to make sure this isn't just a lucky pattern in the audio data
+		int crc = 0;
+		for ( long i = pos; i < p; i++ ) {
+			crc ^= w.at(i);
+			for ( int j = 0; j < 8; j++ ) {
+				crc = ((crc & 0x80) != 0) ? ((crc << 1) ^ 0x07) & 0xFF : (crc << 1) & 0xFF;
+			}
+		}
+		if ( crc != w.at(p) ) {
+			return false;
+		}
+		
+		out[0] = variable ? number : number * blockSize;
+		return true;
+	}
+	
+	// Ogg: walk the pages, using each page's granule position to tell where the next one starts
+	// Vorbis can only pick up at a packet boundary, so this gets us to within a packet or so of the target
+	private static SeekIndex buildOgg(FileWindow w) throws IOException {
+		SeekIndex index = new SeekIndex(Kind.OGG);
+		
+		// The sample rate lives in the identification header, right at the start of the first page
+		long ident = 27 + w.at(26);
+		long sampleRate = w.at(ident + 12) | w.at(ident + 13) << 8 | w.at(ident + 14) << 16 | (long)w.at(ident + 15) << 24;
+		
+		long pos = 0;
+		long granule = 0;
+		long lastPoint = Long.MIN_VALUE;
+		boolean inHeaders = true;
+		while ( pos + 27 <= w.length() ) {
+			if ( w.at(pos) != 'O' || w.at(pos + 1) != 'g' || w.at(pos + 2) != 'g' || w.at(pos + 3) != 'S' ) {
+				pos++;
+				continue;
+			}
+			
+			long pageGranule = w.readLongLE(pos + 6);
+			int segments = w.at(pos + 26);
+			int pageLen = 27 + segments;
+			for ( int i = 0; i < segments; i++ ) {
+				pageLen += w.at(pos + 27 + i);
+			}
+			
+			// The header packets all live on pages with a granule position of 0, and the audio starts on a fresh page
+			if ( inHeaders ) {
+				if ( pageGranule == 0 ) {
+					pos += pageLen;
+					continue;
+				}
+				inHeaders = false;
+				index.header = w.read(0, (int)pos);
+			}
+			
+			if ( granule - lastPoint >= sampleRate * POINT_SPACING ) {
+				index.add(granule, pos);
+				lastPoint = granule;
+			}
+			
+			if ( pageGranule != -1 ) {
+				granule = pageGranule;
+			}
+			pos += pageLen;
+		}
+		
+		return index;
+	}
+	
+	// Since JAudioTagger isn't the only one who only takes Files...
+	protected static File toFile(URL file) {
+		try {
+			return new File(file.toURI());
+		}
+		catch (URISyntaxException e) {
+			return new File(file.getPath());
+		}
+	}
+	
+	// A little window onto a file, so the scanners can poke around byte-by-byte without a system call for each one
+	private static class FileWindow implements AutoCloseable {
+		private final RandomAccessFile raf;
+		private final long length;
+		private final byte[] buf = new byte[65536];
+		private long start = 0;
+		private int len = 0;
+		
+		public FileWindow(File f) throws IOException {
+			raf = new RandomAccessFile(f, "r");
+			length = raf.length();
+		}
+		
+		public long length() {
+			return length;
+		}
+		
+		// Return the byte at the given position (0-255), or -1 past the end of the file
+		public int at(long pos) throws IOException {
+			if ( pos < start || pos >= start + len ) {
+				raf.seek(pos);
+				len = Math.max(raf.read(buf), 0);
+				start = pos;
+				if ( len == 0 ) {
+					return -1;
+				}
+			}
+			return buf[(int)(pos - start)] & 0xFF;
+		}
+		
+		public byte[] read(long pos, int n) throws IOException {
+			byte[] out = new byte[n];
+			raf.seek(pos);
+			raf.readFully(out);
+			return out;
+		}
+		
+		public long readLong(long pos) throws IOException {
+			long v = 0;
+			for ( int i = 0; i < 8; i++ ) {
+				v = (v << 8) | at(pos + i);
+			}
+			return v;
+		}
+		
+		public long readLongLE(long pos) throws IOException {
+			long v = 0;
+			for ( int i = 7; i >= 0; i-- ) {
+				v = (v << 8) | at(pos + i);
+			}
+			return v;
+		}
+		
+		@Override
+		public void close() throws IOException {
+			raf.close();
+		}
+	}
+}
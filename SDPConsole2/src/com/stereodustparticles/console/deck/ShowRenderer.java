@@ -0,0 +1,307 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * ShowRenderer: Plays a playlist out to a file instead of the sound card, as fast
+ * as we can go, with the same decoding, gain and Stream 'n' Poop(TM) segues the
+ * decks use (for pre-producing backup shows, and for testing the playout chain)
+ */
+package com.stereodustparticles.console.deck;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import com.stereodustparticles.console.cache.CachedAudio;
+import com.stereodustparticles.console.library.LibraryEntry;
+import com.stereodustparticles.console.playlist.PlaylistEntry;
+import com.stereodustparticles.console.pref.Prefs;
+
+public class ShowRenderer {
+	private final List<LibraryEntry> tracks = new ArrayList<LibraryEntry>();
+	private final File dest;
+	private final MixEngine engine;
+	private final int crossfadeFrames;
+	
+	// We only ever need two "decks" - one on the air, and one getting ready to come in
+	private final Slot[] slots = new Slot[2];
+	private int nextTrack = 0;
+	private long framesRendered = 0;
+	private volatile boolean cancelled = false;
+	
+	private enum State { IDLE, LOADED, ARMED, PLAYING }
+	
+	// One track's worth of decoding and mixing, a la Deck + DeckReader + DeckWriter
+	// Every chunk goes through the same TrackProgress a deck reader uses, so the leading silence, the time left and the
+	// segue point all come out the same as they would on a deck
+	private class Slot {
+		final StreamVoice voice;
+		final TrackProgress progress;
+		State state = State.IDLE;
+		AudioInputStream audio = null;
+		String name;
+		boolean eof;
+		boolean seguePending; // We know where the segue point is, but haven't gotten there yet
+		boolean segued; // We've gotten to the segue point (whether or not anyone was ready to take over)
+		boolean faded;
+		
+		Slot() {
+			voice = engine.addVoice(new StreamVoice(engine, new PlayoutStats()));
+			progress = new TrackProgress((frame) -> setSeguePoint(this, frame), () -> clearSeguePoint(this), () -> System.out.println("Now rendering: " + name));
+		}
+	}
+	
+	// Size of each read from the decoder (same as a deck reader uses)
+	private static final int READ_BUFFER_SIZE = 4096;
+	
+	public ShowRenderer(List<PlaylistEntry> playlist, File dest) {
+		// Anything that isn't in a library (e.g. tracks that were played from elsewhere) has nothing to play, so it just gets skipped
+		for ( PlaylistEntry entry : playlist ) {
+			if ( entry.getLocation() != null ) {
+				tracks.add(entry.getLocation());
+			}
+			else {
+				System.err.println("Skipping " + entry + " - it isn't in any library");
+			}
+		}
+		
+		this.dest = dest;
+		
+		// Our own mix engine, which never opens a line - we pull blocks out of it ourselves
+		engine = new MixEngine(new AudioFormat(Prefs.loadInt(Prefs.OUTPUT_SAMPLE_RATE), 16, 2, true, false));
+		crossfadeFrames = (int)(Prefs.loadInt(Prefs.SNP_CROSSFADE) * engine.getFormat().getSampleRate() / 1000);
+		for ( int i = 0; i < slots.length; i++ ) {
+			slots[i] = new Slot();
+		}
+	}
+	
+	// Render the whole show to the destination file
+	// Return the render speed, as a multiple of real time
+	public double render() throws IOException {
+		AudioFormat format = engine.getFormat();
+		int blockSamples = MixEngine.BLOCK_FRAMES * format.getChannels();
+		float[] mix = new float[blockSamples];
+		float[] voiceBuffer = new float[blockSamples];
+		byte[] outBuffer = new byte[MixEngine.BLOCK_FRAMES * format.getFrameSize()];
+		byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+		float[] samples = new float[READ_BUFFER_SIZE / 2];
+		
+		long startTime = System.nanoTime();
+		AudioFileWriter out = AudioFileWriter.open(dest, format);
+		try {
+			for ( Slot slot : slots ) {
+				loadNext(slot);
+			}
+			
+			while ( ! cancelled && (slots[0].state != State.IDLE || slots[1].state != State.IDLE) ) {
+				for ( Slot slot : slots ) {
+					feed(slot, readBuffer, samples);
+				}
+				
+				// If nobody's on the air (i.e. the first track, or the last one ended before the next could be armed), get the next track going
+				if ( slots[0].state != State.PLAYING && slots[1].state != State.PLAYING ) {
+					Slot next = (slots[0].state != State.IDLE) ? slots[0] : slots[1];
+					startNow(next);
+				}
+				
+				engine.mixBlock(mix, voiceBuffer);
+				int nBytes = SimpleAudioConversion.pack(mix, outBuffer, blockSamples, format);
+				out.write(outBuffer, 0, nBytes);
+				framesRendered += MixEngine.BLOCK_FRAMES;
+				
+				// Once a track has played out (or faded out), its slot is free for the one after next
+				for ( Slot slot : slots ) {
+					if ( slot.state == State.PLAYING && (slot.faded || (slot.eof && slot.voice.getBufferedFrames() == 0)) ) {
+						unload(slot);
+						loadNext(slot);
+					}
+				}
+			}
+		}
+		finally {
+			for ( Slot slot : slots ) {
+				unload(slot);
+			}
+			out.close();
+		}
+		
+		double wallSeconds = (System.nanoTime() - startTime) / 1000000000.0;
+		return getRenderedSeconds() / Math.max(wallSeconds, 0.001);
+	}
+	
+	// Stop rendering at the end of the current block (from another thread)
+	public void cancel() {
+		cancelled = true;
+	}
+	
+	// Return the length of what's been rendered so far, in seconds
+	public double getRenderedSeconds() {
+		return framesRendered / (double)engine.getFormat().getSampleRate();
+	}
+	
+	// Load the next track from the playlist into the given slot (or leave it idle if we're out of tracks)
+	private void loadNext(Slot slot) {
+		while ( nextTrack < tracks.size() ) {
+			LibraryEntry track = tracks.get(nextTrack++);
+			int duration;
+			try {
+				URL[] file = new URL[1];
+				CachedAudio.cacheAndLoad(track.getLocationAsURL(), (url) -> file[0] = url);
+				if ( file[0] == null ) {
+					throw new IOException("Download of " + track.getLocationAsURL() + " didn't pan out");
+				}
+				
+				slot.audio = Deck.openDecoded(file[0]);
+				slot.name = track.getArtist() + " - " + track.getTitle();
+				
+				// Same as a deck: if the stream knows how long it is, go by that, otherwise go by the tags
+				long frames = slot.audio.getFrameLength();
+				duration = (frames != AudioSystem.NOT_SPECIFIED) ? (int)(frames * 10 / (long)slot.audio.getFormat().getSampleRate()) : Deck.readDuration(file[0]);
+			}
+			catch (Exception e) {
+				// Same as the decks in Stream 'n' Poop(TM) mode - if it won't load, move on to the next one
+				System.err.println("Skipping " + track.getArtist() + " - " + track.getTitle() + " - it wouldn't load");
+				e.printStackTrace();
+				continue;
+			}
+			
+			AudioFormat format = slot.audio.getFormat();
+			slot.progress.reset(format, duration, 0, false);
+			slot.eof = false;
+			slot.seguePending = false;
+			slot.segued = false;
+			slot.faded = false;
+			slot.voice.setFormat(format);
+			slot.voice.setGain(track.getGain());
+			slot.state = State.LOADED;
+			
+			// If the track on the air is already on its way out, this one needs to be ready to come in
+			Slot other = otherSlot(slot);
+			if ( other.state == State.PLAYING && other.segued ) {
+				startNow(slot);
+			}
+			else if ( other.state == State.PLAYING && other.seguePending ) {
+				arm(slot);
+			}
+			return;
+		}
+		
+		slot.state = State.IDLE;
+	}
+	
+	// Stop the given slot and close its track
+	private void unload(Slot slot) {
+		slot.voice.stop();
+		slot.voice.flush();
+		slot.state = State.IDLE;
+		
+		if ( slot.audio != null ) {
+			try {
+				slot.audio.close();
+			}
+			catch (IOException e) {
+				e.printStackTrace();
+			}
+			slot.audio = null;
+		}
+	}
+	
+	// Decode as much of the slot's track as its voice will take right now
+	// This is the reader's job on a deck (see DeckReader.process()), minus the ring buffer
+	private void feed(Slot slot, byte[] readBuffer, float[] samples) throws IOException {
+		if ( slot.state == State.IDLE || slot.eof ) {
+			return;
+		}
+		
+		int frameSize = slot.audio.getFormat().getFrameSize();
+		int room;
+		while ( (room = slot.voice.getWritableFrames()) > 0 ) {
+			int n = slot.audio.read(readBuffer, 0, Math.min(readBuffer.length / frameSize, room) * frameSize);
+			if ( n == -1 ) {
+				slot.eof = true;
+				
+				// If the track never faded out, segue right at the very end
+				if ( ! slot.seguePending && ! slot.segued ) {
+					setSeguePoint(slot, slot.progress.getFramesAccepted());
+				}
+				return;
+			}
+			else if ( n == 0 ) {
+				continue;
+			}
+			
+			// Rendering is always Stream 'n' Poop(TM), so always watch for the outro
+			int nSamples = AudioKungFu.unpack(readBuffer, n, slot.audio.getFormat(), samples);
+			if ( ! slot.progress.accept(n, samples, nSamples, true) ) {
+				continue;
+			}
+			
+			// We made sure there's room for all of it
+			slot.voice.write(samples, 0, n / frameSize);
+		}
+	}
+	
+	// Start the given slot playing right away
+	private void startNow(Slot slot) {
+		if ( slot.state == State.ARMED ) {
+			slot.voice.release(0, 0);
+		}
+		else {
+			slot.voice.start();
+		}
+		slot.state = State.PLAYING;
+	}
+	
+	// Start the given slot silently, so it can be let go at the exact moment the other one hits its segue point
+	private void arm(Slot slot) {
+		if ( slot.state != State.LOADED ) {
+			return;
+		}
+		
+		slot.voice.hold(null);
+		slot.voice.start();
+		slot.state = State.ARMED;
+	}
+	
+	// Called (via the outro detector) once we know where the given slot's track fades out
+	private void setSeguePoint(Slot slot, long frame) {
+		slot.seguePending = true;
+		slot.voice.setSeguePoint(frame, (offset) -> onSegue(slot, offset));
+		arm(otherSlot(slot));
+	}
+	
+	// Called (via the outro detector) if the given slot's track turns out not to be fading out after all
+	private void clearSeguePoint(Slot slot) {
+		slot.seguePending = false;
+		slot.voice.clearSeguePoint();
+	}
+	
+	// Called from the mix engine when the given slot hits its segue point, with the offset into the block where it landed
+	private void onSegue(Slot slot, int offset) {
+		slot.seguePending = false;
+		slot.segued = true;
+		
+		// If the next track isn't ready yet, it'll start as soon as it's loaded
+		Slot next = otherSlot(slot);
+		if ( next.state == State.ARMED ) {
+			next.voice.release(offset, crossfadeFrames);
+			next.state = State.PLAYING;
+			if ( crossfadeFrames > 0 ) {
+				slot.voice.fadeOut(offset, crossfadeFrames, () -> slot.faded = true);
+			}
+		}
+	}
+	
+	private Slot otherSlot(Slot slot) {
+		return (slot == slots[0]) ? slots[1] : slots[0];
+	}
+}
@@ -0,0 +1,471 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * StreamVoice: A mix engine voice that gets fed continuously, a la SourceDataLine
+ * (this is what the decks write into, instead of opening their own lines)
+ * The mix thread never takes our lock - the audio itself goes through a ring with
+ * one writer and one reader (a la SampleRing), and everything else the mix thread
+ * needs to hear about (flushes, starts, releases) gets left for it in a mailbox,
+ * with a counter it checks at the top of every block
+ * Only one thread may write at a time - everything else that isn't the mix thread
+ * (starting, stopping, flushing...) locks this voice, but only against each other
+ */
+package com.stereodustparticles.console.deck;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+
+import javax.sound.sampled.AudioFormat;
+
+public class StreamVoice extends MixVoice {
+	// Where the write and read positions live in the positions array (far enough apart not to share a cache line)
+	private static final int HEAD = 7;
+	private static final int TAIL = 15;
+	
+	// Hold states
+	private static final int FREE = 0;
+	private static final int HELD = 1;
+	private static final int RELEASING = 2; // Somebody's in the middle of letting us go
+	
+	private final MixEngine engine;
+	private final int channels;
+	private volatile SampleConverter converter = null;
+	
+	// The voice's own small buffer, in the mix engine's format
+	// Positions (in samples, not frames) only ever go up - the head belongs to the writing side, and the tail to the mix thread,
+	// except that a flush can yank the tail up to the head (so the mix thread moves it with a compare-and-set, and if that
+	// fails, whatever it just copied got flushed)
+	private final float[] buffer;
+	private final AtomicLongArray positions = new AtomicLongArray(TAIL + 8);
+	
+	// Writing side only: conversion scratch space, and the last flush we know about
+	private float[] converted = new float[0];
+	private int writerFlushes = 0;
+	
+	private volatile boolean started = false;
+	
+	// Counters that get bumped on every flush/start/release - the mix thread catches up with them at the top of every block
+	private volatile int flushes = 0;
+	private volatile int mixFlushes = 0;
+	private volatile int starts = 0;
+	private int mixStarts = 0;
+	private volatile int releases = 0;
+	private int mixReleases = 0;
+	private int releasesAtFlush = 0;
+	
+	// Underrun detection - we only count it if we'd been keeping up, and aren't just playing out the end
+	private final PlayoutStats stats;
+	private boolean primed = false; // Mix thread only
+	private volatile boolean draining = false;
+	
+	// When PLAY was pressed (System.nanoTime()), if we're timing how long it takes to be heard - 0 otherwise
+	private volatile long playPressed = 0;
+	
+	// Segue bookkeeping - positions are in output (mix engine) frames since the last flush
+	// The mix thread updates the first two as a pair, so anyone reading them checks the count didn't move (it's odd while they're changing)
+	private volatile long framesRendered = 0;
+	private volatile long renderedUntil = 0; // Mix engine frame (see MixEngine.getMixedFrames()) where the last audio we rendered ends
+	private volatile int clockChanges = 0;
+	private final AtomicLong segueFrame = new AtomicLong(-1);
+	private volatile IntConsumer onSegue = null;
+	
+	// A held voice is started and filling up, but stays silent until it's released
+	// Whoever releases it leaves the offset and fade-in here for the mix thread
+	private final AtomicInteger holdState = new AtomicInteger(FREE);
+	private volatile Runnable onRelease = null;
+	private int releaseOffsetBox = 0;
+	private int releaseFadeBox = 0;
+	private int releaseOffset = 0; // Mix thread only
+	
+	// Fade envelope (used for crossfades) - mix thread only
+	private int fadeDelay = 0;
+	private int fadeLength = 0;
+	private int fadePos = 0;
+	private boolean fadingOut = false;
+	private Runnable onFadeDone = null;
+	
+	// Size of the voice buffer, in mix engine blocks
+	private static final int BUFFER_BLOCKS = 4;
+	
+	public StreamVoice(MixEngine engine, PlayoutStats stats) {
+		this.engine = engine;
+		this.stats = stats;
+		channels = engine.getFormat().getChannels();
+		buffer = new float[MixEngine.BLOCK_FRAMES * BUFFER_BLOCKS * channels];
+	}
+	
+	// Set the format of the audio that will be written to this voice
+	// Anything still buffered is thrown out
+	public synchronized void setFormat(AudioFormat format) {
+		converter = new SampleConverter(format, engine.getFormat());
+		flush();
+	}
+	
+	// Return the format of the audio being written to this voice
+	public AudioFormat getFormat() {
+		SampleConverter conv = converter;
+		return (conv == null) ? null : conv.getSourceFormat();
+	}
+	
+	// Write as much of the given audio (as interleaved float samples in the voice's own format) as there's room for,
+	// without ever waiting on the mixer
+	// Return the number of frames written - to be sure of getting all of them in, check getWritableFrames() first
+	public int write(float[] samples, int off, int frames) {
+		SampleConverter conv = converter;
+		if ( conv == null ) {
+			return 0;
+		}
+		
+		// If we got flushed since the last write, the converter's history is moot (and so is anything a write that was under
+		// way at the time managed to sneak in)
+		int flushes = this.flushes;
+		if ( flushes != writerFlushes ) {
+			writerFlushes = flushes;
+			conv.reset();
+			discard();
+		}
+		
+		// Convert in chunks that will fit in our buffer
+		int srcChannels = conv.getSourceFormat().getChannels();
+		int chunkFrames = MixEngine.BLOCK_FRAMES / 2;
+		int done = 0;
+		while ( done < frames ) {
+			long head = positions.get(HEAD);
+			int room = (buffer.length - (int)(head - positions.get(TAIL))) / channels;
+			int n = Math.min(Math.min(chunkFrames, frames - done), conv.maxInputFrames(room));
+			if ( n <= 0 ) {
+				break;
+			}
+			
+			int maxOut = conv.maxOutputFrames(n) * channels;
+			if ( converted.length < maxOut ) {
+				converted = new float[maxOut];
+			}
+			int count = conv.convert(samples, off + done * srcChannels, n, converted) * channels;
+			
+			int writePos = (int)(head % buffer.length);
+			int firstLen = Math.min(count, buffer.length - writePos);
+			System.arraycopy(converted, 0, buffer, writePos, firstLen);
+			System.arraycopy(converted, firstLen, buffer, 0, count - firstLen);
+			positions.lazySet(HEAD, head + count);
+			done += n;
+		}
+		
+		return done;
+	}
+	
+	// Throw out whatever's in the buffer (by moving the tail up to the head)
+	private void discard() {
+		while ( true ) {
+			long tail = positions.get(TAIL);
+			long head = positions.get(HEAD);
+			if ( tail >= head || positions.compareAndSet(TAIL, tail, head) ) {
+				return;
+			}
+		}
+	}
+	
+	// Start feeding this voice into the mix
+	public synchronized void start() {
+		draining = false;
+		starts++;
+		started = true;
+	}
+	
+	// Time how long it takes from the given moment (System.nanoTime()) until this voice is heard
+	// Call this before starting the voice - the result ends up in the voice's stats
+	public synchronized void timeNextStart(long pressedNanos) {
+		playPressed = pressedNanos;
+	}
+	
+	// Stop feeding this voice into the mix (buffered audio stays put)
+	public synchronized void stop() {
+		started = false;
+		holdState.set(FREE);
+		playPressed = 0;
+	}
+	
+	// Note that whatever's buffered is all there's going to be (so running out isn't an underrun)
+	public void beginDrain() {
+		draining = true;
+	}
+	
+	// Return whether all buffered audio has been mixed (or the voice got stopped)
+	public boolean isDrained() {
+		return ! started || getBufferedFrames() == 0;
+	}
+	
+	// Throw out any buffered audio (along with any pending segue, hold or fade)
+	// A write that's under way at the time may still get some of its audio in, but the next write throws that out too
+	public synchronized void flush() {
+		discard();
+		segueFrame.set(-1);
+		onSegue = null;
+		holdState.set(FREE);
+		onRelease = null;
+		playPressed = 0;
+		
+		// The mix thread takes care of its own end (the clock, the fade, and so on) when it next comes around
+		releasesAtFlush = releases;
+		flushes++;
+	}
+	
+	// Return the number of frames currently buffered
+	// (The tail goes first - the head can only have moved further on since, so this never comes out negative)
+	public int getBufferedFrames() {
+		long tail = positions.get(TAIL);
+		return (int)(positions.get(HEAD) - tail) / channels;
+	}
+	
+	// Return the number of frames (in the mix engine's format) since the last flush that have actually been heard,
+	// or -1 if we're not playing (i.e. nothing's been rendered since the last flush, or we've stopped and all of it has been heard)
+	public long getHeardFrames() {
+		// If the mix thread hasn't caught up with a flush yet, nothing's been rendered since it
+		if ( flushes != mixFlushes ) {
+			return -1;
+		}
+		
+		long rendered;
+		long until;
+		int changes;
+		do {
+			changes = clockChanges;
+			rendered = framesRendered;
+			until = renderedUntil;
+		} while ( (changes & 1) != 0 || changes != clockChanges );
+		
+		long unheard = Math.max(0, until - engine.getHeardFrames());
+		if ( rendered == 0 || (! started && unheard == 0) ) {
+			return -1;
+		}
+		
+		return Math.max(0, rendered - unheard);
+	}
+	
+	// Return the number of source frames that can be written right now
+	public int getWritableFrames() {
+		SampleConverter conv = converter;
+		if ( conv == null ) {
+			return 0;
+		}
+		
+		return conv.maxInputFrames(buffer.length / channels - getBufferedFrames());
+	}
+	
+	// Mark the given source frame (counting from the last flush) as the segue point
+	// When the mixer gets there, the handler gets called with the offset into the block where it landed
+	// Note that the handler is called from the mix thread, so it mustn't block (or allocate, if it can help it)!
+	public synchronized void setSeguePoint(long sourceFrame, IntConsumer handler) {
+		AudioFormat source = getFormat();
+		if ( source == null ) {
+			return;
+		}
+		
+		onSegue = handler;
+		segueFrame.set((long)(sourceFrame * (double)engine.getFormat().getSampleRate() / source.getSampleRate()));
+	}
+	
+	// Forget about the segue point
+	public synchronized void clearSeguePoint() {
+		segueFrame.set(-1);
+		onSegue = null;
+	}
+	
+	// Hold this voice silent (even once started) until release() is called
+	// The handler is called upon release, possibly from the mix thread
+	public synchronized void hold(Runnable handler) {
+		onRelease = handler;
+		holdState.set(HELD);
+	}
+	
+	// Return whether or not this voice is being held
+	public boolean isHeld() {
+		return holdState.get() != FREE;
+	}
+	
+	// Let a held voice go, starting the given number of frames into the next block to be mixed
+	// If fadeInFrames is non-zero, fade in (equal-power) over that many frames
+	// This takes no locks, so it's fine to call from the mix thread (i.e. from another voice's segue handler)
+	public void release(int offset, int fadeInFrames) {
+		// Only one caller gets to do the letting go
+		if ( ! holdState.compareAndSet(HELD, RELEASING) ) {
+			return;
+		}
+		
+		releaseOffsetBox = offset;
+		releaseFadeBox = fadeInFrames;
+		releases++;
+		holdState.set(FREE);
+		
+		Runnable handler = onRelease;
+		onRelease = null;
+		if ( handler != null ) {
+			handler.run();
+		}
+	}
+	
+	// Fade out (equal-power) over the given number of frames, starting the given number of frames into the next block
+	// The handler is called (from the mix thread) once we've gone silent
+	// Only call this from the mix thread (i.e. from a segue handler)
+	public void fadeOut(int offset, int frames, Runnable handler) {
+		startFade(offset, frames, true, handler);
+	}
+	
+	private void startFade(int delay, int length, boolean out, Runnable handler) {
+		fadeDelay = delay;
+		fadeLength = length;
+		fadePos = 0;
+		fadingOut = out;
+		onFadeDone = handler;
+	}
+	
+	@Override
+	public boolean isActive() {
+		return started && holdState.get() == FREE;
+	}
+	
+	// Catch up with anything that happened since the last block (mix thread only)
+	private void catchUp() {
+		int flushes = this.flushes;
+		if ( flushes != mixFlushes ) {
+			setClock(0, 0);
+			primed = false;
+			releaseOffset = 0;
+			fadeLength = 0;
+			onFadeDone = null;
+			mixReleases = releasesAtFlush;
+			mixFlushes = flushes;
+		}
+		
+		int starts = this.starts;
+		if ( starts != mixStarts ) {
+			primed = false;
+			mixStarts = starts;
+		}
+		
+		int releases = this.releases;
+		if ( releases != mixReleases ) {
+			releaseOffset = releaseOffsetBox;
+			startFade(0, releaseFadeBox, false, null);
+			mixReleases = releases;
+		}
+	}
+	
+	// Update the segue clock (mix thread only)
+	private void setClock(long rendered, long until) {
+		clockChanges++;
+		framesRendered = rendered;
+		renderedUntil = until;
+		clockChanges++;
+	}
+	
+	// Check whether we'll hit the segue point in the next block, and if so, fire it off
+	// This happens before any voices are rendered, so whoever we hand off to can start in the very same block
+	@Override
+	protected void prepare(int frames) {
+		catchUp();
+		
+		long segue = segueFrame.get();
+		if ( segue >= 0 && segue < framesRendered + frames && segueFrame.compareAndSet(segue, -1) ) {
+			IntConsumer handler = onSegue;
+			if ( handler != null ) {
+				handler.accept((int)Math.max(0, segue - framesRendered));
+			}
+		}
+	}
+	
+	@Override
+	protected int render(float[] out, int frames) {
+		catchUp();
+		
+		// If we were just released partway into this block, start with some silence
+		int lead = Math.min(releaseOffset, frames);
+		releaseOffset = 0;
+		Arrays.fill(out, 0, lead * channels, 0f);
+		
+		long tail = positions.get(TAIL);
+		int n = (int)Math.min((frames - lead) * channels, positions.get(HEAD) - tail);
+		int readPos = (int)(tail % buffer.length);
+		int firstLen = Math.min(n, buffer.length - readPos);
+		System.arraycopy(buffer, readPos, out, lead * channels, firstLen);
+		System.arraycopy(buffer, 0, out, lead * channels + firstLen, n - firstLen);
+		
+		// If we got flushed while we were at it, what we copied is moot
+		if ( n > 0 && ! positions.compareAndSet(TAIL, tail, tail + n) ) {
+			n = 0;
+		}
+		
+		int rendered = n / channels;
+		if ( rendered > 0 ) {
+			setClock(framesRendered + rendered, engine.getMixedFrames() + lead + rendered);
+		}
+		
+		// If someone's timing us, the first sample we just rendered will be heard once the line plays out what's ahead of it
+		long pressed = playPressed;
+		if ( pressed != 0 && rendered > 0 ) {
+			long leadNanos = (long)(lead * 1000000000.0 / engine.getFormat().getSampleRate());
+			stats.recordStartLatency(System.nanoTime() - pressed + engine.getLineDelayNanos() + leadNanos);
+			playPressed = 0;
+		}
+		
+		// Coming up short in the middle of a track means the deck couldn't keep up with us
+		if ( rendered < frames - lead ) {
+			if ( primed && ! draining ) {
+				stats.recordUnderrun();
+				primed = false;
+			}
+		}
+		else {
+			primed = true;
+		}
+		if ( fadeLength > 0 ) {
+			applyFade(out, lead, rendered);
+		}
+		
+		return lead + rendered;
+	}
+	
+	// Apply the fade envelope to the given frames of the output
+	private void applyFade(float[] out, int start, int count) {
+		for ( int i = start; i < start + count; i++ ) {
+			if ( fadeDelay > 0 ) {
+				fadeDelay--;
+				continue;
+			}
+			
+			float gain;
+			if ( fadePos < fadeLength ) {
+				double t = (double)fadePos / fadeLength * (Math.PI / 2);
+				gain = (float)(fadingOut ? Math.cos(t) : Math.sin(t));
+				fadePos++;
+			}
+			else {
+				gain = fadingOut ? 0f : 1f;
+			}
+			
+			for ( int c = 0; c < channels; c++ ) {
+				out[i * channels + c] *= gain;
+			}
+		}
+		
+		// Once a fade-in is done, we can stop bothering
+		// Once a fade-out is done, stay silent, and let whoever asked know
+		if ( fadePos >= fadeLength ) {
+			if ( ! fadingOut ) {
+				fadeLength = 0;
+			}
+			else if ( onFadeDone != null ) {
+				Runnable handler = onFadeDone;
+				onFadeDone = null;
+				handler.run();
+			}
+		}
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * TickPump: Watches the deck clocks, and fires a DECK_COUNTER_TICK (with the time
+ * remaining) whenever one of them moves on to the next tenth of a second
+ * Our own control panes read the clocks directly - these are for Multi-Console
+ * peers, who have no clocks of their own to go by
+ * Since every tick says where the deck actually is, a peer that misses a few
+ * just catches up with the next one, rather than falling behind for good
+ */
+package com.stereodustparticles.console.deck;
+
+import java.util.Arrays;
+
+import com.stereodustparticles.console.event.Event;
+import com.stereodustparticles.console.event.EventBus;
+import com.stereodustparticles.console.event.EventType;
+
+public class TickPump extends Thread {
+	// How often to check in on the decks (well under a tick, so the counters don't look jumpy)
+	private static final long POLL_MILLIS = 20;
+	
+	private final Deck[] decks;
+	private final int[] lastSent; // Time remaining we last told everyone about, per deck (-1 if the clock was stopped)
+	
+	public TickPump(Deck[] decks) {
+		super("Deck Tick Pump");
+		this.decks = decks;
+		lastSent = new int[decks.length];
+		Arrays.fill(lastSent, -1);
+		setDaemon(true);
+		start();
+	}
+	
+	@Override
+	public void run() {
+		while ( true ) {
+			for ( int i = 0; i < decks.length; i++ ) {
+				int remaining = decks[i].getRemainingTenths();
+				if ( remaining != -1 && remaining != lastSent[i] ) {
+					EventBus.fireEvent(new Event(EventType.DECK_COUNTER_TICK, decks[i].getNumber(), remaining));
+				}
+				lastSent[i] = remaining;
+			}
+			
+			try {
+				Thread.sleep(POLL_MILLIS);
+			}
+			catch (InterruptedException e) {
+				break;
+			}
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * TrackProgress: Follows a track's decoding along, chunk by chunk - how much of it
+ * is left, where the leading silence ends, and (via an OutroDetector) where the
+ * outro starts
+ * The deck readers and the show renderer both run every chunk through here, so a
+ * rendered show plays out exactly the way the decks would have played it
+ */
+package com.stereodustparticles.console.deck;
+
+import java.util.function.LongConsumer;
+
+import javax.sound.sampled.AudioFormat;
+
+public class TrackProgress {
+	private final OutroDetector outro;
+	private final Runnable onCued;
+	
+	private int channels = 1;
+	private int bytesPerTenth = 1;
+	private volatile int duration = -1; // Of the whole track, in tenths of seconds (-1 if we don't know yet)
+	private int tenthsRead = 0; // Including anything skipped
+	private int byteCounter = 0;
+	private boolean cued = false;
+	private long leadInBytes = 0;
+	private long framesAccepted = 0;
+	
+	// onOutroFound and onOutroLost get passed along to the outro detector (see OutroDetector)
+	// onCued gets called when the first chunk with actual music in it comes through (i.e. the leading silence is over)
+	public TrackProgress(LongConsumer onOutroFound, Runnable onOutroLost, Runnable onCued) {
+		outro = new OutroDetector(onOutroFound, onOutroLost);
+		this.onCued = onCued;
+	}
+	
+	// Start over on a new stream, with the given duration (which may be -1 if it's still being looked up)
+	// If the stream starts partway into the track, skippedBytes says how far in
+	// If alreadyCued is set (i.e. we've just seeked), don't go looking for the end of the leading silence
+	public void reset(AudioFormat format, int duration, long skippedBytes, boolean alreadyCued) {
+		// Hang on to the track's peak level if we're just jumping around in it
+		outro.reset(format, alreadyCued);
+		
+		channels = format.getChannels();
+		bytesPerTenth = ((int)format.getSampleRate() / 10) * format.getFrameSize();
+		this.duration = duration;
+		
+		// Account for whatever was skipped as if we'd read it ourselves
+		tenthsRead = (int)(skippedBytes / bytesPerTenth);
+		byteCounter = (int)(skippedBytes % bytesPerTenth);
+		leadInBytes = 0;
+		framesAccepted = 0;
+		cued = alreadyCued;
+	}
+	
+	// Set the duration of the track (in tenths of seconds), once it's been looked up
+	public void setDuration(int duration) {
+		this.duration = duration;
+	}
+	
+	// Take in a chunk fresh out of the decoder (nBytes of it, which unpacked to nSamples samples)
+	// Return whether it's to be played - false means it's still part of the leading silence, and should be dropped
+	// If watchOutro is set, the chunk gets checked for the start of the outro once we're close to the end
+	// (Do this before the chunk goes anywhere, so the segue point is always set before playback can get there)
+	public boolean accept(int nBytes, float[] samples, int nSamples, boolean watchOutro) {
+		byteCounter += nBytes;
+		while ( byteCounter >= bytesPerTenth ) {
+			tenthsRead++;
+			byteCounter -= bytesPerTenth;
+		}
+		
+		if ( ! cued ) {
+			if ( AudioKungFu.getPeak(samples, nSamples) <= DeckReader.CUE_THRESHOLD ) {
+				leadInBytes += nBytes;
+				return false;
+			}
+			
+			cued = true;
+			onCued.run();
+		}
+		
+		if ( watchOutro ) {
+			int remainingTime = getRemainingTime();
+			outro.process(samples, nSamples, framesAccepted, remainingTime != -1 && remainingTime < DeckReader.SNP_WINDOW);
+		}
+		framesAccepted += nSamples / channels;
+		return true;
+	}
+	
+	// Return the time left to read (in tenths of seconds), or -1 if we don't know the duration yet
+	public int getRemainingTime() {
+		int duration = this.duration;
+		return (duration == -1) ? -1 : duration - tenthsRead;
+	}
+	
+	// Return how much leading silence got skipped, in bytes
+	public long getLeadInBytes() {
+		return leadInBytes;
+	}
+	
+	// Return how many frames have been let through since the stream was reset (i.e. where the next chunk starts, as far as
+	// playback is concerned)
+	public long getFramesAccepted() {
+		return framesAccepted;
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * VirtualOutput: An output that throws the mix away, but otherwise acts just like
+ * a sound card, going by a clock of its own
+ * The clock either runs in real time (so everything upstream behaves exactly as it
+ * would on the air), or flat out (so we can see how fast the engine can go)
+ */
+package com.stereodustparticles.console.deck;
+
+import javax.sound.sampled.AudioFormat;
+
+public class VirtualOutput implements AudioOutput {
+	private final float rate;
+	private final int frameSize;
+	private final int bufferSize;
+	private final boolean flatOut;
+	
+	private long framesWritten = 0;
+	private long lastWrite = 0; // Frames in the most recent write (flat out, that's all that's ever waiting to be "played")
+	private long clockStart = -1; // System.nanoTime() when frame 0 would have been played (in real time), or -1 if nothing's been written
+	
+	public VirtualOutput(AudioFormat format, int bufferSize, boolean flatOut) {
+		rate = format.getSampleRate();
+		frameSize = format.getFrameSize();
+		this.bufferSize = (bufferSize / frameSize) * frameSize;
+		this.flatOut = flatOut;
+	}
+	
+	@Override
+	public int getBufferSize() {
+		return bufferSize;
+	}
+	
+	@Override
+	public synchronized int available() {
+		return bufferSize - (int)(framesWritten - getLongFramePosition()) * frameSize;
+	}
+	
+	@Override
+	public int write(byte[] b, int off, int len) {
+		int frames = len / frameSize;
+		
+		// In real time, wait until enough has been "played" to make room, like a sound card would
+		if ( ! flatOut ) {
+			int need = Math.min(frames * frameSize, bufferSize);
+			while ( true ) {
+				int missing;
+				synchronized (this) {
+					missing = need - available();
+				}
+				if ( missing <= 0 ) {
+					break;
+				}
+				
+				long nanos = (long)((missing + frameSize - 1) / frameSize * 1000000000.0 / rate);
+				try {
+					Thread.sleep(nanos / 1000000, (int)(nanos % 1000000));
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return 0;
+				}
+			}
+		}
+		
+		synchronized (this) {
+			if ( clockStart == -1 ) {
+				clockStart = System.nanoTime();
+			}
+			framesWritten += frames;
+			lastWrite = frames;
+		}
+		
+		consume(b, off, frames * frameSize);
+		return frames * frameSize;
+	}
+	
+	// Do something with audio that just got written (which is nothing, here)
+	protected void consume(byte[] b, int off, int len) {
+		// Into the bit bucket it goes
+	}
+	
+	@Override
+	public synchronized long getLongFramePosition() {
+		if ( flatOut ) {
+			return framesWritten - lastWrite;
+		}
+		else if ( clockStart == -1 ) {
+			return 0;
+		}
+		
+		// If we've played everything we were given, we ran dry - a sound card would sit there until it got more,
+		// so move the clock up to make it look like the rest gets played starting now
+		long now = System.nanoTime();
+		long played = (long)((now - clockStart) * (double)rate / 1000000000.0);
+		if ( played > framesWritten ) {
+			clockStart = now - (long)(framesWritten * 1000000000.0 / rate);
+			played = framesWritten;
+		}
+		
+		return played;
+	}
+	
+	@Override
+	public void close() {
+		// Nothing to let go of
+	}
+	
+	@Override
+	public String getDescription() {
+		return flatOut ? "Nowhere (flat out)" : "Nowhere (real time)";
+	}
+}
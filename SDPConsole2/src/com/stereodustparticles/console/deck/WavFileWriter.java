@@ -0,0 +1,96 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * WavFileWriter: Writes PCM audio out to a WAV file as it comes, filling in the
+ * sizes in the header once we know them
+ */
+package com.stereodustparticles.console.deck;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+import javax.sound.sampled.AudioFormat;
+
+public class WavFileWriter extends AudioFileWriter {
+	private static final int HEADER_SIZE = 44;
+	
+	private final File dest;
+	private final OutputStream out;
+	private long dataBytes = 0;
+	
+	public WavFileWriter(File dest, AudioFormat format) throws IOException {
+		this.dest = dest;
+		out = new BufferedOutputStream(new FileOutputStream(dest), 65536);
+		
+		int channels = format.getChannels();
+		int rate = (int)format.getSampleRate();
+		int blockAlign = channels * 2;
+		
+		byte[] header = new byte[HEADER_SIZE];
+		putTag(header, 0, "RIFF");
+		putInt(header, 4, 0); // Filled in on close
+		putTag(header, 8, "WAVE");
+		putTag(header, 12, "fmt ");
+		putInt(header, 16, 16);
+		putShort(header, 20, 1); // PCM
+		putShort(header, 22, channels);
+		putInt(header, 24, rate);
+		putInt(header, 28, rate * blockAlign);
+		putShort(header, 32, blockAlign);
+		putShort(header, 34, 16);
+		putTag(header, 36, "data");
+		putInt(header, 40, 0); // Filled in on close
+		out.write(header);
+	}
+	
+	@Override
+	public void write(byte[] pcm, int off, int len) throws IOException {
+		out.write(pcm, off, len);
+		dataBytes += len;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		out.close();
+		
+		// Now that we know how big everything is, go back and fill in the header
+		// (WAV can't go past 4 GB, so anything past that is on its own)
+		long data = Math.min(dataBytes, 0xFFFFFFFFL - HEADER_SIZE);
+		byte[] size = new byte[4];
+		try (RandomAccessFile raf = new RandomAccessFile(dest, "rw")) {
+			putInt(size, 0, (int)(data + HEADER_SIZE - 8));
+			raf.seek(4);
+			raf.write(size);
+			
+			putInt(size, 0, (int)data);
+			raf.seek(40);
+			raf.write(size);
+		}
+	}
+	
+	private static void putTag(byte[] b, int off, String tag) {
+		for ( int i = 0; i < 4; i++ ) {
+			b[off + i] = (byte)tag.charAt(i);
+		}
+	}
+	
+	private static void putInt(byte[] b, int off, int value) {
+		b[off] = (byte)value;
+		b[off + 1] = (byte)(value >> 8);
+		b[off + 2] = (byte)(value >> 16);
+		b[off + 3] = (byte)(value >> 24);
+	}
+	
+	private static void putShort(byte[] b, int off, int value) {
+		b[off] = (byte)value;
+		b[off + 1] = (byte)(value >> 8);
+	}
+}
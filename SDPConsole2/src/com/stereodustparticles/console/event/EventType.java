@@ -14,7 +14,7 @@ public enum EventType {
 	DECK_PLAYBACK_STARTED, // Integer - deck number
 	DECK_PLAYBACK_STOPPED, // Integer - deck number
 	DECK_PLAYBACK_ERROR, // Exception that was thrown
-	DECK_COUNTER_TICK, // Integer - deck number
+	DECK_COUNTER_TICK, // Deck number (Integer), remaining time in tenths of seconds (Integer) - sent whenever a playing deck's clock moves on to the next tenth
 	DECK_PLAY_PRESSED, // Integer - deck number
 	DECK_CUE_PRESSED, // Integer - deck number
 	DECK_REQUEST_LOAD, // DeckLoadRequest object
@@ -22,6 +22,10 @@ public enum EventType {
 	DECK_LOAD_ERROR, // Exception that was thrown, associated deck number (int)
 	DECK_VOLUME_ADJUST, // Deck number (Integer), new volume level (Float)
 	DECK_FADER_SET, // Deck number (Integer), new fader position (Float) - JavaFX events should cause DECK_VOLUME_ADJUST to follow this event
+	DECK_SEEK, // Deck number (Integer), position to jump to in tenths of seconds from the cue point (Integer)
+	DECK_POSITION_UPDATE, // Deck number (Integer), remaining time in tenths of seconds (Integer) - sent after a seek
+	DECK_DURATION_UPDATE, // Deck number (Integer), confirmed duration from the cue point in tenths of seconds (Integer) - sent if the duration turns up after DECK_READY
+	PLAYOUT_STALL, // Deck number (Integer, 0 for the output line), how long it's been stalled in ms (Integer), what's wrong (String)
 	SNP_TRIGGER, // Number of the deck that *triggered* SnP (Integer)
 	SPOT_PLAYBACK_STARTED, // Integers - Row, Column
 	SPOT_PLAYBACK_STOPPED, // Integers - Row, Column
@@ -299,6 +299,22 @@ public class Playlist {
 	// Find and return the next tentative track that can be automatically loaded to a deck
 	// Return null if none found
 	public static LibraryEntry nextLoadableTentative() {
+		PlaylistEntry entry = findLoadableTentative();
+		if ( entry == null ) {
+			return null;
+		}
+		
+		entry.autoLoaded = true;
+		return entry.getLocation();
+	}
+	
+	// Same as above, but don't mark the track as loaded (for getting it ready ahead of time)
+	public static LibraryEntry peekLoadableTentative() {
+		PlaylistEntry entry = findLoadableTentative();
+		return (entry == null) ? null : entry.getLocation();
+	}
+	
+	private static PlaylistEntry findLoadableTentative() {
 		LibraryEntry ret = null;
 		PlaylistEntry entry = null;
 		int i = 0;
@@ -313,8 +329,7 @@ public class Playlist {
 			}
 			i++;
 		}
-		entry.autoLoaded = true;
-		return ret;
+		return entry;
 	}
 	
 	// Export the playlist to the specified text file
@@ -399,25 +414,38 @@ public class Playlist {
 	
 	// Restore the playlist from the specified PLL file
 	public static void restoreFromPLL(File pll) throws IOException {
+		// Read the file first, so we don't clear the list out from under ourselves if it's bogus
+		List<PlaylistEntry> entries = readPLL(pll);
+		
 		// Clear the existing list
 		EventBus.fireEvent(new Event(EventType.PLAYLIST_CLEAR, 0));
 		
-		// Read the file
+		for ( PlaylistEntry entry : entries ) {
+			EventBus.fireEvent(new Event(EventType.PLAYLIST_ADD, entry));
+		}
+		
+		// Reset the list pointer to the correct position
+		resetPointer();
+	}
+	
+	// Read the entries from the specified PLL file, without touching the current playlist
+	public static List<PlaylistEntry> readPLL(File pll) throws IOException {
+		List<PlaylistEntry> entries = new ArrayList<PlaylistEntry>();
+		
 		FileReader fr = new FileReader(pll);
 		BufferedReader br = new BufferedReader(fr);
 		String row;
 		while ( (row = br.readLine()) != null ) {
-			EventBus.fireEvent(new Event(EventType.PLAYLIST_ADD, PlaylistEntry.fromCSVRow(row)));
+			entries.add(PlaylistEntry.fromCSVRow(row));
 		}
 		
 		// Close things up
 		br.close();
 		fr.close();
 		
-		// Reset the list pointer to the correct position
-		resetPointer();
+		return entries;
 	}
-
+	
 	// Recalculate the list pointer position
 	private static void resetPointer() {
 		listPointer = 0;
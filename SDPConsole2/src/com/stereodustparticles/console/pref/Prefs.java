@@ -46,6 +46,17 @@ public class Prefs {
 	public static final String STARTUP_LAYOUT = "startup_layout";
 	public static final String FLASH_POINT = "deck_flash_point";
 	public static final String AUTO_ADD_TENTATIVE = "auto_add_tentative";
+	public static final String DECK_COUNT = "deck_count";
+	public static final String SNP_CROSSFADE = "snp_crossfade";
+	public static final String LOW_LATENCY = "low_latency";
+	public static final String PRIMED_PLAY = "primed_play";
+	public static final String OUTPUT_SAMPLE_RATE = "output_sample_rate";
+	public static final String OUTPUT_BACKEND = "output_backend";
+	public static final String OUTPUT_FILE = "output_file";
+	public static final String OUTPUT_FLAT_OUT = "output_flat_out";
+	public static final String PREVIEW_MIXER = "preview_mixer";
+	public static final String WATCHDOG_STALL_MILLIS = "watchdog_stall_millis";
+	public static final String WATCHDOG_RECOVER = "watchdog_recover";
 	public static final String PLAYLIST_SAVE_TIMEOUT = "playlist_save_timeout";
 	public static final String MC_IDENTITY = "mc_identity";
 	public static final String MC_OUTBOUND_IP = "mc_outbound_ip";
@@ -61,6 +72,16 @@ public class Prefs {
 	public static final String MRS_URL = "mrs_url";
 	public static final String MRS_KEY = "mrs_key";
 	public static final String MRS_OLD_LISTS = "mrs_old_lists";
+	public static final String STREAM_ENABLE = "stream_enable";
+	public static final String STREAM_HOST = "stream_host";
+	public static final String STREAM_PORT = "stream_port";
+	public static final String STREAM_MOUNT = "stream_mount";
+	public static final String STREAM_USER = "stream_user";
+	public static final String STREAM_PASSWORD = "stream_password";
+	public static final String STREAM_NAME = "stream_name";
+	public static final String RECORD_DIR = "record_dir";
+	public static final String RECORD_FORMAT = "record_format";
+	public static final String RECORD_DECKS = "record_decks";
 	
 	public static void init() {
 		prefs = Preferences.userNodeForPackage(SDPConsole2.class);
@@ -77,6 +98,17 @@ public class Prefs {
 		defaults.put(STARTUP_LAYOUT, "");
 		defaults.put(FLASH_POINT, 30);
 		defaults.put(AUTO_ADD_TENTATIVE, true);
+		defaults.put(DECK_COUNT, 2);
+		defaults.put(SNP_CROSSFADE, 0);
+		defaults.put(LOW_LATENCY, false);
+		defaults.put(PRIMED_PLAY, true);
+		defaults.put(OUTPUT_SAMPLE_RATE, 44100);
+		defaults.put(OUTPUT_BACKEND, "javasound"); // "javasound" for the sound card, "file", or "null" for nowhere
+		defaults.put(OUTPUT_FILE, System.getProperty("user.home") + File.separator + "Music" + File.separator + "Output.wav");
+		defaults.put(OUTPUT_FLAT_OUT, false); // For "file" and "null" - run as fast as possible instead of in real time
+		defaults.put(PREVIEW_MIXER, ""); // Name of the sound card to preview tracks on - blank for none
+		defaults.put(WATCHDOG_STALL_MILLIS, 1000); // How long a deck or the output line can go without audio before the watchdog speaks up
+		defaults.put(WATCHDOG_RECOVER, true); // Whether the watchdog fails over to the next deck (or reopens the line) when it does
 		defaults.put(PLAYLIST_SAVE_TIMEOUT, 3);
 		defaults.put(MC_IDENTITY, "I_HAZ_BAD_IDEAZ");
 		defaults.put(MC_OUTBOUND_IP, "192.168.1.1");
@@ -92,6 +124,16 @@ public class Prefs {
 		defaults.put(MRS_URL, "");
 		defaults.put(MRS_KEY, "");
 		defaults.put(MRS_OLD_LISTS, false);
+		defaults.put(STREAM_ENABLE, false);
+		defaults.put(STREAM_HOST, "localhost");
+		defaults.put(STREAM_PORT, 8000);
+		defaults.put(STREAM_MOUNT, "/live.ogg");
+		defaults.put(STREAM_USER, "source");
+		defaults.put(STREAM_PASSWORD, "");
+		defaults.put(STREAM_NAME, "Stereo Dust Particles");
+		defaults.put(RECORD_DIR, System.getProperty("user.home") + File.separator + "Music" + File.separator + "Airchecks");
+		defaults.put(RECORD_FORMAT, "flac");
+		defaults.put(RECORD_DECKS, false);
 	}
 	
 	public static void saveLibraryList() {
@@ -0,0 +1,228 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * Recorder: Records airchecks of the master mix (and, optionally, each deck on its
+ * own), in segments that roll over at the top of every hour
+ * All the disk work happens on the recorder's own thread - if the disk can't keep
+ * up, blocks get dropped (and counted) rather than holding up playout
+ */
+package com.stereodustparticles.console.record;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import com.stereodustparticles.console.deck.Deck;
+import com.stereodustparticles.console.deck.Decks;
+import com.stereodustparticles.console.deck.MixEngine;
+import com.stereodustparticles.console.multi.MultiConsole;
+import com.stereodustparticles.console.pref.Prefs;
+import com.stereodustparticles.console.ui.Microwave;
+
+import javafx.application.Platform;
+
+public class Recorder {
+	// How much audio each track can hold onto while the disk catches up (in mix engine blocks - 512 is about 6 seconds)
+	private static final int RING_BLOCKS = 512;
+	
+	// How long the writer thread naps when there's nothing to write
+	private static final long IDLE_MILLIS = 50;
+	
+	private static volatile List<RecordingTrack> tracks = new ArrayList<RecordingTrack>();
+	private static volatile boolean recording = false;
+	private static Thread writer = null;
+	private static File currentDir = null;
+	
+	// Start recording, according to the prefs
+	// Return false (after complaining) if we can't
+	public static synchronized boolean start() {
+		if ( recording ) {
+			return true;
+		}
+		
+		MixEngine master = MixEngine.getMaster();
+		if ( master == null ) {
+			Microwave.showError("Nothing to Record", "This console isn't putting out any audio (it's a Multi-Console slave on both decks and soundboard), so there's nothing to record.");
+			return false;
+		}
+		
+		currentDir = new File(Prefs.loadString(Prefs.RECORD_DIR));
+		if ( ! currentDir.isDirectory() && ! currentDir.mkdirs() ) {
+			Microwave.showError("Error Starting Recording", "The aircheck directory (" + currentDir + ") doesn't exist, and couldn't be created.  Check the aircheck settings, then try again.");
+			return false;
+		}
+		
+		// Everything gets tapped at the same point in the mix, so the deck recordings line up with the master
+		List<RecordingTrack> newTracks = new ArrayList<RecordingTrack>();
+		newTracks.add(new RecordingTrack("Master", master.getFormat(), RING_BLOCKS));
+		if ( Prefs.loadBoolean(Prefs.RECORD_DECKS) && MultiConsole.getDeckMode() != 'S' ) {
+			for ( int i = 1; i <= Decks.getCount(); i++ ) {
+				newTracks.add(new RecordingTrack("Deck" + i, master.getFormat(), RING_BLOCKS));
+			}
+		}
+		tracks = newTracks;
+		
+		recording = true;
+		writer = new Thread(Recorder::run, "Aircheck Writer");
+		writer.setDaemon(true);
+		writer.start();
+		
+		// The writer thread has the first segments open before any audio shows up, since the rings are big enough to cover it
+		master.addTap(tracks.get(0));
+		for ( int i = 1; i < tracks.size(); i++ ) {
+			Deck deck = Decks.get(i);
+			if ( deck != null ) {
+				deck.setTap(tracks.get(i));
+			}
+		}
+		
+		return true;
+	}
+	
+	// Stop recording
+	// The writer thread finishes off whatever's left on its own time
+	public static synchronized void stop() {
+		if ( ! recording ) {
+			return;
+		}
+		
+		detachTaps();
+		recording = false;
+		writer.interrupt();
+		writer = null;
+	}
+	
+	// Stop recording, and wait for the files to be finished off (called on shutdown)
+	public static void cleanUp() {
+		Thread w = writer;
+		stop();
+		if ( w != null ) {
+			try {
+				w.join();
+			}
+			catch (InterruptedException e) {
+				// Oh well - we tried
+			}
+		}
+	}
+	
+	// Return whether or not we're recording
+	public static boolean isRecording() {
+		return recording;
+	}
+	
+	// Return a short description of how the recording is going, for display
+	public static String getStatus() {
+		if ( ! recording ) {
+			return "Not recording";
+		}
+		
+		StringBuilder status = new StringBuilder("Recording to " + currentDir + " (dropped blocks:");
+		for ( RecordingTrack track : tracks ) {
+			status.append(" " + track.getName() + " " + track.getDroppedBlocks());
+		}
+		return status.append(")").toString();
+	}
+	
+	// Return the total number of blocks dropped (across all tracks) in the current recording
+	public static long getDroppedBlocks() {
+		long total = 0;
+		for ( RecordingTrack track : tracks ) {
+			total += track.getDroppedBlocks();
+		}
+		return total;
+	}
+	
+	private static void detachTaps() {
+		MixEngine.getMaster().removeTap(tracks.get(0));
+		for ( int i = 1; i < tracks.size(); i++ ) {
+			Deck deck = Decks.get(i);
+			if ( deck != null ) {
+				deck.setTap(null);
+			}
+		}
+	}
+	
+	// The writer thread: keep the rings drained, and roll over to new files every hour
+	private static void run() {
+		List<RecordingTrack> myTracks = tracks;
+		File dir = currentDir;
+		String ext = Prefs.loadString(Prefs.RECORD_FORMAT);
+		byte[] buffer = new byte[myTracks.get(0).getBlockSize()];
+		
+		try {
+			long nextRollover = openSegments(myTracks, dir, ext);
+			
+			// Each recording gets its own set of tracks, so if we got stopped and started again before we noticed, that
+			// new recording isn't ours to keep going - ours is over, and it's the new writer's job from here
+			while ( recording && tracks == myTracks ) {
+				boolean any = false;
+				for ( RecordingTrack track : myTracks ) {
+					any |= track.drain(buffer);
+				}
+				
+				if ( System.currentTimeMillis() >= nextRollover ) {
+					nextRollover = openSegments(myTracks, dir, ext);
+				}
+				
+				if ( ! any ) {
+					try {
+						Thread.sleep(IDLE_MILLIS);
+					}
+					catch (InterruptedException e) {
+						// Probably means we're stopping - go around and check
+					}
+				}
+			}
+			
+			// Get down whatever came in before the taps were pulled
+			for ( RecordingTrack track : myTracks ) {
+				track.drain(buffer);
+				track.closeSegment();
+			}
+		}
+		catch (IOException e) {
+			synchronized (Recorder.class) {
+				if ( tracks == myTracks && recording ) {
+					detachTaps();
+					recording = false;
+					writer = null;
+				}
+			}
+			for ( RecordingTrack track : myTracks ) {
+				try {
+					track.closeSegment();
+				}
+				catch (IOException e1) {
+					// We're already in trouble - let the first error do the talking
+				}
+			}
+			Platform.runLater(() -> Microwave.showException("Error Recording Aircheck", "An error occurred while writing the aircheck to disk, so recording has stopped.  Check that there's room on the disk, then start it up again.", e));
+		}
+	}
+	
+	// Start a new segment on every track, named for the current time
+	// Return when the next rollover (i.e. the top of the next hour) is due
+	private static long openSegments(List<RecordingTrack> myTracks, File dir, String ext) throws IOException {
+		Date now = new Date();
+		String stamp = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss").format(now);
+		for ( RecordingTrack track : myTracks ) {
+			track.openSegment(new File(dir, "Aircheck_" + stamp + "_" + track.getName() + "." + ext));
+		}
+		
+		Calendar next = Calendar.getInstance();
+		next.setTime(now);
+		next.set(Calendar.MINUTE, 0);
+		next.set(Calendar.SECOND, 0);
+		next.set(Calendar.MILLISECOND, 0);
+		next.add(Calendar.HOUR_OF_DAY, 1);
+		return next.getTimeInMillis();
+	}
+}
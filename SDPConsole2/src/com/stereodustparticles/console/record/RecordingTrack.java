@@ -0,0 +1,84 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * RecordingTrack: One thing being recorded (the master mix, or a single deck)
+ * The mix thread drops blocks into the track's ring, and the recorder's writer
+ * thread takes them out and writes them to disk
+ */
+package com.stereodustparticles.console.record;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+
+import com.stereodustparticles.console.deck.AudioFileWriter;
+import com.stereodustparticles.console.deck.BlockRing;
+import com.stereodustparticles.console.deck.MixEngine;
+import com.stereodustparticles.console.deck.MixTap;
+
+public class RecordingTrack implements MixTap {
+	private final String name;
+	private final AudioFormat format;
+	private final BlockRing ring;
+	private AudioFileWriter writer = null; // Only touched from the writer thread
+	
+	public RecordingTrack(String name, AudioFormat format, int ringBlocks) {
+		this.name = name;
+		this.format = format;
+		ring = new BlockRing(ringBlocks, MixEngine.BLOCK_FRAMES * format.getFrameSize());
+	}
+	
+	// Called from the mix thread - never blocks, and never allocates
+	@Override
+	public void tap(byte[] block, int len) {
+		ring.offer(block, 0, len);
+	}
+	
+	// Return the name of the track (for file names and display)
+	public String getName() {
+		return name;
+	}
+	
+	// Return the number of blocks that got dropped because the disk couldn't keep up
+	public long getDroppedBlocks() {
+		return ring.getDropped();
+	}
+	
+	// Start a new segment in the given file (finishing off the current one, if any)
+	protected void openSegment(File dest) throws IOException {
+		closeSegment();
+		writer = AudioFileWriter.open(dest, format);
+	}
+	
+	// Finish off the current segment
+	protected void closeSegment() throws IOException {
+		if ( writer != null ) {
+			AudioFileWriter w = writer;
+			writer = null;
+			w.close();
+		}
+	}
+	
+	// Write everything waiting in the ring to the current segment, using the given buffer
+	// Return whether or not there was anything to write
+	protected boolean drain(byte[] buffer) throws IOException {
+		boolean any = false;
+		int len;
+		while ( (len = ring.poll(buffer)) != -1 ) {
+			if ( writer != null ) {
+				writer.write(buffer, 0, len);
+			}
+			any = true;
+		}
+		return any;
+	}
+	
+	// Return the size of the buffer drain() needs
+	protected int getBlockSize() {
+		return ring.getBlockSize();
+	}
+}
@@ -14,17 +14,15 @@ import java.net.URL;
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.Clip;
-import javax.sound.sampled.DataLine;
-import javax.sound.sampled.LineEvent;
-import javax.sound.sampled.LineListener;
-import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.UnsupportedAudioFileException;
 
 import com.stereodustparticles.console.Utils;
 import com.stereodustparticles.console.ables.CSVable;
 import com.stereodustparticles.console.ables.Loadable;
 import com.stereodustparticles.console.cache.CachedAudio;
+import com.stereodustparticles.console.deck.ClipVoice;
+import com.stereodustparticles.console.deck.DecoderRegistry;
+import com.stereodustparticles.console.deck.MixEngine;
 import com.stereodustparticles.console.event.Event;
 import com.stereodustparticles.console.event.EventBus;
 import com.stereodustparticles.console.event.EventListener;
@@ -34,10 +32,10 @@ import com.stereodustparticles.console.multi.MultiConsole;
 import com.stereodustparticles.console.pref.Prefs;
 
 public class Spot implements Loadable, CSVable {
-	private Clip clip;
+	private ClipVoice clip;
+	private boolean loaded = false;
 	private int row;
 	private int col;
-	private LineListener startStop;
 	private String title;
 	private String library;
 	private String location;
@@ -46,19 +44,13 @@ public class Spot implements Loadable, CSVable {
 	public Spot(int row, int col) {
 		this.row = row;
 		this.col = col;
-		this.clip = null;
 		
-		// Convert Java Sound line events into event bus events (we'll register this listener later)
-		startStop = new LineListener() {
-			public void update(LineEvent e) {
-				if ( e.getType() == LineEvent.Type.START ) {
-					EventBus.fireEvent(new Event(EventType.SPOT_PLAYBACK_STARTED, row, col));
-				}
-				else if ( e.getType() == LineEvent.Type.STOP ) {
-					EventBus.fireEvent(new Event(EventType.SPOT_PLAYBACK_STOPPED, row, col));
-				}
-			}
-		};
+		// Get ourselves a voice in the mix, and convert its start/stop notifications into event bus events
+		clip = MixEngine.getMaster().addVoice(new ClipVoice(MixEngine.getMaster()));
+		clip.setHandlers(
+			() -> EventBus.fireEvent(new Event(EventType.SPOT_PLAYBACK_STARTED, row, col)),
+			() -> EventBus.fireEvent(new Event(EventType.SPOT_PLAYBACK_STOPPED, row, col))
+		);
 		
 		// Register the various listeners on the event bus
 		// On error, fire a load error event and return
@@ -110,11 +102,9 @@ public class Spot implements Loadable, CSVable {
 				if ( row == cRow && col == cCol ) {
 				
 					// If there is an actual clip, stop/close it, then get rid of it
-					if ( clip != null ) {
-						clip.stop();
-						clip.removeLineListener(startStop);
+					if ( loaded ) {
 						clip.close();
-						clip = null;
+						loaded = false;
 						color = "";
 						
 						Soundboard.invalidateLayout();
@@ -139,15 +129,14 @@ public class Spot implements Loadable, CSVable {
 				if ( row == cRow && col == cCol ) {
 				
 					// If there is actually a clip loaded...
-					if ( clip != null ) {
+					if ( loaded ) {
 						// If it's playing, stop it
-						if ( clip.isActive() ) {
+						if ( clip.isPlaying() ) {
 							clip.stop();
 						}
 						// If it's not playing, cue it to the beginning and play it
 						else {
-							clip.setFramePosition(0);
-							clip.start();
+							clip.play();
 						}
 					}
 				}
@@ -174,17 +163,16 @@ public class Spot implements Loadable, CSVable {
 	
 	// Load the spot from the specified URL
 	public void load(URL file) {
-		// If there's a previous clip in the spot, unload it (remove the event handler and close it)
-		if ( clip != null ) {
-			clip.stop();
-			clip.removeLineListener(startStop);
+		// If there's a previous clip in the spot, unload it
+		if ( loaded ) {
 			clip.close();
+			loaded = false;
 		}
 		
 		// Open the URL
 		AudioInputStream in;
 		try {
-			in = AudioSystem.getAudioInputStream(file);
+			in = DecoderRegistry.getAudioInputStream(file);
 		}
 		catch (UnsupportedAudioFileException | IOException e1) {
 			EventBus.fireEvent(new Event(EventType.SPOT_LOAD_ERROR, e1, row, col));
@@ -205,20 +193,16 @@ public class Spot implements Loadable, CSVable {
 		);
 		AudioInputStream din = AudioSystem.getAudioInputStream(decodedFormat, in);
 		
-		// Set up output and decode/load the file into memory
-        DataLine.Info info = new DataLine.Info(Clip.class, decodedFormat);
+		// Decode/load the file into memory
         try {
-        	clip = (Clip)AudioSystem.getLine(info);
         	clip.open(din);
+        	loaded = true;
 		}
-        catch (LineUnavailableException | IOException e1) {
+        catch (IOException e1) {
 			EventBus.fireEvent(new Event(EventType.SPOT_LOAD_ERROR, e1, row, col));
 			return;
 		}
         
-        // Register the event handler (to send start/stop events)
-        clip.addLineListener(startStop);
-        
         // We should be done with the input streams - close them
         try {
         	din.close();
@@ -230,13 +214,13 @@ public class Spot implements Loadable, CSVable {
 		}
         
         // We're done - tell everyone!
-        EventBus.fireEvent(new Event(EventType.SPOT_READY, row, col, (int)(clip.getMicrosecondLength() / 100000)));
+        EventBus.fireEvent(new Event(EventType.SPOT_READY, row, col, (int)(clip.getFrameLength() * 10L / (long)MixEngine.getMaster().getFormat().getSampleRate())));
 	}
 
 	@Override
 	public String toCSVRow() {
 		// Return spaces if this spot isn't loaded
-		if ( clip == null ) {
+		if ( ! loaded ) {
 			return row + "|" + col + "| | | | ";
 		}
 		
@@ -0,0 +1,367 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * IcecastSink: Taps the master mix, encodes it (as Ogg FLAC) and pushes it to an
+ * Icecast server as a source client
+ * The mix thread only ever copies blocks into a lock-free ring - encoding and
+ * networking happen on our own thread, and if that falls behind, blocks get
+ * dropped rather than holding up the mix
+ */
+package com.stereodustparticles.console.stream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Base64;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import javax.sound.sampled.AudioFormat;
+
+import com.stereodustparticles.console.SDPConsole2;
+import com.stereodustparticles.console.deck.BlockRing;
+import com.stereodustparticles.console.deck.FlacEncoder;
+import com.stereodustparticles.console.deck.MixEngine;
+import com.stereodustparticles.console.deck.MixTap;
+
+public class IcecastSink implements MixTap {
+	// How much audio we'll hold onto while the network catches up (in mix engine blocks - 256 is about 3 seconds)
+	private static final int QUEUE_BLOCKS = 256;
+	
+	// If a write takes longer than this, the server (or the network) is wedged, so we hang up and try again
+	private static final int STALL_MILLIS = 10000;
+	private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+	private static final int RECONNECT_DELAY_MILLIS = 5000;
+	
+	// How long the sender naps when there's nothing to send (a mix engine block is about 12 ms)
+	private static final long IDLE_MILLIS = 10;
+	
+	private final String host;
+	private final int port;
+	private final String mount;
+	private final String auth;
+	private final String name;
+	private final AudioFormat format;
+	
+	// The mix thread offers blocks, and the sender polls them out and encodes them
+	// (so the mix thread never waits on the sender, or allocates anything)
+	private final BlockRing ring;
+	
+	private volatile boolean connected = false;
+	private volatile boolean running = false;
+	private volatile Socket socket = null;
+	private volatile long writeStarted = 0; // nanoTime when the current write started, or 0 if we're not writing
+	private volatile String[] nowPlaying = null; // { artist, title }
+	private Thread sender = null;
+	private Timer stallTimer = null;
+	
+	// mount should start with a slash (e.g. "/live.ogg")
+	public IcecastSink(String host, int port, String mount, String user, String password, String name, AudioFormat format) {
+		this.host = host;
+		this.port = port;
+		this.mount = mount.startsWith("/") ? mount : "/" + mount;
+		this.name = name;
+		this.format = format;
+		auth = Base64.getEncoder().encodeToString((user + ":" + password).getBytes());
+		
+		ring = new BlockRing(QUEUE_BLOCKS, MixEngine.BLOCK_FRAMES * format.getFrameSize());
+	}
+	
+	// Start connecting (and streaming, once we're connected)
+	public synchronized void start() {
+		if ( running ) {
+			return;
+		}
+		
+		running = true;
+		sender = new Thread(this::run, "Icecast Sender");
+		sender.setDaemon(true);
+		sender.start();
+		
+		stallTimer = new Timer(true);
+		stallTimer.schedule(new TimerTask() {
+			
+			@Override
+			public void run() {
+				checkStall();
+			}
+			
+		}, 1000, 1000);
+	}
+	
+	// Hang up for good
+	public synchronized void stop() {
+		running = false;
+		if ( stallTimer != null ) {
+			stallTimer.cancel();
+			stallTimer = null;
+		}
+		if ( sender != null ) {
+			sender.interrupt();
+			hangUp();
+			sender = null;
+		}
+	}
+	
+	// Called from the mix thread - this must never block!
+	@Override
+	public void tap(byte[] block, int len) {
+		// No sense queueing up audio when there's nowhere for it to go
+		if ( ! connected ) {
+			return;
+		}
+		
+		ring.offer(block, 0, len);
+	}
+	
+	// Set the now-playing artist and title
+	// They go out in-stream, at the top of a new chained logical stream - Icecast won't take URL metadata updates for Ogg mounts,
+	// but it (and the players) read the comments at the start of each stream in the chain
+	public void setNowPlaying(String artist, String title) {
+		nowPlaying = new String[] { artist, title };
+	}
+	
+	// Return whether or not we're connected to the server
+	public boolean isConnected() {
+		return connected;
+	}
+	
+	// Return the number of blocks that were thrown out because the encoder/network couldn't keep up
+	public long getDroppedBlocks() {
+		return ring.getDropped();
+	}
+	
+	// Return where we're streaming to, for display
+	public String getDestination() {
+		return host + ":" + port + mount;
+	}
+	
+	// The sender thread: connect, stream until something goes wrong, wait a bit, repeat
+	private void run() {
+		byte[] block = new byte[ring.getBlockSize()];
+		while ( running ) {
+			try {
+				connect();
+				stream(block);
+			}
+			catch (IOException e) {
+				if ( running ) {
+					System.err.println("Stream to " + getDestination() + " failed - retrying in " + (RECONNECT_DELAY_MILLIS / 1000) + " seconds");
+					e.printStackTrace();
+				}
+			}
+			catch (InterruptedException e) {
+				break;
+			}
+			finally {
+				connected = false;
+				hangUp();
+				
+				// Anything left in the ring is stale by now
+				while ( ring.poll(block) != -1 ) {
+					// Toss it
+				}
+			}
+			
+			try {
+				Thread.sleep(RECONNECT_DELAY_MILLIS);
+			}
+			catch (InterruptedException e) {
+				break;
+			}
+		}
+	}
+	
+	// Connect to the server and log in as a source
+	private void connect() throws IOException {
+		Socket s = new Socket();
+		socket = s;
+		s.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+		s.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+		s.setTcpNoDelay(true);
+		
+		// Good old SOURCE, which every Icecast 2 (and everything that pretends to be one) takes
+		String request = "SOURCE " + mount + " HTTP/1.0\r\n"
+				+ "Authorization: Basic " + auth + "\r\n"
+				+ "User-Agent: SDP Mooler Caster Console/" + SDPConsole2.PROG_VERSION + "\r\n"
+				+ "Content-Type: application/ogg\r\n"
+				+ "Ice-Name: " + name + "\r\n"
+				+ "Ice-Public: 0\r\n"
+				+ "Ice-Audio-Info: samplerate=" + (int)format.getSampleRate() + ";channels=" + format.getChannels() + "\r\n"
+				+ "\r\n";
+		OutputStream out = s.getOutputStream();
+		out.write(request.getBytes("ISO-8859-1"));
+		out.flush();
+		
+		// Read the response line, and skip over the rest of the headers
+		InputStream in = new BufferedInputStream(s.getInputStream());
+		String status = readLine(in);
+		if ( status == null || ! status.matches("HTTP/1\\.[01] 2\\d\\d.*") ) {
+			throw new IOException("Server said no: " + status);
+		}
+		String line;
+		while ( (line = readLine(in)) != null && ! line.isEmpty() ) {
+			// Nothing we need in here
+		}
+	}
+	
+	// Encode and send audio (using the given buffer) until something goes wrong (or we're told to stop)
+	private void stream(byte[] block) throws IOException, InterruptedException {
+		OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 16384);
+		String[] sent = nowPlaying;
+		Chain chain = new Chain(out, sent, 0);
+		
+		connected = true;
+		System.err.println("Streaming to " + getDestination());
+		
+		while ( running ) {
+			int len = ring.poll(block);
+			if ( len == -1 ) {
+				Thread.sleep(IDLE_MILLIS);
+				continue;
+			}
+			
+			// Keep an eye on how long writes take, so a wedged connection gets noticed (see checkStall())
+			writeStarted = System.nanoTime();
+			try {
+				// If what's playing changed, end this logical stream and chain on a new one with the new comments
+				// (Once there's some audio in this one, that is - a stream with nothing but headers would trip up the players)
+				String[] playing = nowPlaying;
+				if ( playing != sent && chain.hasAudio() ) {
+					chain.end();
+					chain = new Chain(out, playing, chain.serial);
+					sent = playing;
+				}
+				
+				chain.encoder.write(block, 0, len);
+			}
+			finally {
+				writeStarted = 0;
+			}
+		}
+	}
+	
+	// One logical stream in the chain (a new one starts whenever the now-playing info changes)
+	// The last frame encoded is held back until the next one comes along, so that it can be marked as the end of the stream if need be
+	private class Chain {
+		final int serial;
+		final OggPager pager;
+		final FlacEncoder encoder;
+		private final OutputStream out;
+		private long granule = 0;
+		private byte[] held = new byte[4096];
+		private int heldLen = -1;
+		private long heldGranule = 0;
+		
+		// Write the headers for a new logical stream (with a different serial number from the given one, which it follows)
+		Chain(OutputStream out, String[] playing, int previousSerial) throws IOException {
+			this.out = out;
+			int s;
+			do {
+				s = SDPConsole2.random.nextInt();
+			} while ( s == previousSerial );
+			serial = s;
+			pager = new OggPager(out, serial);
+			encoder = new FlacEncoder(format, this::onFrame);
+			
+			// Ogg FLAC headers: the mapping header (with STREAMINFO), then the comment block
+			byte[] info = encoder.getStreamInfo();
+			byte[] mappingHeader = new byte[13 + 4 + info.length];
+			System.arraycopy(new byte[] { 0x7F, 'F', 'L', 'A', 'C', 1, 0, 0, 1, 'f', 'L', 'a', 'C' }, 0, mappingHeader, 0, 13);
+			System.arraycopy(FlacEncoder.metadataHeader(FlacEncoder.METADATA_STREAMINFO, info.length, false), 0, mappingHeader, 13, 4);
+			System.arraycopy(info, 0, mappingHeader, 17, info.length);
+			pager.writePacket(mappingHeader, mappingHeader.length, 0);
+			
+			// The comments are where the listeners' players (and the server) get the now-playing info from
+			byte[] comment;
+			if ( playing == null ) {
+				comment = FlacEncoder.vorbisComment("TITLE=" + name);
+			}
+			else if ( playing[0] == null || playing[0].isEmpty() ) {
+				comment = FlacEncoder.vorbisComment("TITLE=" + playing[1]);
+			}
+			else {
+				comment = FlacEncoder.vorbisComment("ARTIST=" + playing[0], "TITLE=" + playing[1]);
+			}
+			byte[] commentPacket = new byte[4 + comment.length];
+			System.arraycopy(FlacEncoder.metadataHeader(FlacEncoder.METADATA_VORBIS_COMMENT, comment.length, true), 0, commentPacket, 0, 4);
+			System.arraycopy(comment, 0, commentPacket, 4, comment.length);
+			pager.writePacket(commentPacket, commentPacket.length, 0);
+			out.flush();
+		}
+		
+		// Send the frame we were holding onto, and hold onto this one instead
+		private void onFrame(byte[] frame, int len, int samples) throws IOException {
+			if ( heldLen != -1 ) {
+				pager.writePacket(held, heldLen, heldGranule);
+				out.flush();
+			}
+			
+			if ( held.length < len ) {
+				held = new byte[len];
+			}
+			System.arraycopy(frame, 0, held, 0, len);
+			heldLen = len;
+			granule += samples;
+			heldGranule = granule;
+		}
+		
+		// Return whether any audio has made it into this stream yet
+		boolean hasAudio() {
+			return heldLen != -1;
+		}
+		
+		// Finish off this logical stream (whatever's left over goes out as a short frame, and the last frame gets marked as the end)
+		void end() throws IOException {
+			encoder.finish();
+			pager.writePacket(held, heldLen, heldGranule, true);
+			out.flush();
+		}
+	}
+	
+	// Called every second by the stall timer - if a write has been stuck for too long, pull the plug, so the sender can reconnect
+	// (Java has no timeout for socket writes, so this is the only way to unstick it)
+	private void checkStall() {
+		long started = writeStarted;
+		if ( started != 0 && System.nanoTime() - started > STALL_MILLIS * 1000000L ) {
+			System.err.println("Stream to " + getDestination() + " stalled - hanging up");
+			hangUp();
+		}
+	}
+	
+	private void hangUp() {
+		Socket s = socket;
+		if ( s != null ) {
+			try {
+				s.close();
+			}
+			catch (IOException e) {
+				// Don't care - we're done with it
+			}
+		}
+	}
+	
+	// Read a CRLF-terminated line from the server, or return null at EOF
+	private static String readLine(InputStream in) throws IOException {
+		StringBuilder line = new StringBuilder();
+		int c;
+		while ( (c = in.read()) != -1 ) {
+			if ( c == '\n' ) {
+				int len = line.length();
+				if ( len > 0 && line.charAt(len - 1) == '\r' ) {
+					line.setLength(len - 1);
+				}
+				return line.toString();
+			}
+			line.append((char)c);
+		}
+		return (line.length() == 0) ? null : line.toString();
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * OggPager: Wraps packets up in Ogg pages (one packet per page, which is all we
+ * need for streaming FLAC frames)
+ * Each pager is one logical stream - to chain on another one (e.g. for new
+ * comments), end this one with a last packet and start a new pager after it
+ */
+package com.stereodustparticles.console.stream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class OggPager {
+	// Header type flags for the first and last pages of the stream
+	private static final int FLAG_BOS = 0x02;
+	private static final int FLAG_EOS = 0x04;
+	
+	// A page can hold up to 255 lacing values of up to 255 bytes each
+	private static final int MAX_PACKET = 255 * 255 - 1;
+	
+	private static final int[] CRC_TABLE = new int[256];
+	static {
+		for ( int i = 0; i < 256; i++ ) {
+			int r = i << 24;
+			for ( int b = 0; b < 8; b++ ) {
+				r = ((r & 0x80000000) != 0) ? ((r << 1) ^ 0x04C11DB7) : (r << 1);
+			}
+			CRC_TABLE[i] = r;
+		}
+	}
+	
+	private final OutputStream out;
+	private final int serial;
+	private int sequence = 0;
+	private byte[] page = new byte[27 + 255 + 4096];
+	
+	public OggPager(OutputStream out, int serial) {
+		this.out = out;
+		this.serial = serial;
+	}
+	
+	// Write one packet as its own page
+	// granule is the position (in samples) at the end of the packet (0 for headers)
+	public void writePacket(byte[] packet, int len, long granule) throws IOException {
+		writePacket(packet, len, granule, false);
+	}
+	
+	// Write one packet as its own page, marking it as the end of the stream if it's the last one
+	public void writePacket(byte[] packet, int len, long granule, boolean last) throws IOException {
+		if ( len > MAX_PACKET ) {
+			throw new IOException("Packet of " + len + " bytes is too big for one Ogg page");
+		}
+		
+		int segments = len / 255 + 1;
+		int headerLen = 27 + segments;
+		if ( page.length < headerLen + len ) {
+			page = new byte[headerLen + len];
+		}
+		
+		page[0] = 'O';
+		page[1] = 'g';
+		page[2] = 'g';
+		page[3] = 'S';
+		page[4] = 0; // Version
+		page[5] = (byte)(((sequence == 0) ? FLAG_BOS : 0) | (last ? FLAG_EOS : 0));
+		putLong(page, 6, granule);
+		putInt(page, 14, serial);
+		putInt(page, 18, sequence++);
+		putInt(page, 22, 0); // CRC goes here once we know it
+		page[26] = (byte)segments;
+		
+		// Lacing values: 255 for each full segment, then whatever's left over (which may be 0)
+		for ( int i = 0; i < segments - 1; i++ ) {
+			page[27 + i] = (byte)255;
+		}
+		page[27 + segments - 1] = (byte)(len % 255);
+		
+		System.arraycopy(packet, 0, page, headerLen, len);
+		putInt(page, 22, crc(page, headerLen + len));
+		
+		out.write(page, 0, headerLen + len);
+	}
+	
+	private static int crc(byte[] data, int len) {
+		int crc = 0;
+		for ( int i = 0; i < len; i++ ) {
+			crc = (crc << 8) ^ CRC_TABLE[((crc >>> 24) ^ data[i]) & 0xFF];
+		}
+		return crc;
+	}
+	
+	// Ogg is little-endian
+	private static void putInt(byte[] b, int off, int value) {
+		b[off] = (byte)value;
+		b[off + 1] = (byte)(value >> 8);
+		b[off + 2] = (byte)(value >> 16);
+		b[off + 3] = (byte)(value >> 24);
+	}
+	
+	private static void putLong(byte[] b, int off, long value) {
+		putInt(b, off, (int)value);
+		putInt(b, off + 4, (int)(value >> 32));
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * Streaming: Sets up (and tears down) the built-in stream to an Icecast server,
+ * according to the prefs
+ */
+package com.stereodustparticles.console.stream;
+
+import com.stereodustparticles.console.deck.MixEngine;
+import com.stereodustparticles.console.event.EventBus;
+import com.stereodustparticles.console.event.EventType;
+import com.stereodustparticles.console.playlist.PlaylistEntry;
+import com.stereodustparticles.console.pref.Prefs;
+
+public class Streaming {
+	private static IcecastSink sink = null;
+	private static boolean listening = false;
+	
+	// (Re-)Initialize streaming from the prefs (called from main, and whenever the settings change)
+	public static void init() {
+		cleanUp();
+		
+		// Now-playing titles come from whatever gets marked played
+		if ( ! listening ) {
+			EventBus.registerListener(EventType.PLAYLIST_MARK_PLAYED, (e) -> {
+				PlaylistEntry entry = (PlaylistEntry)e.getParams()[0];
+				if ( sink != null && entry != null ) {
+					sink.setNowPlaying(entry.getArtist(), entry.getTitle());
+				}
+			});
+			listening = true;
+		}
+		
+		// No master mix (i.e. we're a slave on both decks and soundboard) means nothing to stream
+		MixEngine master = MixEngine.getMaster();
+		if ( ! Prefs.loadBoolean(Prefs.STREAM_ENABLE) || master == null ) {
+			return;
+		}
+		
+		sink = new IcecastSink(Prefs.loadString(Prefs.STREAM_HOST), Prefs.loadInt(Prefs.STREAM_PORT), Prefs.loadString(Prefs.STREAM_MOUNT),
+				Prefs.loadString(Prefs.STREAM_USER), Prefs.loadString(Prefs.STREAM_PASSWORD), Prefs.loadString(Prefs.STREAM_NAME), master.getFormat());
+		master.addTap(sink);
+		sink.start();
+	}
+	
+	// Stop streaming
+	public static void cleanUp() {
+		if ( sink != null ) {
+			MixEngine.getMaster().removeTap(sink);
+			sink.stop();
+			sink = null;
+		}
+	}
+	
+	// Return a short description of how the stream is doing, for display
+	public static String getStatus() {
+		if ( sink == null ) {
+			return "Not streaming";
+		}
+		
+		return (sink.isConnected() ? "Connected to " : "Trying to connect to ") + sink.getDestination() + " (" + sink.getDroppedBlocks() + " blocks dropped)";
+	}
+}
@@ -1,7 +1,11 @@
 package com.stereodustparticles.console.ui;
 
+import java.util.HashMap;
+
 import com.stereodustparticles.console.Utils;
+import com.stereodustparticles.console.deck.Deck;
 import com.stereodustparticles.console.deck.DeckLoadRequest;
+import com.stereodustparticles.console.deck.Decks;
 import com.stereodustparticles.console.event.Event;
 import com.stereodustparticles.console.event.EventBus;
 import com.stereodustparticles.console.event.EventListener;
@@ -9,6 +13,7 @@ import com.stereodustparticles.console.event.EventType;
 import com.stereodustparticles.console.multi.MultiConsole;
 import com.stereodustparticles.console.pref.Prefs;
 
+import javafx.animation.AnimationTimer;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.event.ActionEvent;
@@ -34,13 +39,28 @@ import javafx.scene.text.TextAlignment;
 
 public class DeckControlPane extends GridPane {
 	
+	// All of the deck control panes, by deck number, so the event listeners below can find them
+	private static final HashMap<Integer, DeckControlPane> panes = new HashMap<Integer, DeckControlPane>();
+	private static boolean listenersRegistered = false;
+	
 	private int remain = 0;
 	private int duration = 0;
 	
+	private Button playButton;
+	private Button cueButton;
+	private Label artist;
+	private Label title;
+	private Label timer;
+	private ProgressBar progress;
+	private Slider volume;
+	
 	// Constructor - build the controls
 	public DeckControlPane(int deckNum) {
 		super();
 		
+		panes.put(deckNum, this);
+		registerListeners();
+		
 		// Set alignment/padding/etc.
 		setAlignment(Pos.CENTER);
 		setHgap(6);
@@ -49,7 +69,7 @@ public class DeckControlPane extends GridPane {
 		setPrefWidth(384); // THIS stupid thing, believe it or not, is what finally knocked out those damn PHANTOM MARGINS!
 		
 		// Add play button
-		Button playButton = new Button("PLAY");
+		playButton = new Button("PLAY");
 		playButton.setTextAlignment(TextAlignment.CENTER);
 		playButton.setStyle("-fx-base: #0F0; -fx-font-size: 18; -fx-font-weight: bold");
 		playButton.setMaxSize(USE_PREF_SIZE, Double.MAX_VALUE);
@@ -58,7 +78,7 @@ public class DeckControlPane extends GridPane {
 		add(playButton, 0, 0, 1, 3);
 		
 		// Add artist box
-		Label artist = new Label("No track loaded.");
+		artist = new Label("No track loaded.");
 		artist.setPrefWidth(229);
 		artist.setMaxWidth(229);
 		artist.setTextOverrun(OverrunStyle.ELLIPSIS);
@@ -66,7 +86,7 @@ public class DeckControlPane extends GridPane {
 		add(artist, 1, 0, 2, 1);
 		
 		// Add title box
-		Label title = new Label("No track loaded.");
+		title = new Label("No track loaded.");
 		title.setMaxWidth(Double.MAX_VALUE);
 		title.setTextOverrun(OverrunStyle.ELLIPSIS);
 		title.setWrapText(false);
@@ -74,7 +94,7 @@ public class DeckControlPane extends GridPane {
 		add(title, 1, 1, 3, 1);
 		
 		// Add time box
-		Label timer = new Label("0:00.0");
+		timer = new Label("0:00.0");
 		timer.setAlignment(Pos.CENTER_RIGHT);
 		timer.setStyle("-fx-border-color: #BBB;");
 		timer.setPrefWidth(50);
@@ -83,7 +103,7 @@ public class DeckControlPane extends GridPane {
 		add(timer, 3, 0);
 		
 		// Add cue button
-		Button cueButton = new Button("CUE");
+		cueButton = new Button("CUE");
 		cueButton.setStyle("-fx-base: #FF0; -fx-font-weight: bold;");
 		cueButton.setMaxWidth(USE_PREF_SIZE);
 		cueButton.setMinWidth(USE_PREF_SIZE);
@@ -91,14 +111,14 @@ public class DeckControlPane extends GridPane {
 		add(cueButton, 1, 2);
 		
 		// Add progress bar
-		ProgressBar progress = new ProgressBar();
+		progress = new ProgressBar();
 		progress.setProgress(0);
 		progress.setMaxWidth(Double.MAX_VALUE);
 		GridPane.setFillWidth(progress, true);
 		add(progress, 2, 2, 2, 1);
 		
 		// Add volume fader
-		Slider volume = new Slider();
+		volume = new Slider();
 		volume.setMin(-30);
 		volume.setMax(6);
 		volume.setValue(0);
@@ -125,6 +145,14 @@ public class DeckControlPane extends GridPane {
 			
 		});
 		
+		// Click on the progress bar to jump to that point in the track
+		progress.setOnMouseClicked((e) -> {
+			if ( duration > 0 && ! playButton.isDisabled() ) {
+				int target = (int)(duration * (e.getX() / progress.getWidth()));
+				EventBus.fireEvent(new Event(EventType.DECK_SEEK, deckNum, target));
+			}
+		});
+		
 		volume.valueProperty().addListener(new ChangeListener<Number>() {
 			
 			@Override
@@ -134,30 +162,49 @@ public class DeckControlPane extends GridPane {
 	        }
             
         });
+	}
+	
+	// Register the event listeners that drive all of the deck control panes
+	// These are shared by every pane and look up the right one by deck number, rather than each pane listening to everything
+	private static void registerListeners() {
+		if ( listenersRegistered ) {
+			return;
+		}
+		listenersRegistered = true;
 		
 		// Respond to DECK_FADER_SET by, well, setting the fader!
 		// The resulting JavaFX event should trip the corresponding DECK_VOLUME_ADJUST
 		// (which is a really stupid way of doing this, but that's what I get for coding myself into a corner...)
 		EventBus.registerListener(EventType.DECK_FADER_SET, (e) -> {
-			int deck = (Integer)e.getParams()[0];
+			DeckControlPane pane = panes.get((Integer)e.getParams()[0]);
 			
-			if ( deck == deckNum ) {
-				volume.setValue((Float)e.getParams()[1]);
+			if ( pane != null ) {
+				pane.volume.setValue((Float)e.getParams()[1]);
 			}
 		});
 		
 		// By UXWBill's suggestion, make the Play button change to "I'm Feeling Lucky" on a load error :P
 		// Also re-enable the buttons so that the DJ can, in fact, test their luck!
 		EventBus.registerListener(EventType.DECK_LOAD_ERROR, (e) -> {
-			if ( MultiConsole.getDeckMaster().equals(e.getOriginator()) && ((Integer)e.getParams()[1]).intValue() == deckNum ) {
-				playButton.setStyle("-fx-base: #F70; -fx-font-size: 12; -fx-font-weight: bold");
-				playButton.setText("I'M\nFEELING\nLUCKY");
-				playButton.setDisable(false);
-				cueButton.setDisable(false);
+			DeckControlPane pane = panes.get((Integer)e.getParams()[1]);
+			if ( MultiConsole.getDeckMaster().equals(e.getOriginator()) && pane != null ) {
+				pane.playButton.setStyle("-fx-base: #F70; -fx-font-size: 12; -fx-font-weight: bold");
+				pane.playButton.setText("I'M\nFEELING\nLUCKY");
+				pane.playButton.setDisable(false);
+				pane.cueButton.setDisable(false);
 			}
 		});
 		
-		// Disable the play and cue buttons when a deck load request is placed for this deck
+		// Let the DJ know when the watchdog catches a deck (or the output line) going quiet on the air
+		EventBus.registerListener(EventType.PLAYOUT_STALL, (e) -> {
+			if ( MultiConsole.getDeckMaster().equals(e.getOriginator()) ) {
+				int deckNum = (Integer)e.getParams()[0];
+				String where = (deckNum == 0) ? "The output line" : "Deck " + deckNum;
+				Microwave.showWarning("Dead Air Alert!", where + " hasn't put out any audio for " + e.getParams()[1] + " ms.\n\n" + e.getParams()[2] + ".");
+			}
+		});
+		
+		// Disable the play and cue buttons when a deck load request is placed for one of our decks
 		EventBus.registerListener(EventType.DECK_REQUEST_LOAD, new EventListener() {
 
 			@Override
@@ -165,58 +212,76 @@ public class DeckControlPane extends GridPane {
 				// TODO prevent inadvertent firing of this event in slave mode
 				if ( e.getOriginator().equals(Prefs.loadString(Prefs.MC_IDENTITY)) || e.getOriginator().equals(MultiConsole.getDeckMaster()) || MultiConsole.getDeckMode() == 'M' ) {
 					DeckLoadRequest request = (DeckLoadRequest)e.getParams()[0];
-					if ( request.getDeckNum() == deckNum ) {
-						playButton.setStyle("-fx-base: #0F0; -fx-font-size: 18; -fx-font-weight: bold");
-						playButton.setText("PLAY");
-						playButton.setDisable(true);
-						cueButton.setDisable(true);
+					DeckControlPane pane = panes.get(request.getDeckNum());
+					if ( pane != null ) {
+						pane.playButton.setStyle("-fx-base: #0F0; -fx-font-size: 18; -fx-font-weight: bold");
+						pane.playButton.setText("PLAY");
+						pane.playButton.setDisable(true);
+						pane.cueButton.setDisable(true);
 						
-						duration = request.getDuration();
-						remain = duration;
-						timer.setText(Utils.tenthsToString(remain));
-						artist.setText(request.getArtist());
-						title.setText(request.getTitle());
-						progress.setProgress(0);
+						pane.duration = request.getDuration();
+						pane.remain = pane.duration;
+						pane.timer.setText(Utils.tenthsToString(pane.remain));
+						pane.artist.setText(request.getArtist());
+						pane.title.setText(request.getTitle());
+						pane.progress.setProgress(0);
 						
 						// Reset the progress bar and timer to normal style
 						// Fixes bug where deck stopped on red cycle and reloaded would play in solid red
-						progress.setStyle("");
-						timer.setStyle("-fx-border-color: #BBB;");
+						pane.progress.setStyle("");
+						pane.timer.setStyle("-fx-border-color: #BBB;");
 					}
 				}
 			}
 			
 		});
 		
-		// Re-enable them when the associated deck sends a Deck Ready event
+		// Re-enable them when a deck sends a Deck Ready event
 		EventBus.registerListener(EventType.DECK_READY, new EventListener() {
 
 			@Override
 			public void onEvent(Event e) {
-				if ( MultiConsole.getDeckMaster().equals(e.getOriginator()) && ((Integer)e.getParams()[0]).intValue() == deckNum ) {
-					playButton.setDisable(false);
-					cueButton.setDisable(false);
+				DeckControlPane pane = panes.get((Integer)e.getParams()[0]);
+				if ( MultiConsole.getDeckMaster().equals(e.getOriginator()) && pane != null ) {
+					pane.playButton.setDisable(false);
+					pane.cueButton.setDisable(false);
 					
 					// If a confirmed duration was passed, store it
 					int confirmedDuration = ((Integer)e.getParams()[1]).intValue();
 					if ( confirmedDuration != -1 ) {
-						duration = confirmedDuration;
-						remain = duration;
-						timer.setText(Utils.tenthsToString(remain));
+						pane.duration = confirmedDuration;
+						pane.remain = pane.duration;
+						pane.timer.setText(Utils.tenthsToString(pane.remain));
 					}
 				}
 			}
 			
 		});
 		
+		// If the duration took longer to look up than it took to cue the track, it shows up here instead
+		EventBus.registerListener(EventType.DECK_DURATION_UPDATE, (e) -> {
+			int deckNum = (Integer)e.getParams()[0];
+			DeckControlPane pane = panes.get(deckNum);
+			if ( MultiConsole.getDeckMaster().equals(e.getOriginator()) && pane != null ) {
+				pane.duration = ((Integer)e.getParams()[1]).intValue();
+				
+				// If it's playing already, the next tick will take care of the timer
+				if ( ! Decks.isPlaying(deckNum) ) {
+					pane.remain = pane.duration;
+					pane.timer.setText(Utils.tenthsToString(pane.remain));
+				}
+			}
+		});
+		
 		// When deck playback starts, change the play button to a stop button
 		EventBus.registerListener(EventType.DECK_PLAYBACK_STARTED, new EventListener() {
 
 			@Override
 			public void onEvent(Event e) {
-				if ( MultiConsole.getDeckMaster().equals(e.getOriginator()) && ((Integer)e.getParams()[0]).intValue() == deckNum ) {
-					playButton.setStyle("-fx-base: #F00; -fx-font-size: 18; -fx-font-weight: bold");
-					playButton.setText("STOP");
+				DeckControlPane pane = panes.get((Integer)e.getParams()[0]);
+				if ( MultiConsole.getDeckMaster().equals(e.getOriginator()) && pane != null ) {
+					pane.playButton.setStyle("-fx-base: #F00; -fx-font-size: 18; -fx-font-weight: bold");
+					pane.playButton.setText("STOP");
 				}
 			}
 			
@@ -227,13 +292,14 @@ public class DeckControlPane extends GridPane {
 
 			@Override
 			public void onEvent(Event e) {
-				if ( MultiConsole.getDeckMaster().equals(e.getOriginator()) && ((Integer)e.getParams()[0]).intValue() == deckNum ) {
-					playButton.setStyle("-fx-base: #0F0; -fx-font-size: 18; -fx-font-weight: bold");
-					playButton.setText("PLAY");
+				DeckControlPane pane = panes.get((Integer)e.getParams()[0]);
+				if ( MultiConsole.getDeckMaster().equals(e.getOriginator()) && pane != null ) {
+					pane.playButton.setStyle("-fx-base: #0F0; -fx-font-size: 18; -fx-font-weight: bold");
+					pane.playButton.setText("PLAY");
 					
 					// Reset progress/timer styles (to avoid "stop on red" issue)
-					progress.setStyle("");
-					timer.setStyle("-fx-border-color: #BBB;");
+					pane.progress.setStyle("");
+					pane.timer.setStyle("-fx-border-color: #BBB;");
 				}
 			}
 			
@@ -241,39 +307,89 @@ public class DeckControlPane extends GridPane {
 		
 		// Reset counter on cue
 		EventBus.registerListener(EventType.DECK_CUE_PRESSED, (e) -> {
-			if ( (e.getOriginator().equals(Prefs.loadString(Prefs.MC_IDENTITY)) || e.getOriginator().equals(MultiConsole.getDeckMaster()) || MultiConsole.getDeckMode() == 'M') && ((Integer)e.getParams()[0]).intValue() == deckNum ) {
-				progress.setProgress(0);
-				remain = duration;
-				timer.setText(Utils.tenthsToString(remain));
+			DeckControlPane pane = panes.get((Integer)e.getParams()[0]);
+			if ( (e.getOriginator().equals(Prefs.loadString(Prefs.MC_IDENTITY)) || e.getOriginator().equals(MultiConsole.getDeckMaster()) || MultiConsole.getDeckMode() == 'M') && pane != null ) {
+				pane.progress.setProgress(0);
+				pane.remain = pane.duration;
+				pane.timer.setText(Utils.tenthsToString(pane.remain));
 			}
 		});
 		
-		// Update the timer upon a tick event
+		// Jump the timer to wherever the deck says it is after a seek
+		EventBus.registerListener(EventType.DECK_POSITION_UPDATE, (e) -> {
+			DeckControlPane pane = panes.get((Integer)e.getParams()[0]);
+			if ( MultiConsole.getDeckMaster().equals(e.getOriginator()) && pane != null ) {
+				pane.remain = ((Integer)e.getParams()[1]).intValue();
+				pane.timer.setText(Utils.tenthsToString(pane.remain));
+				pane.progress.setProgress((double)(pane.duration - pane.remain) / (double)pane.duration);
+				
+				// If we jumped back out of the flash zone, stop flashing
+				if ( pane.remain >= Prefs.loadInt(Prefs.FLASH_POINT) * 10 ) {
+					pane.progress.setStyle("");
+					pane.timer.setStyle("-fx-border-color: #BBB;");
+				}
+			}
+		});
+		
+		// If the decks are somebody else's, update the timer upon a tick event (which says how much time is left)
+		// Our own decks get read straight off their clocks, below
 		EventBus.registerListener(EventType.DECK_COUNTER_TICK, new EventListener() {
 
 			@Override
 			public void onEvent(Event e) {
-				if ( MultiConsole.getDeckMaster().equals(e.getOriginator()) && ((Integer)e.getParams()[0]).intValue() == deckNum ) {
-					remain--;
-					timer.setText(Utils.tenthsToString(remain));
-					int elapsed = duration - remain;
-					progress.setProgress((double)elapsed / (double)duration);
+				int deckNum = (Integer)e.getParams()[0];
+				DeckControlPane pane = panes.get(deckNum);
+				if ( MultiConsole.getDeckMaster().equals(e.getOriginator()) && pane != null && Decks.get(deckNum) == null ) {
+					pane.showRemaining((Integer)e.getParams()[1]);
+				}
+			}
+			
+		});
+		
+		// Once per frame, check where our own decks are
+		new AnimationTimer() {
+			
+			@Override
+			public void handle(long now) {
+				for ( Integer deckNum : panes.keySet() ) {
+					Deck deck = Decks.get(deckNum);
+					if ( deck == null ) {
+						continue;
+					}
 					
-					// Flash the counter if necessary
-					if ( remain < Prefs.loadInt(Prefs.FLASH_POINT) * 10 ) {
-						if ( remain % 10 >= 5 ) {
-							progress.setStyle("-fx-accent: #F00;");
-							timer.setStyle("-fx-text-fill: #F00; -fx-border-color: #BBB;");
-						}
-						else {
-							progress.setStyle("");
-							timer.setStyle("-fx-border-color: #BBB;");
-						}
+					int remaining = deck.getRemainingTenths();
+					if ( remaining != -1 ) {
+						panes.get(deckNum).showRemaining(remaining);
 					}
 				}
 			}
 			
-		});
+		}.start();
+	}
+	
+	// Show the given time remaining (in tenths of seconds) on the timer and progress bar
+	private void showRemaining(int remaining) {
+		// Most frames, it'll still be the same tenth of a second as last time
+		if ( remaining == remain ) {
+			return;
+		}
+		
+		remain = remaining;
+		timer.setText(Utils.tenthsToString(remain));
+		int elapsed = duration - remain;
+		progress.setProgress((double)elapsed / (double)duration);
+		
+		// Flash the counter if necessary
+		if ( remain < Prefs.loadInt(Prefs.FLASH_POINT) * 10 ) {
+			if ( remain % 10 >= 5 ) {
+				progress.setStyle("-fx-accent: #F00;");
+				timer.setStyle("-fx-text-fill: #F00; -fx-border-color: #BBB;");
+			}
+			else {
+				progress.setStyle("");
+				timer.setStyle("-fx-border-color: #BBB;");
+			}
+		}
 	}
 	
 }
@@ -61,7 +61,11 @@ public class MRSRequestView {
 		HBox actionSelector = new HBox(8);
 		actionSelector.setAlignment(Pos.CENTER_LEFT);
 		ChoiceBox<String> action = new ChoiceBox<String>();
-		action.getItems().addAll("Queue", "Queue & Load to Deck 1", "Queue & Load to Deck 2", "Queue & Add Tentative", "Mark Played", "Decline");
+		action.getItems().add("Queue");
+		for ( int i = 1; i <= Decks.getCount(); i++ ) {
+			action.getItems().add("Queue & Load to Deck " + i);
+		}
+		action.getItems().addAll("Queue & Add Tentative", "Mark Played", "Decline");
 		action.getSelectionModel().select(0);
 		TextField comment = new TextField();
 		comment.setPromptText("Comment");
@@ -77,7 +81,23 @@ public class MRSRequestView {
 				return;
 			}
 			
-			int option = action.getSelectionModel().getSelectedIndex();
+			// There's one "Queue & Load" option per deck, so boil the selection down to an action and a deck number
+			int selected = action.getSelectionModel().getSelectedIndex();
+			int deckCount = Decks.getCount();
+			final int option;
+			final int deckNum;
+			if ( selected >= 1 && selected <= deckCount ) {
+				option = 1;
+				deckNum = selected;
+			}
+			else if ( selected > deckCount ) {
+				option = selected - deckCount + 1;
+				deckNum = 0;
+			}
+			else {
+				option = selected;
+				deckNum = 0;
+			}
 			
 			Utils.runInBackground(() -> {
 				try {
@@ -86,15 +106,14 @@ public class MRSRequestView {
 							MRSIntegration.queue(req, comment.getText());
 							break;
 						case 1: // Queue and load to deck
-						case 2: // LAME HACK ALERT!  Note that the option index just so happens to equal the target deck number...
 							LibraryEntry reqTrack = MRSIntegration.getRequestedTrack(req);
 							if ( reqTrack != null ) {
-								if ( (option == 1 && Decks.deck1IsPlaying()) || (option == 2 && Decks.deck2IsPlaying()) ) {
+								if ( Decks.isPlaying(deckNum) ) {
 									Platform.runLater(() -> Microwave.showWarning("You only had ONE JOB!", "You didn't really want to load over a playing track, did you?"));
 									return;
 								}
 								
-								DeckLoadRequest dlr = new DeckLoadRequest(reqTrack.getTitle(), reqTrack.getArtist(), reqTrack.getDuration(), reqTrack.getLibraryName(), LibraryManager.getLibraryForName(reqTrack.getLibraryName()).getPathInLibrary(reqTrack), option);
+								DeckLoadRequest dlr = new DeckLoadRequest(reqTrack.getTitle(), reqTrack.getArtist(), reqTrack.getDuration(), reqTrack.getLibraryName(), LibraryManager.getLibraryForName(reqTrack.getLibraryName()).getPathInLibrary(reqTrack), deckNum);
 								EventBus.fireEvent(new Event(EventType.DECK_REQUEST_LOAD, dlr));
 								
 								// TODO allow users to disable automatic use of REQUEST flag?
@@ -112,7 +131,7 @@ public class MRSRequestView {
 								MRSIntegration.queue(req, comment.getText());
 							}
 							break;
-						case 3: // Queue and add tentative
+						case 2: // Queue and add tentative
 							LibraryEntry reqTrak = MRSIntegration.getRequestedTrack(req);
 							if ( reqTrak != null ) {
 								EventBus.fireEvent(new Event(EventType.PLAYLIST_ADD, new PlaylistEntry(reqTrak, true, PlaylistFlags.REQUEST | LibraryManager.getLibraryForName(reqTrak.getLibraryName()).getDefaultFlags(), req.getID())));
@@ -127,10 +146,10 @@ public class MRSRequestView {
 								MRSIntegration.queue(req, comment.getText());
 							}
 							break;
-						case 4: // Mark played
+						case 3: // Mark played
 							MRSIntegration.markPlayed(req);
 							break;
-						case 5: // Decline
+						case 4: // Decline
 							MRSIntegration.decline(req, comment.getText());
 							break;
 					}
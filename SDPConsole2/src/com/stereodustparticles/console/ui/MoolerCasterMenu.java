@@ -2,10 +2,13 @@ package com.stereodustparticles.console.ui;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 
 import com.stereodustparticles.console.SDPConsole2;
 import com.stereodustparticles.console.Utils;
+import com.stereodustparticles.console.deck.Deck;
 import com.stereodustparticles.console.deck.Decks;
+import com.stereodustparticles.console.deck.ShowRenderer;
 import com.stereodustparticles.console.error.MRSException;
 import com.stereodustparticles.console.event.Event;
 import com.stereodustparticles.console.event.EventBus;
@@ -14,7 +17,9 @@ import com.stereodustparticles.console.library.LibraryManager;
 import com.stereodustparticles.console.mrs.MRSIntegration;
 import com.stereodustparticles.console.multi.MultiConsole;
 import com.stereodustparticles.console.playlist.Playlist;
+import com.stereodustparticles.console.playlist.PlaylistEntry;
 import com.stereodustparticles.console.pref.Prefs;
+import com.stereodustparticles.console.record.Recorder;
 import com.stereodustparticles.console.soundboard.Soundboard;
 import com.stereodustparticles.console.ui.setup.DeckSetup;
 import com.stereodustparticles.console.ui.setup.LibraryManagerUI;
@@ -23,7 +28,9 @@ import com.stereodustparticles.console.ui.setup.MRSListGenerator;
 import com.stereodustparticles.console.ui.setup.MRSSetup;
 import com.stereodustparticles.console.ui.setup.MiscSetup;
 import com.stereodustparticles.console.ui.setup.PlaylistSetup;
+import com.stereodustparticles.console.ui.setup.RecorderSetup;
 import com.stereodustparticles.console.ui.setup.SoundboardSetup;
+import com.stereodustparticles.console.ui.setup.StreamSetup;
 
 import javafx.application.Platform;
 import javafx.event.ActionEvent;
@@ -158,6 +165,48 @@ public class MoolerCasterMenu extends MenuBar {
 			}
 		});
 		
+		// - Render Playlist
+		MenuItem renderPlaylist = new MenuItem("Render Playlist to File...");
+		renderPlaylist.setOnAction((e) -> {
+			FileChooser chooser = new FileChooser();
+			chooser.setTitle("Render Playlist");
+			chooser.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("WAV Files", "*.wav"), new FileChooser.ExtensionFilter("FLAC Files", "*.flac"));
+			File last = new File(Prefs.loadString(Prefs.LAST_PLAYLIST_EXPORT_DIR));
+			if ( last.exists() ) {
+				chooser.setInitialDirectory(last);
+			}
+			File dest = chooser.showSaveDialog(null);
+			if ( dest != null ) {
+				// Take a snapshot of the list as it stands, so the show can carry on while we render
+				ShowRenderer renderer = new ShowRenderer(new ArrayList<PlaylistEntry>(Playlist.getObservableList()), dest);
+				Utils.runInBackground(() -> {
+					try {
+						double speed = renderer.render();
+						String length = Utils.tenthsToString((int)(renderer.getRenderedSeconds() * 10));
+						Platform.runLater(() -> Microwave.showInfo("Render Complete", "Rendered " + length + " of audio to " + dest.getName() + String.format(" at %.1fx real time.", speed)));
+					}
+					catch (IOException e1) {
+						Platform.runLater(() -> Microwave.showException("Error Rendering Playlist", "An error occurred while rendering the playlist.  Check that the selected location is valid and writable, then try again.\n\nIf the problem persists, try rendering your computer unconscious.", e1));
+					}
+				});
+			}
+		});
+		
+		// - Record Aircheck
+		CheckMenuItem record = new CheckMenuItem("Record Aircheck");
+		record.setOnAction((e) -> {
+			if ( Recorder.isRecording() ) {
+				Recorder.stop();
+			}
+			else {
+				Recorder.start();
+			}
+			record.setSelected(Recorder.isRecording());
+		});
+		
+		// If the recorder stopped on its own (i.e. the disk filled up), the check mark needs to go
+		file.setOnShowing((e) -> record.setSelected(Recorder.isRecording()));
+		
 		// - Exit the Console
 		MenuItem exit = new MenuItem("Exit the Console");
 		exit.setAccelerator(new KeyCodeCombination(KeyCode.W, KeyCombination.CONTROL_DOWN));
@@ -166,7 +215,7 @@ public class MoolerCasterMenu extends MenuBar {
 			stage.close();
 		});
 		
-		file.getItems().addAll(newBla, openBla, new SeparatorMenuItem(), saveBla, saveBlaAs, new SeparatorMenuItem(), refreshLibs, new SeparatorMenuItem(), exportPlaylist, restorePlaylist, new SeparatorMenuItem(), exit);
+		file.getItems().addAll(newBla, openBla, new SeparatorMenuItem(), saveBla, saveBlaAs, new SeparatorMenuItem(), refreshLibs, new SeparatorMenuItem(), exportPlaylist, restorePlaylist, renderPlaylist, new SeparatorMenuItem(), record, new SeparatorMenuItem(), exit);
 		
 		// Requests menu
 		Menu reqs = new Menu("_Requests");
@@ -272,6 +321,14 @@ public class MoolerCasterMenu extends MenuBar {
 			MRSSetup.show();
 		});
 		
+		// - Configure Streaming...
+		MenuItem configStream = new MenuItem("Configure Streaming...");
+		configStream.setOnAction((e) -> StreamSetup.show());
+		
+		// - Aircheck Settings...
+		MenuItem recordPrefs = new MenuItem("Aircheck Settings...");
+		recordPrefs.setOnAction((e) -> RecorderSetup.show());
+		
 		// - Misc. Settings...
 		MenuItem miscPrefs = new MenuItem("Misc. Settings...");
 		miscPrefs.setOnAction((e) -> MiscSetup.show());
@@ -288,24 +345,34 @@ public class MoolerCasterMenu extends MenuBar {
 			
 			/* TODO Is this really a good idea?
 			if ( Decks.snpIsEnabled() ) {
-				// If either deck isn't ready (or playing), load something there so as to avoid One Job(TM) incidents
-				if ( ! Decks.deck1.isPlaying() && ! Decks.deck1.isReady() ) {
-					Utils.runInBackground(() -> Decks.deck1.autoLoad());
-				}
-				if ( ! Decks.deck2.isPlaying() && ! Decks.deck2.isReady() ) {
-					Utils.runInBackground(() -> Decks.deck2.autoLoad());
+				// If any deck isn't ready (or playing), load something there so as to avoid One Job(TM) incidents
+				for ( int i = 1; i <= Decks.getCount(); i++ ) {
+					Deck deck = Decks.get(i);
+					if ( ! deck.isPlaying() && ! deck.isReady() ) {
+						Utils.runInBackground(() -> deck.autoLoad());
+					}
 				}
 			}
 			*/
 			
 			// Potentially better idea:
-			// Pop up a warning message if the user enables Stream 'n' Poop(TM) without both decks ready (or playing)
-			if ( Decks.snpIsEnabled() && ( ! (Decks.deck1.isPlaying() || Decks.deck1.isReady()) || ! (Decks.deck2.isPlaying() || Decks.deck2.isReady()) ) ) {
-				Microwave.showWarning("To Avoid a ONE JOB Situation...", "Remember to load BOTH decks before leaving Stream 'n' Poop to do its thing!");
+			// Pop up a warning message if the user enables Stream 'n' Poop(TM) without all decks ready (or playing)
+			if ( Decks.snpIsEnabled() ) {
+				boolean allLoaded = true;
+				for ( int i = 1; i <= Decks.getCount(); i++ ) {
+					Deck deck = Decks.get(i);
+					if ( deck != null && ! (deck.isPlaying() || deck.isReady()) ) {
+						allLoaded = false;
+					}
+				}
+				
+				if ( ! allLoaded ) {
+					Microwave.showWarning("To Avoid a ONE JOB Situation...", "Remember to load ALL of the decks before leaving Stream 'n' Poop to do its thing!");
+				}
 			}
 		});
 		
-		options.getItems().addAll(libs, sbSize, deckPrefs, plPrefs, configMRS, miscPrefs, mcSetup, new SeparatorMenuItem(), snp);
+		options.getItems().addAll(libs, sbSize, deckPrefs, plPrefs, configMRS, configStream, recordPrefs, miscPrefs, mcSetup, new SeparatorMenuItem(), snp);
 		
 		// Help menu
 		Menu help = new Menu("_Help");
@@ -325,6 +392,13 @@ public class MoolerCasterMenu extends MenuBar {
 			Microwave.showInfo("Multi-Console Status", MultiConsole.getStatus());
 		});
 		
+		// - Playout Status
+		MenuItem playoutInfo = new MenuItem("Playout Status");
+		playoutInfo.setAccelerator(new KeyCodeCombination(KeyCode.F10, KeyCombination.CONTROL_DOWN));
+		playoutInfo.setOnAction((e) -> {
+			Microwave.showInfo("Playout Status", Decks.getPlayoutStatus());
+		});
+		
 		// - About
 		MenuItem about = new MenuItem("About the Mooler Caster Console");
 		about.setOnAction(new EventHandler<ActionEvent>() {
@@ -336,7 +410,7 @@ public class MoolerCasterMenu extends MenuBar {
 			
 		});
 		
-		help.getItems().addAll(memInfo, mcInfo, about);
+		help.getItems().addAll(memInfo, mcInfo, playoutInfo, about);
 		
 		// Add all the finished menus to the bar
 		getMenus().addAll(file, reqs, options, help);
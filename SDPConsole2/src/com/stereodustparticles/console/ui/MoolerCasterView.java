@@ -6,6 +6,7 @@ import java.util.List;
 import com.stereodustparticles.console.Utils;
 import com.stereodustparticles.console.deck.DeckLoadRequest;
 import com.stereodustparticles.console.deck.Decks;
+import com.stereodustparticles.console.deck.Preview;
 import com.stereodustparticles.console.error.HTTPException;
 import com.stereodustparticles.console.error.ModemDefenestrationException;
 import com.stereodustparticles.console.event.Event;
@@ -102,8 +103,9 @@ public class MoolerCasterView {
 		leftPane.getChildren().add(spotGrid);
 		
 		// Create the deck controls and add them to the left pane
-		leftPane.getChildren().add(new DeckControlPane(1));
-		leftPane.getChildren().add(new DeckControlPane(2));
+		for ( int i = 1; i <= Decks.getCount(); i++ ) {
+			leftPane.getChildren().add(new DeckControlPane(i));
+		}
 		
 		// Add the left pane to the root
 		main.getChildren().add(leftPane);
@@ -178,16 +180,18 @@ public class MoolerCasterView {
 		btmButtBar.setSpacing(7);
 		btmButtBar.setPadding(new Insets(0, 0, 25, 0)); // To push next set of controls down later
 		Label loadTo = new Label("Load To:");
-		Button loadDeck1 = new Button("Deck 1");
-		Button loadDeck2 = new Button("Deck 2");
+		Button[] loadDeck = makeDeckButtons();
 		Button loadSB = new Button("Soundboard");
 		Button addTent = new Button("Add Tentative");
+		Button preview = new Button("Preview");
 		loadTo.setDisable(true);
-		loadDeck1.setDisable(true);
-		loadDeck2.setDisable(true);
+		setDisable(loadDeck, true);
 		loadSB.setDisable(true);
 		addTent.setDisable(true);
-		btmButtBar.getChildren().addAll(loadTo, loadDeck1, loadDeck2, loadSB, addTent);
+		preview.setDisable(true);
+		btmButtBar.getChildren().add(loadTo);
+		btmButtBar.getChildren().addAll(loadDeck);
+		btmButtBar.getChildren().addAll(loadSB, addTent, preview);
 		rightPane.getChildren().add(btmButtBar);
 		
 		// Add the playlist manager label
@@ -221,14 +225,14 @@ public class MoolerCasterView {
 		ttButtBar.setAlignment(Pos.CENTER_LEFT);
 		ttButtBar.setSpacing(7);
 		Label ttLoad = new Label("Load Tentative Track To:");
-		Button ttDeck1 = new Button("Deck 1");
-		Button ttDeck2 = new Button("Deck 2");
+		Button[] ttDeck = makeDeckButtons();
 		Button ttPlayed = new Button("Mark Played");
 		ttLoad.setDisable(true);
-		ttDeck1.setDisable(true);
-		ttDeck2.setDisable(true);
+		setDisable(ttDeck, true);
 		ttPlayed.setDisable(true);
-		ttButtBar.getChildren().addAll(ttLoad, ttDeck1, ttDeck2, ttPlayed);
+		ttButtBar.getChildren().add(ttLoad);
+		ttButtBar.getChildren().addAll(ttDeck);
+		ttButtBar.getChildren().add(ttPlayed);
 		rightPane.getChildren().add(ttButtBar);
 		
 		// Add the right pane to the root
@@ -253,24 +257,24 @@ public class MoolerCasterView {
 				// Enable/disable load buttons as necessary
 				if ( newValue == null || newValue.isDir() ) {
 					loadTo.setDisable(true);
-					loadDeck1.setDisable(true);
-					loadDeck2.setDisable(true);
+					setDisable(loadDeck, true);
 					loadSB.setDisable(true);
 					addTent.setDisable(true);
+					preview.setDisable(! Preview.isPlaying());
 				}
 				else if ( ! newValue.isLoadable() ) {
 					loadTo.setDisable(false);
-					loadDeck1.setDisable(true);
-					loadDeck2.setDisable(true);
+					setDisable(loadDeck, true);
 					loadSB.setDisable(true);
 					addTent.setDisable(false);
+					preview.setDisable(! Preview.isPlaying());
 				}
 				else {
 					loadTo.setDisable(false);
-					loadDeck1.setDisable(false);
-					loadDeck2.setDisable(false);
+					setDisable(loadDeck, false);
 					loadSB.setDisable(false);
 					addTent.setDisable(false);
+					preview.setDisable(false);
 				}
 				
 				// Update metadata labels - if new selection is null, blank them
@@ -386,55 +390,33 @@ public class MoolerCasterView {
 		});
 		
 		// Deck load
-		loadDeck1.setOnAction(new EventHandler<ActionEvent>() {
-		    
-			@Override
-		    public void handle(ActionEvent e) {
-				if ( Decks.deck1IsPlaying() ) {
-					Microwave.showWarning("You only had ONE JOB!", "You didn't really want to load over a playing track, did you?");
-					return;
-				}
-				
-				String cLibrary = libMenu.getSelectionModel().selectedItemProperty().get();
-				LibraryEntry cEntry = libView.getSelectionModel().selectedItemProperty().get();
-				
-				DeckLoadRequest req = new DeckLoadRequest(cEntry.getTitle(), cEntry.getArtist(), cEntry.getDuration(), cLibrary, LibraryManager.getLibraryForName(cLibrary).getPathInLibrary(cEntry), 1);
-				EventBus.fireEvent(new Event(EventType.DECK_REQUEST_LOAD, req));
-				
-				// Adjust the volume fader to the ReplayGain value, or 0 dB if none is present
-				EventBus.fireEvent(new Event(EventType.DECK_FADER_SET, 1, cEntry.getGain()));
-				
-				if ( Prefs.loadBoolean(Prefs.AUTO_ADD_TENTATIVE) && ! Decks.snpIsEnabled() ) {
-					EventBus.fireEvent(new Event(EventType.PLAYLIST_ADD, new PlaylistEntry(cEntry, true, LibraryManager.getLibraryForName(cLibrary).getDefaultFlags())));
-				}
-		    }
-			
-		});
-		
-		loadDeck2.setOnAction(new EventHandler<ActionEvent>() {
-		    
-			@Override
-		    public void handle(ActionEvent e) {
-				if ( Decks.deck2IsPlaying() ) {
-					Microwave.showWarning("You only had ONE JOB!", "You didn't really want to load over a playing track, did you?");
-					return;
-				}
-				
-				String cLibrary = libMenu.getSelectionModel().selectedItemProperty().get();
-				LibraryEntry cEntry = libView.getSelectionModel().selectedItemProperty().get();
-				
-				DeckLoadRequest req = new DeckLoadRequest(cEntry.getTitle(), cEntry.getArtist(), cEntry.getDuration(), cLibrary, LibraryManager.getLibraryForName(cLibrary).getPathInLibrary(cEntry), 2);
-				EventBus.fireEvent(new Event(EventType.DECK_REQUEST_LOAD, req));
-				
-				// Adjust the volume fader to the ReplayGain value, or 0 dB if none is present
-				EventBus.fireEvent(new Event(EventType.DECK_FADER_SET, 2, cEntry.getGain()));
+		for ( int i = 0; i < loadDeck.length; i++ ) {
+			final int deckNum = i + 1;
+			loadDeck[i].setOnAction(new EventHandler<ActionEvent>() {
+			    
+				@Override
+			    public void handle(ActionEvent e) {
+					if ( Decks.isPlaying(deckNum) ) {
+						Microwave.showWarning("You only had ONE JOB!", "You didn't really want to load over a playing track, did you?");
+						return;
+					}
+					
+					String cLibrary = libMenu.getSelectionModel().selectedItemProperty().get();
+					LibraryEntry cEntry = libView.getSelectionModel().selectedItemProperty().get();
+					
+					DeckLoadRequest req = new DeckLoadRequest(cEntry.getTitle(), cEntry.getArtist(), cEntry.getDuration(), cLibrary, LibraryManager.getLibraryForName(cLibrary).getPathInLibrary(cEntry), deckNum);
+					EventBus.fireEvent(new Event(EventType.DECK_REQUEST_LOAD, req));
+					
+					// Adjust the volume fader to the ReplayGain value, or 0 dB if none is present
+					EventBus.fireEvent(new Event(EventType.DECK_FADER_SET, deckNum, cEntry.getGain()));
+					
+					if ( Prefs.loadBoolean(Prefs.AUTO_ADD_TENTATIVE) && ! Decks.snpIsEnabled() ) {
+						EventBus.fireEvent(new Event(EventType.PLAYLIST_ADD, new PlaylistEntry(cEntry, true, LibraryManager.getLibraryForName(cLibrary).getDefaultFlags())));
+					}
+			    }
 				
-				if ( Prefs.loadBoolean(Prefs.AUTO_ADD_TENTATIVE) && ! Decks.snpIsEnabled() ) {
-					EventBus.fireEvent(new Event(EventType.PLAYLIST_ADD, new PlaylistEntry(cEntry, true, LibraryManager.getLibraryForName(cLibrary).getDefaultFlags())));
-				}
-		    }
-			
-		});
+			});
+		}
 		
 		loadSB.setOnAction(new EventHandler<ActionEvent>() {
 
@@ -460,6 +442,29 @@ public class MoolerCasterView {
 			
 		});
 		
+		// Preview the selected track in the headphones (or stop previewing)
+		preview.setOnAction((e) -> {
+			if ( Preview.isPlaying() ) {
+				Preview.stop();
+				return;
+			}
+			
+			LibraryEntry cEntry = libView.getSelectionModel().selectedItemProperty().get();
+			if ( cEntry == null || ! cEntry.isLoadable() ) {
+				return;
+			}
+			
+			preview.setText("Stop Preview");
+			Preview.play(cEntry, () -> {
+				// Another preview may have started up since this one ended
+				if ( ! Preview.isPlaying() ) {
+					preview.setText("Preview");
+					LibraryEntry sel = libView.getSelectionModel().selectedItemProperty().get();
+					preview.setDisable(sel == null || ! sel.isLoadable());
+				}
+			});
+		});
+		
 		// Playlist controls
 		manAdd.setOnAction((e) -> {
 			new PlaylistEntryEditor(null, 0).show();
@@ -490,29 +495,20 @@ public class MoolerCasterView {
 			}
 		});
 		
-		ttDeck1.setOnAction((e) -> {
-			if ( Decks.deck1IsPlaying() ) {
-				Microwave.showWarning("You only had ONE JOB!", "You didn't really want to load over a playing track, did you?");
-				return;
-			}
-			
-			LibraryEntry cEntry = playlist.getSelectionModel().selectedItemProperty().get().getLocation();
-			
-			DeckLoadRequest req = new DeckLoadRequest(cEntry.getTitle(), cEntry.getArtist(), cEntry.getDuration(), cEntry.getLibraryName(), LibraryManager.getLibraryForName(cEntry.getLibraryName()).getPathInLibrary(cEntry), 1);
-			EventBus.fireEvent(new Event(EventType.DECK_REQUEST_LOAD, req));
-		});
-		
-		ttDeck2.setOnAction((e) -> {
-			if ( Decks.deck2IsPlaying() ) {
-				Microwave.showWarning("You only had ONE JOB!", "You didn't really want to load over a playing track, did you?");
-				return;
-			}
-			
-			LibraryEntry cEntry = playlist.getSelectionModel().selectedItemProperty().get().getLocation();
-			
-			DeckLoadRequest req = new DeckLoadRequest(cEntry.getTitle(), cEntry.getArtist(), cEntry.getDuration(), cEntry.getLibraryName(), LibraryManager.getLibraryForName(cEntry.getLibraryName()).getPathInLibrary(cEntry), 2);
-			EventBus.fireEvent(new Event(EventType.DECK_REQUEST_LOAD, req));
-		});
+		for ( int i = 0; i < ttDeck.length; i++ ) {
+			final int deckNum = i + 1;
+			ttDeck[i].setOnAction((e) -> {
+				if ( Decks.isPlaying(deckNum) ) {
+					Microwave.showWarning("You only had ONE JOB!", "You didn't really want to load over a playing track, did you?");
+					return;
+				}
+				
+				LibraryEntry cEntry = playlist.getSelectionModel().selectedItemProperty().get().getLocation();
+				
+				DeckLoadRequest req = new DeckLoadRequest(cEntry.getTitle(), cEntry.getArtist(), cEntry.getDuration(), cEntry.getLibraryName(), LibraryManager.getLibraryForName(cEntry.getLibraryName()).getPathInLibrary(cEntry), deckNum);
+				EventBus.fireEvent(new Event(EventType.DECK_REQUEST_LOAD, req));
+			});
+		}
 		
 		ttPlayed.setOnAction((e) -> {
 			EventBus.fireEvent(new Event(EventType.PLAYLIST_MARK_PLAYED, playlist.getSelectionModel().getSelectedItem()));
@@ -523,8 +519,7 @@ public class MoolerCasterView {
 		ChangeListener<Boolean> tentListener = (obs, oldValue, newValue) -> {
 			if ( newValue == false ) {
 				ttLoad.setDisable(true);
-				ttDeck1.setDisable(true);
-				ttDeck2.setDisable(true);
+				setDisable(ttDeck, true);
 				ttPlayed.setDisable(true);
 			}
 			else {
@@ -533,12 +528,10 @@ public class MoolerCasterView {
 				
 				LibraryEntry loc = playlist.getSelectionModel().getSelectedItem().getLocation();
 				if ( loc != null && loc.isLoadable() ) {
-					ttDeck1.setDisable(false);
-					ttDeck2.setDisable(false);
+					setDisable(ttDeck, false);
 				}
 				else {
-					ttDeck1.setDisable(true);
-					ttDeck2.setDisable(true);
+					setDisable(ttDeck, true);
 				}
 			}
 		};
@@ -560,8 +553,7 @@ public class MoolerCasterView {
 			
 			if ( newValue == null || ! newValue.isTentative() ) {
 				ttLoad.setDisable(true);
-				ttDeck1.setDisable(true);
-				ttDeck2.setDisable(true);
+				setDisable(ttDeck, true);
 				ttPlayed.setDisable(true);
 			}
 			else {
@@ -570,12 +562,10 @@ public class MoolerCasterView {
 				
 				LibraryEntry loc = newValue.getLocation();
 				if ( loc != null && loc.isLoadable() ) {
-					ttDeck1.setDisable(false);
-					ttDeck2.setDisable(false);
+					setDisable(ttDeck, false);
 				}
 				else {
-					ttDeck1.setDisable(true);
-					ttDeck2.setDisable(true);
+					setDisable(ttDeck, true);
 				}
 			}
 			
@@ -649,6 +639,22 @@ public class MoolerCasterView {
 		}
 	}
 
+	// Make one "Deck n" button for each deck
+	private static Button[] makeDeckButtons() {
+		Button[] buttons = new Button[Decks.getCount()];
+		for ( int i = 0; i < buttons.length; i++ ) {
+			buttons[i] = new Button("Deck " + (i + 1));
+		}
+		return buttons;
+	}
+	
+	// Enable/disable a whole set of buttons at once
+	private static void setDisable(Button[] buttons, boolean disable) {
+		for ( Button button : buttons ) {
+			button.setDisable(disable);
+		}
+	}
+	
 	// Return the scene
 	public Scene getScene() {
 		return scene;
@@ -8,6 +8,7 @@
  */
 package com.stereodustparticles.console.ui.setup;
 
+import com.stereodustparticles.console.deck.MixEngine;
 import com.stereodustparticles.console.pref.Prefs;
 import com.stereodustparticles.console.ui.Microwave;
 
@@ -29,6 +30,10 @@ public class DeckSetup {
 	private static Stage stage = null;
 	private static Spinner<Integer> flashPt;
 	private static CheckBox autoTent;
+	private static Spinner<Integer> deckCount;
+	private static Spinner<Integer> crossfade;
+	private static CheckBox lowLatency;
+	private static CheckBox primedPlay;
 	
 	private static void init() {
 		stage = new Stage();
@@ -53,6 +58,34 @@ public class DeckSetup {
 		autoTent = new CheckBox("Automatically add tentative tracks to the playlist when loading the decks");
 		autoTent.setSelected(Prefs.loadBoolean(Prefs.AUTO_ADD_TENTATIVE));
 		root.getChildren().add(autoTent);
+		
+		// Controls for number of decks
+		HBox countSet = new HBox(8);
+		countSet.setAlignment(Pos.CENTER_LEFT);
+		deckCount = new Spinner<Integer>(1, 8, Prefs.loadInt(Prefs.DECK_COUNT));
+		deckCount.setPrefWidth(65);
+		deckCount.setEditable(true);
+		countSet.getChildren().addAll(new Label("Number of decks:"), deckCount);
+		root.getChildren().add(countSet);
+		
+		// Controls for Stream 'n' Poop(TM) crossfade
+		HBox fadeSet = new HBox(8);
+		fadeSet.setAlignment(Pos.CENTER_LEFT);
+		crossfade = new Spinner<Integer>(0, 10000, Prefs.loadInt(Prefs.SNP_CROSSFADE), 100);
+		crossfade.setPrefWidth(80);
+		crossfade.setEditable(true);
+		fadeSet.getChildren().addAll(new Label("Crossfade decks by"), crossfade, new Label("ms when Stream 'n' Poop(TM) segues."));
+		root.getChildren().add(fadeSet);
+		
+		// Controls for low-latency mode
+		lowLatency = new CheckBox("Low-latency playout (buffers grow automatically if the audio starts breaking up)");
+		lowLatency.setSelected(Prefs.loadBoolean(Prefs.LOW_LATENCY));
+		root.getChildren().add(lowLatency);
+		
+		// Controls for primed PLAY
+		primedPlay = new CheckBox("Primed PLAY (keep stopped decks loaded right up to the mixer, so PLAY starts instantly)");
+		primedPlay.setSelected(Prefs.loadBoolean(Prefs.PRIMED_PLAY));
+		root.getChildren().add(primedPlay);
 	
 		// "Butts"
 		HBox buttBar = new HBox(8);
@@ -65,14 +98,9 @@ public class DeckSetup {
 		
 		// Butt event handlers
 		ok.setOnAction((e) -> {
-			// Commit the value in the spinner's text field, because apparently Java is too dumb to do that on its own!
-			// Loosely derived from https://stackoverflow.com/questions/32340476/manually-typing-in-text-in-javafx-spinner-is-not-updating-the-value-unless-user
+			// Commit the values in the spinners' text fields
 			try {
-				String text = flashPt.getEditor().getText();
-				SpinnerValueFactory<Integer> valueFactory = flashPt.getValueFactory();
-				StringConverter<Integer> converter = valueFactory.getConverter();
-				Integer value = converter.fromString(text);
-	            valueFactory.setValue(value);
+				commitSpinnerChange(flashPt);
 			}
 			// While we're at it, check to make sure the user isn't trying to slip a non-number past us!
 			catch (NumberFormatException e1) {
@@ -80,9 +108,37 @@ public class DeckSetup {
 				return;
 			}
 			
+			try {
+				commitSpinnerChange(deckCount);
+			}
+			catch (NumberFormatException e1) {
+				Microwave.showError("Nice try!", "I see what you're trying to do, and yes, I thought of that!\n\nEnter an actual number of decks, then try again!");
+				return;
+			}
+			
+			try {
+				commitSpinnerChange(crossfade);
+			}
+			catch (NumberFormatException e1) {
+				Microwave.showError("Nice try!", "I see what you're trying to do, and yes, I thought of that!\n\nEnter an actual number for the crossfade length, then try again!");
+				return;
+			}
+			
 			Prefs.saveInt(Prefs.FLASH_POINT, flashPt.getValue());
+			Prefs.saveInt(Prefs.SNP_CROSSFADE, crossfade.getValue());
+			Prefs.saveBoolean(Prefs.LOW_LATENCY, lowLatency.isSelected());
+			Prefs.saveBoolean(Prefs.PRIMED_PLAY, primedPlay.isSelected());
+			if ( MixEngine.getMaster() != null ) {
+				MixEngine.getMaster().setLowLatency(lowLatency.isSelected());
+			}
 			Prefs.saveBoolean(Prefs.AUTO_ADD_TENTATIVE, autoTent.isSelected());
 			
+			// If the number of decks changed, remind the user to restart the Console
+			if ( deckCount.getValue() != Prefs.loadInt(Prefs.DECK_COUNT) ) {
+				Prefs.saveInt(Prefs.DECK_COUNT, deckCount.getValue());
+				Microwave.showInfo("Settings Changed", "Restart the Console for the new number of decks to take effect.", stage);
+			}
+			
 			stage.close();
 		});
 		
@@ -102,8 +158,22 @@ public class DeckSetup {
 		else {
 			flashPt.getValueFactory().setValue(Prefs.loadInt(Prefs.FLASH_POINT));
 			autoTent.setSelected(Prefs.loadBoolean(Prefs.AUTO_ADD_TENTATIVE));
+			deckCount.getValueFactory().setValue(Prefs.loadInt(Prefs.DECK_COUNT));
+			crossfade.getValueFactory().setValue(Prefs.loadInt(Prefs.SNP_CROSSFADE));
+			lowLatency.setSelected(Prefs.loadBoolean(Prefs.LOW_LATENCY));
+			primedPlay.setSelected(Prefs.loadBoolean(Prefs.PRIMED_PLAY));
 		}
 		
 		stage.show();
 	}
+	
+	// Commit the value in a spinner's text field, because apparently Java is too dumb to do that on its own!
+	// Loosely derived from https://stackoverflow.com/questions/32340476/manually-typing-in-text-in-javafx-spinner-is-not-updating-the-value-unless-user
+	private static <T> void commitSpinnerChange(Spinner<T> spinner) {
+		String text = spinner.getEditor().getText();
+		SpinnerValueFactory<T> valueFactory = spinner.getValueFactory();
+		StringConverter<T> converter = valueFactory.getConverter();
+		T value = converter.fromString(text);
+		valueFactory.setValue(value);
+	}
 }
@@ -10,6 +10,7 @@ package com.stereodustparticles.console.ui.setup;
 
 import java.io.File;
 
+import com.stereodustparticles.console.deck.Preview;
 import com.stereodustparticles.console.pref.Prefs;
 import com.stereodustparticles.console.ui.Microwave;
 
@@ -17,17 +18,25 @@ import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.DirectoryChooser;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 
 public class MiscSetup {
 	private static Stage stage = null;
 	
+	// Output choices, as shown, and as saved in the prefs
+	private static final String[] OUTPUT_NAMES = { "the sound card", "a file", "nowhere" };
+	private static final String[] OUTPUT_BACKENDS = { "javasound", "file", "null" };
+	private static final String NO_PREVIEW = "(nothing - no previews)";
+	
 	private static void init() {
 		stage = new Stage();
 		stage.setTitle("Misc. Settings");
@@ -62,6 +71,84 @@ public class MiscSetup {
 		cacheSet.getChildren().addAll(new Label("Use the following directory to cache files from remote libraries:"), cacheDirSet);
 		root.getChildren().add(cacheSet);
 		
+		// Controls for output sample rate
+		HBox rateSet = new HBox(8);
+		rateSet.setAlignment(Pos.CENTER_LEFT);
+		ChoiceBox<Integer> rate = new ChoiceBox<Integer>();
+		rate.getItems().addAll(44100, 48000, 88200, 96000);
+		rate.setValue(Prefs.loadInt(Prefs.OUTPUT_SAMPLE_RATE));
+		rateSet.getChildren().addAll(new Label("Run the sound card at"), rate, new Label("Hz (anything else gets resampled)"));
+		root.getChildren().add(rateSet);
+		
+		// Controls for where the mix goes (for testing without a sound card, mostly)
+		VBox outputSet = new VBox(8);
+		outputSet.setAlignment(Pos.CENTER_LEFT);
+		
+		HBox backendSet = new HBox(8);
+		backendSet.setAlignment(Pos.CENTER_LEFT);
+		ChoiceBox<String> backend = new ChoiceBox<String>();
+		backend.getItems().addAll(OUTPUT_NAMES);
+		String oldBackend = Prefs.loadString(Prefs.OUTPUT_BACKEND);
+		backend.setValue(OUTPUT_NAMES[0]);
+		for ( int i = 0; i < OUTPUT_BACKENDS.length; i++ ) {
+			if ( OUTPUT_BACKENDS[i].equals(oldBackend) ) {
+				backend.setValue(OUTPUT_NAMES[i]);
+			}
+		}
+		backendSet.getChildren().addAll(new Label("Send the mix to"), backend);
+		
+		HBox outFileSet = new HBox(4);
+		TextField outFile = new TextField(Prefs.loadString(Prefs.OUTPUT_FILE));
+		outFile.setPrefWidth(250);
+		Button outBrowse = new Button("Browse...");
+		outBrowse.setOnAction((e) -> {
+			FileChooser chooser = new FileChooser();
+			chooser.setTitle("Choose Output File");
+			chooser.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("WAV Files", "*.wav"), new FileChooser.ExtensionFilter("FLAC Files", "*.flac"));
+			File to = chooser.showSaveDialog(stage);
+			if ( to != null ) {
+				outFile.setText(to.toString());
+			}
+		});
+		outFileSet.getChildren().addAll(outFile, outBrowse);
+		
+		CheckBox flatOut = new CheckBox("Don't wait for the clock - run as fast as possible (file/nowhere only)");
+		flatOut.setSelected(Prefs.loadBoolean(Prefs.OUTPUT_FLAT_OUT));
+		
+		// The file only matters if that's where we're going
+		outFileSet.disableProperty().bind(backend.valueProperty().isNotEqualTo(OUTPUT_NAMES[1]));
+		flatOut.disableProperty().bind(backend.valueProperty().isEqualTo(OUTPUT_NAMES[0]));
+		
+		outputSet.getChildren().addAll(backendSet, outFileSet, flatOut);
+		root.getChildren().add(outputSet);
+		
+		// Controls for where previews go (which had better not be the on-air sound card)
+		HBox previewSet = new HBox(8);
+		previewSet.setAlignment(Pos.CENTER_LEFT);
+		ChoiceBox<String> previewMixer = new ChoiceBox<String>();
+		previewMixer.getItems().add(NO_PREVIEW);
+		previewMixer.getItems().addAll(Preview.getMixerNames());
+		String oldMixer = Prefs.loadString(Prefs.PREVIEW_MIXER);
+		previewMixer.setValue(previewMixer.getItems().contains(oldMixer) ? oldMixer : NO_PREVIEW);
+		previewSet.getChildren().addAll(new Label("Preview tracks on"), previewMixer);
+		root.getChildren().add(previewSet);
+		
+		// Controls for the playout watchdog
+		VBox watchdogSet = new VBox(8);
+		watchdogSet.setAlignment(Pos.CENTER_LEFT);
+		
+		HBox stallSet = new HBox(8);
+		stallSet.setAlignment(Pos.CENTER_LEFT);
+		TextField stallMillis = new TextField(Integer.toString(Prefs.loadInt(Prefs.WATCHDOG_STALL_MILLIS)));
+		stallMillis.setPrefWidth(70);
+		stallSet.getChildren().addAll(new Label("Sound the alarm when a deck or the sound card goes quiet for"), stallMillis, new Label("ms"));
+		
+		CheckBox recover = new CheckBox("Try to get back on the air (hand off to the next deck, or reopen the sound card)");
+		recover.setSelected(Prefs.loadBoolean(Prefs.WATCHDOG_RECOVER));
+		
+		watchdogSet.getChildren().addAll(stallSet, recover);
+		root.getChildren().add(watchdogSet);
+		
 		// "Butts"
 		HBox buttBar = new HBox(8);
 		buttBar.setAlignment(Pos.CENTER);
@@ -85,8 +172,41 @@ public class MiscSetup {
 				return;
 			}
 			
+			int stallNum;
+			try {
+				stallNum = Integer.parseInt(stallMillis.getText());
+			}
+			catch (NumberFormatException e1) {
+				Microwave.showError("Say What?", "The alarm time has to be, well, a number.", stage);
+				return;
+			}
+			if ( stallNum <= 0 ) {
+				Microwave.showError("That Won't Work...", "If I sounded the alarm that quickly, I'd never shut up!\n\nEnter an alarm time above 0 ms, then try again.", stage);
+				return;
+			}
+			
 			Prefs.saveString(Prefs.CACHE_DIR, cacheDir.getText());
 			
+			String newBackend = OUTPUT_BACKENDS[backend.getItems().indexOf(backend.getValue())];
+			if ( newBackend.equals("file") && outFile.getText().isEmpty() ) {
+				Microwave.showError("You only had ONE JOB!", "If the mix is going to a file, I'm going to need to know which one.", stage);
+				return;
+			}
+			
+			// If the sample rate or output changed, remind the user to restart the Console
+			boolean outputChanged = ! newBackend.equals(Prefs.loadString(Prefs.OUTPUT_BACKEND)) || ! outFile.getText().equals(Prefs.loadString(Prefs.OUTPUT_FILE)) || flatOut.isSelected() != Prefs.loadBoolean(Prefs.OUTPUT_FLAT_OUT);
+			Prefs.saveString(Prefs.OUTPUT_BACKEND, newBackend);
+			Prefs.saveString(Prefs.OUTPUT_FILE, outFile.getText());
+			Prefs.saveBoolean(Prefs.OUTPUT_FLAT_OUT, flatOut.isSelected());
+			Prefs.saveString(Prefs.PREVIEW_MIXER, previewMixer.getValue().equals(NO_PREVIEW) ? "" : previewMixer.getValue());
+			Prefs.saveInt(Prefs.WATCHDOG_STALL_MILLIS, stallNum);
+			Prefs.saveBoolean(Prefs.WATCHDOG_RECOVER, recover.isSelected());
+			
+			if ( rate.getValue() != Prefs.loadInt(Prefs.OUTPUT_SAMPLE_RATE) || outputChanged ) {
+				Prefs.saveInt(Prefs.OUTPUT_SAMPLE_RATE, rate.getValue());
+				Microwave.showInfo("Settings Changed", "Restart the Console for the new output settings to take effect.", stage);
+			}
+			
 			stage.close();
 		});
 		
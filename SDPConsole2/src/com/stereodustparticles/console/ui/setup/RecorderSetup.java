@@ -0,0 +1,134 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * RecorderSetup: Aircheck recorder settings dialog
+ */
+package com.stereodustparticles.console.ui.setup;
+
+import java.io.File;
+
+import com.stereodustparticles.console.pref.Prefs;
+import com.stereodustparticles.console.record.Recorder;
+import com.stereodustparticles.console.ui.Microwave;
+
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ChoiceBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.stage.DirectoryChooser;
+import javafx.stage.Stage;
+import javafx.stage.StageStyle;
+
+public class RecorderSetup {
+	private static Stage stage = null;
+	private static TextField recordDir;
+	private static ChoiceBox<String> format;
+	private static CheckBox decks;
+	private static Label status;
+	
+	private static void init() {
+		stage = new Stage();
+		stage.setTitle("Aircheck Settings");
+		stage.setResizable(false);
+		stage.initStyle(StageStyle.UTILITY);
+		
+		VBox root = new VBox(20);
+		root.setAlignment(Pos.CENTER);
+		root.setPadding(new Insets(20, 25, 20, 25));
+		
+		// Where the files go
+		VBox dirSet = new VBox(8);
+		dirSet.setAlignment(Pos.CENTER_LEFT);
+		
+		HBox dirBrowse = new HBox(4);
+		recordDir = new TextField();
+		recordDir.setPrefWidth(250);
+		Button browse = new Button("Browse...");
+		browse.setOnAction((e) -> {
+			DirectoryChooser chooser = new DirectoryChooser();
+			chooser.setTitle("Choose Aircheck Directory");
+			File last = new File(recordDir.getText());
+			if ( last.exists() ) {
+				chooser.setInitialDirectory(last);
+			}
+			File from = chooser.showDialog(stage);
+			if ( from != null ) {
+				recordDir.setText(from.toString());
+			}
+		});
+		dirBrowse.getChildren().addAll(recordDir, browse);
+		dirSet.getChildren().addAll(new Label("Save airchecks in the following directory:"), dirBrowse);
+		root.getChildren().add(dirSet);
+		
+		// What kind of files
+		HBox formatSet = new HBox(8);
+		formatSet.setAlignment(Pos.CENTER_LEFT);
+		format = new ChoiceBox<String>();
+		format.getItems().addAll("flac", "wav");
+		formatSet.getChildren().addAll(new Label("Record to"), format, new Label("files (a new one starts every hour)"));
+		root.getChildren().add(formatSet);
+		
+		decks = new CheckBox("Also record each deck on its own (before the fader)");
+		root.getChildren().add(decks);
+		
+		// How it's going right now
+		status = new Label();
+		status.setWrapText(true);
+		status.setMaxWidth(400);
+		root.getChildren().add(status);
+		
+		// "Butts"
+		HBox buttBar = new HBox(8);
+		buttBar.setAlignment(Pos.CENTER);
+		Button ok = new Button("OK");
+		Button cancel = new Button("Cancel");
+		ok.setPrefWidth(80);
+		cancel.setPrefWidth(80);
+		buttBar.getChildren().addAll(ok, cancel);
+		
+		ok.setOnAction((e) -> {
+			if ( recordDir.getText().isEmpty() ) {
+				Microwave.showError("You only had ONE JOB!", "Airchecks have to go somewhere!\n\nChoose a directory to save them in, then try again.", stage);
+				return;
+			}
+			
+			Prefs.saveString(Prefs.RECORD_DIR, recordDir.getText());
+			Prefs.saveString(Prefs.RECORD_FORMAT, format.getValue());
+			Prefs.saveBoolean(Prefs.RECORD_DECKS, decks.isSelected());
+			
+			if ( Recorder.isRecording() ) {
+				Microwave.showInfo("Settings Changed", "The new settings will take effect the next time you start recording.", stage);
+			}
+			
+			stage.close();
+		});
+		
+		cancel.setOnAction((e) -> stage.close());
+		
+		root.getChildren().add(buttBar);
+		
+		stage.setScene(new Scene(root));
+	}
+	
+	public static void show() {
+		if ( stage == null ) {
+			init();
+		}
+		
+		recordDir.setText(Prefs.loadString(Prefs.RECORD_DIR));
+		format.setValue(Prefs.loadString(Prefs.RECORD_FORMAT));
+		decks.setSelected(Prefs.loadBoolean(Prefs.RECORD_DECKS));
+		status.setText(Recorder.getStatus());
+		
+		stage.show();
+	}
+}
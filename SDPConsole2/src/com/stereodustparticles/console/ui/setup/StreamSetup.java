@@ -0,0 +1,141 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * StreamSetup: Built-in streaming configuration dialog
+ */
+package com.stereodustparticles.console.ui.setup;
+
+import com.stereodustparticles.console.pref.Prefs;
+import com.stereodustparticles.console.stream.Streaming;
+import com.stereodustparticles.console.ui.Microwave;
+
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.PasswordField;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+import javafx.stage.StageStyle;
+
+public class StreamSetup {
+	private static Stage stage = null;
+	private static CheckBox enable;
+	private static TextField host;
+	private static TextField port;
+	private static TextField mount;
+	private static TextField user;
+	private static PasswordField password;
+	private static TextField name;
+	private static Label status;
+	
+	private static void init() {
+		stage = new Stage();
+		stage.setTitle("Streaming Configuration");
+		stage.setResizable(false);
+		stage.initStyle(StageStyle.UTILITY);
+		
+		// Root
+		VBox root = new VBox(20);
+		root.setAlignment(Pos.CENTER);
+		root.setPadding(new Insets(20, 25, 20, 25));
+		
+		enable = new CheckBox("Stream the master output to an Icecast server");
+		root.getChildren().add(enable);
+		
+		// Text fields in grid
+		GridPane mtxPane = new GridPane();
+		mtxPane.setHgap(18);
+		mtxPane.setVgap(6);
+		mtxPane.setPadding(new Insets(15, 15, 15, 15));
+		
+		mtxPane.add(new Label("Server:"), 0, 0);
+		mtxPane.add(new Label("Port:"), 0, 1);
+		mtxPane.add(new Label("Mount Point:"), 0, 2);
+		mtxPane.add(new Label("Username:"), 0, 3);
+		mtxPane.add(new Label("Password:"), 0, 4);
+		mtxPane.add(new Label("Stream Name:"), 0, 5);
+		
+		host = new TextField();
+		port = new TextField();
+		mount = new TextField();
+		user = new TextField();
+		password = new PasswordField();
+		name = new TextField();
+		
+		mtxPane.add(host, 1, 0);
+		mtxPane.add(port, 1, 1);
+		mtxPane.add(mount, 1, 2);
+		mtxPane.add(user, 1, 3);
+		mtxPane.add(password, 1, 4);
+		mtxPane.add(name, 1, 5);
+		
+		root.getChildren().add(mtxPane);
+		
+		// How it's going right now
+		status = new Label();
+		root.getChildren().add(status);
+		
+		// "Butts"
+		HBox buttBar = new HBox(8);
+		buttBar.setAlignment(Pos.CENTER);
+		Button ok = new Button("OK");
+		Button cancel = new Button("Cancel");
+		ok.setPrefWidth(80);
+		cancel.setPrefWidth(80);
+		buttBar.getChildren().addAll(ok, cancel);
+		
+		ok.setOnAction((e) -> {
+			int portNum;
+			try {
+				portNum = Integer.parseInt(port.getText());
+			}
+			catch (NumberFormatException e1) {
+				Microwave.showError("Say What?", "The port number has to be, well, a number.", stage);
+				return;
+			}
+			
+			Prefs.saveBoolean(Prefs.STREAM_ENABLE, enable.isSelected());
+			Prefs.saveString(Prefs.STREAM_HOST, host.getText());
+			Prefs.saveInt(Prefs.STREAM_PORT, portNum);
+			Prefs.saveString(Prefs.STREAM_MOUNT, mount.getText());
+			Prefs.saveString(Prefs.STREAM_USER, user.getText());
+			Prefs.saveString(Prefs.STREAM_PASSWORD, password.getText());
+			Prefs.saveString(Prefs.STREAM_NAME, name.getText());
+			
+			stage.close();
+			Streaming.init();
+		});
+		
+		cancel.setOnAction((e) -> stage.close());
+		
+		root.getChildren().add(buttBar);
+		
+		stage.setScene(new Scene(root));
+	}
+	
+	public static void show() {
+		if ( stage == null ) {
+			init();
+		}
+		
+		enable.setSelected(Prefs.loadBoolean(Prefs.STREAM_ENABLE));
+		host.setText(Prefs.loadString(Prefs.STREAM_HOST));
+		port.setText(String.valueOf(Prefs.loadInt(Prefs.STREAM_PORT)));
+		mount.setText(Prefs.loadString(Prefs.STREAM_MOUNT));
+		user.setText(Prefs.loadString(Prefs.STREAM_USER));
+		password.setText(Prefs.loadString(Prefs.STREAM_PASSWORD));
+		name.setText(Prefs.loadString(Prefs.STREAM_NAME));
+		status.setText(Streaming.getStatus());
+		
+		stage.show();
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * AudioPoolGCCheck: Measures what the audio pool saves the garbage collector over
+ * a run of track loads, by doing the same loads with and without it
+ * Each load takes what a real one does (a ring, a retained intro and a handful of
+ * decode blocks) and hands it all back at the next load
+ * Run it with a smallish heap so the difference shows, e.g.:
+ *   java -Xmx256m -cp <console classes>:<test classes> com.stereodustparticles.console.deck.AudioPoolGCCheck
+ */
+package com.stereodustparticles.console.deck;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+import javax.sound.sampled.AudioFormat;
+
+public class AudioPoolGCCheck {
+	private static final int LOADS = 200;
+	private static final int BLOCKS_PER_LOAD = 16;
+	
+	private static final AudioFormat FORMAT = new AudioFormat(48000, 16, 2, true, false);
+	private static final int RING_SIZE = 48000 * 8 * 2; // Low-latency maximum, in samples
+	
+	// Somewhere for the unpooled run to put its buffers, so they aren't just optimized away
+	private static Object sink;
+	
+	public static void main(String[] args) {
+		// Once each way to warm up, then the real thing
+		runUnpooled(LOADS / 10);
+		runPooled(LOADS / 10);
+		
+		report("Without pool", LOADS, false);
+		report("With pool", LOADS, true);
+		System.out.println(AudioPool.summarize());
+	}
+	
+	private static void report(String name, int loads, boolean pooled) {
+		long allocBefore = allocatedBytes();
+		long[] gcBefore = gcTotals();
+		
+		if ( pooled ) {
+			runPooled(loads);
+		}
+		else {
+			runUnpooled(loads);
+		}
+		
+		long[] gcAfter = gcTotals();
+		long alloc = allocatedBytes() - allocBefore;
+		System.out.println(String.format("%-14s %d loads: %.1f MB allocated, %d collections, %d ms in GC", name, loads, alloc / 1048576.0, gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1]));
+	}
+	
+	// What the loads used to do: fresh buffers every time, left for the collector
+	private static void runUnpooled(int loads) {
+		for ( int i = 0; i < loads; i++ ) {
+			sink = new float[RING_SIZE];
+			sink = new byte[(int)FORMAT.getSampleRate() * Deck.INTRO_RETAIN_SEC * FORMAT.getFrameSize()];
+			for ( int j = 0; j < BLOCKS_PER_LOAD; j++ ) {
+				sink = new byte[4096];
+			}
+		}
+	}
+	
+	// What they do now
+	private static void runPooled(int loads) {
+		SampleRing ring = null;
+		RetainedIntro intro = null;
+		for ( int i = 0; i < loads; i++ ) {
+			SampleRing oldRing = ring;
+			RetainedIntro oldIntro = intro;
+			
+			ring = new SampleRing(RING_SIZE / 2, RING_SIZE);
+			intro = new RetainedIntro(FORMAT, Deck.INTRO_RETAIN_SEC);
+			for ( int j = 0; j < BLOCKS_PER_LOAD; j++ ) {
+				AudioPool.give(AudioPool.takeBytes(4096));
+			}
+			
+			if ( oldRing != null ) {
+				oldRing.close();
+				oldRing.release();
+				oldIntro.release();
+			}
+		}
+		
+		ring.close();
+		ring.release();
+		intro.release();
+	}
+	
+	// Bytes allocated by this thread so far (or 0 if the JVM won't say)
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if ( threads instanceof com.sun.management.ThreadMXBean ) {
+			return ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+	
+	// Total collections and milliseconds spent collecting, across all collectors
+	private static long[] gcTotals() {
+		long[] totals = new long[2];
+		for ( GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans() ) {
+			totals[0] += Math.max(0, gc.getCollectionCount());
+			totals[1] += Math.max(0, gc.getCollectionTime());
+		}
+		return totals;
+	}
+}
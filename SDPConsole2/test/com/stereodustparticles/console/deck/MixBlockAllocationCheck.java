@@ -0,0 +1,154 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * MixBlockAllocationCheck: Makes sure mixing a block doesn't allocate anything
+ * Runs a pair of decks' voices through segue after segue (the outgoing one hits its
+ * segue point, releases the held incoming one and fades out) with a clip playing to
+ * the end alongside, and the master and both voices tapped (the way an aircheck with
+ * deck tracks taps them), and counts what this thread allocates inside mixBlock() only
+ * (the writes and the deck-side calls in between don't count - they aren't on the
+ * mix thread in real life)
+ *   java -cp <console classes>:<test classes> com.stereodustparticles.console.deck.MixBlockAllocationCheck
+ */
+package com.stereodustparticles.console.deck;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.util.function.IntConsumer;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
+import com.stereodustparticles.console.record.RecordingTrack;
+
+public class MixBlockAllocationCheck {
+	private static final AudioFormat FORMAT = new AudioFormat(44100, 16, 2, true, false);
+	private static final int WARMUP_CYCLES = 500;
+	private static final int CYCLES = 2000;
+	private static final int BLOCKS_PER_CYCLE = 12;
+	private static final long SEGUE_AT = MixEngine.BLOCK_FRAMES * 5 + 100; // Partway into a block
+	private static final int CROSSFADE = 1500;
+	
+	private static final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+	private static final long me = Thread.currentThread().getId();
+	
+	private static MixEngine engine;
+	private static StreamVoice outgoing;
+	private static StreamVoice incoming;
+	private static ClipVoice clip;
+	
+	// Everything the mix thread calls back into is set up ahead of time, the same as Deck does it
+	private static volatile int releases = 0;
+	private static volatile int fades = 0;
+	private static volatile int clipEnds = 0;
+	private static Runnable onReleased;
+	private static Runnable onFadedOut;
+	private static final IntConsumer onSegue = MixBlockAllocationCheck::segue;
+	
+	public static void main(String[] args) throws Exception {
+		engine = new MixEngine(FORMAT);
+		outgoing = engine.addVoice(new StreamVoice(engine, new PlayoutStats()));
+		incoming = engine.addVoice(new StreamVoice(engine, new PlayoutStats()));
+		clip = engine.addVoice(new ClipVoice(engine));
+		outgoing.setFormat(FORMAT);
+		incoming.setFormat(FORMAT);
+		
+		// Nobody drains these, so they fill up in short order and drop from then on - both ways have to be allocation-free
+		engine.addTap(new RecordingTrack("Master", FORMAT, 64));
+		outgoing.setTap(new RecordingTrack("Deck1", FORMAT, 64));
+		incoming.setTap(new RecordingTrack("Deck2", FORMAT, 64));
+		
+		MixNotifier.Notice released = MixNotifier.register(() -> releases++);
+		MixNotifier.Notice fadedOut = MixNotifier.register(() -> fades++);
+		onReleased = released::post;
+		onFadedOut = fadedOut::post;
+		
+		// A short blip for the clip (it runs out a few blocks in)
+		byte[] blip = new byte[MixEngine.BLOCK_FRAMES * 3 * FORMAT.getFrameSize()];
+		for ( int i = 0; i < blip.length; i += 2 ) {
+			blip[i + 1] = (byte)((i / 2) % 64);
+		}
+		clip.setHandlers(null, () -> clipEnds++);
+		clip.open(new AudioInputStream(new ByteArrayInputStream(blip), FORMAT, blip.length / FORMAT.getFrameSize()));
+		
+		float[] mix = new float[MixEngine.BLOCK_FRAMES * FORMAT.getChannels()];
+		float[] voiceBuffer = new float[mix.length];
+		float[] source = new float[MixEngine.BLOCK_FRAMES * 8 * FORMAT.getChannels()];
+		for ( int i = 0; i < source.length; i++ ) {
+			source[i] = (float)Math.sin(i / 40.0) * 0.25f;
+		}
+		
+		// Let the JIT settle first
+		run(WARMUP_CYCLES, mix, voiceBuffer, source);
+		
+		// How much asking costs, so it can be taken back out
+		long overhead = threads.getThreadAllocatedBytes(me);
+		overhead = threads.getThreadAllocatedBytes(me) - overhead;
+		
+		long allocated = run(CYCLES, mix, voiceBuffer, source) - overhead * CYCLES * BLOCKS_PER_CYCLE;
+		int blocks = CYCLES * BLOCKS_PER_CYCLE;
+		
+		// Give the notifier a chance to catch up
+		// (A notice that gets posted again before the notifier gets to it only counts once, so these can come up a bit short)
+		Thread.sleep(200);
+		System.out.println(String.format("%d blocks, %d segues (%d releases, %d fades), %d clip ends: %d bytes allocated in mixBlock(), %.2f per block", blocks, WARMUP_CYCLES + CYCLES, releases, fades, clipEnds, allocated, (double)allocated / blocks));
+		if ( allocated > 0 ) {
+			System.out.println("FAILED - the mix thread allocated");
+			System.exit(1);
+		}
+	}
+	
+	// Run the given number of segues, and return how many bytes got allocated inside mixBlock()
+	private static long run(int cycles, float[] mix, float[] voiceBuffer, float[] source) {
+		long allocated = 0;
+		for ( int cycle = 0; cycle < cycles; cycle++ ) {
+			// What the decks do: the outgoing one was released last time around (or is starting cold), the incoming one gets cued up and held
+			outgoing.clearSeguePoint();
+			outgoing.flush();
+			outgoing.timeNextStart(System.nanoTime());
+			outgoing.start();
+			outgoing.setSeguePoint(SEGUE_AT, onSegue);
+			
+			incoming.stop();
+			incoming.flush();
+			incoming.hold(onReleased);
+			incoming.start();
+			
+			clip.play();
+			
+			for ( int block = 0; block < BLOCKS_PER_CYCLE; block++ ) {
+				// Keep the incoming voice topped up - the outgoing one runs dry once it's faded, for an underrun or two
+				topUp(incoming, source);
+				if ( block < 8 ) {
+					topUp(outgoing, source);
+				}
+				
+				long before = threads.getThreadAllocatedBytes(me);
+				engine.mixBlock(mix, voiceBuffer);
+				allocated += threads.getThreadAllocatedBytes(me) - before;
+			}
+			
+			// Swap sides
+			StreamVoice next = incoming;
+			incoming = outgoing;
+			outgoing = next;
+		}
+		
+		return allocated;
+	}
+	
+	private static void topUp(StreamVoice voice, float[] source) {
+		int frames = Math.min(voice.getWritableFrames(), source.length / FORMAT.getChannels());
+		voice.write(source, 0, frames);
+	}
+	
+	// The outgoing voice's segue handler (called from "the mix thread")
+	private static void segue(int offset) {
+		incoming.release(offset, CROSSFADE);
+		outgoing.fadeOut(offset, CROSSFADE, onFadedOut);
+	}
+}
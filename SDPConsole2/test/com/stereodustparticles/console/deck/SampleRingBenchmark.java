@@ -0,0 +1,189 @@
+/*
+ * SDP Mooler Caster Console - version 2
+ * Simple DJ software for "Mooler Casting" operations
+ * DTC Playout Engine
+ * 
+ * Written by Ben Ackerman (IfYouLikeGoodIdeas) for Stereo Dust Particles, 2017
+ * 
+ * SampleRingBenchmark: Pits the lock-free SampleRing against the old monitor-locked
+ * one it replaced, with one thread filling and one draining (the way a deck's reader
+ * and writer use it), and checks every sample comes out in order
+ * Also bounces single frames back and forth between two rings, to see how long a
+ * sample takes to get from one side to the other
+ * Neither side ever waits on the other, so when there's nothing to do they just
+ * yield - same as a scheduler job that comes up empty
+ */
+package com.stereodustparticles.console.deck;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+public class SampleRingBenchmark {
+	private static final int RING_SIZE = 48000 * 2; // One second of stereo
+	private static final int WRITE_BLOCK = 2048;
+	private static final int READ_BLOCK = 1024;
+	private static final long SAMPLES = 200000000L;
+	private static final int ROUNDS = 5;
+	private static final int PINGS = 20000;
+	
+	// What both rings look like from here
+	private interface Ring {
+		int write(float[] samples, int off, int len) throws IOException;
+		int read(float[] samples, int off, int len) throws IOException;
+	}
+	
+	// The ring as it was before it went lock-free
+	private static class LockedRing implements Ring {
+		private float[] buffer;
+		private int readPos = 0;
+		private int fill = 0;
+		
+		public LockedRing(int size) {
+			buffer = new float[size];
+		}
+		
+		@Override
+		public synchronized int write(float[] samples, int off, int len) {
+			int n = Math.min(len, buffer.length - fill);
+			int writePos = (readPos + fill) % buffer.length;
+			int firstLen = Math.min(n, buffer.length - writePos);
+			System.arraycopy(samples, off, buffer, writePos, firstLen);
+			System.arraycopy(samples, off + firstLen, buffer, 0, n - firstLen);
+			fill += n;
+			return n;
+		}
+		
+		@Override
+		public synchronized int read(float[] samples, int off, int len) {
+			int n = Math.min(len, fill);
+			int firstLen = Math.min(n, buffer.length - readPos);
+			System.arraycopy(buffer, readPos, samples, off, firstLen);
+			System.arraycopy(buffer, 0, samples, off + firstLen, n - firstLen);
+			readPos = (readPos + n) % buffer.length;
+			fill -= n;
+			return n;
+		}
+	}
+	
+	// The one we've got now
+	private static class FreeRing implements Ring {
+		private final SampleRing ring;
+		
+		public FreeRing(int size) {
+			ring = new SampleRing(size);
+		}
+		
+		@Override
+		public int write(float[] samples, int off, int len) throws IOException {
+			return ring.write(samples, off, len);
+		}
+		
+		@Override
+		public int read(float[] samples, int off, int len) throws IOException {
+			return ring.read(samples, off, len);
+		}
+	}
+	
+	public static void main(String[] args) throws Exception {
+		System.out.println(Runtime.getRuntime().availableProcessors() + " CPU(s)");
+		
+		for ( int round = 0; round < ROUNDS; round++ ) {
+			double locked = throughput(new LockedRing(RING_SIZE));
+			double free = throughput(new FreeRing(RING_SIZE));
+			System.out.println(String.format("Throughput round %d: monitor %.0f Msamples/s, lock-free %.0f Msamples/s", round + 1, locked, free));
+		}
+		
+		for ( int round = 0; round < ROUNDS; round++ ) {
+			double locked = pingPong(new LockedRing(RING_SIZE), new LockedRing(RING_SIZE));
+			double free = pingPong(new FreeRing(RING_SIZE), new FreeRing(RING_SIZE));
+			System.out.println(String.format("Round trip round %d: monitor %.2f us, lock-free %.2f us (median)", round + 1, locked, free));
+		}
+	}
+	
+	// Push SAMPLES samples through the ring, and return how many million a second got through
+	private static double throughput(Ring ring) throws Exception {
+		Thread producer = new Thread(() -> {
+			float[] block = new float[WRITE_BLOCK];
+			long next = 0;
+			try {
+				while ( next < SAMPLES ) {
+					int len = (int)Math.min(block.length, SAMPLES - next);
+					for ( int i = 0; i < len; i++ ) {
+						block[i] = (float)((next + i) & 0xFFFFF);
+					}
+					
+					int off = 0;
+					while ( off < len ) {
+						int n = ring.write(block, off, len - off);
+						if ( n == 0 ) {
+							Thread.yield();
+						}
+						off += n;
+					}
+					next += len;
+				}
+			}
+			catch (IOException e) {
+				e.printStackTrace();
+			}
+		});
+		
+		long start = System.nanoTime();
+		producer.start();
+		
+		float[] block = new float[READ_BLOCK];
+		long expected = 0;
+		while ( expected < SAMPLES ) {
+			int n = ring.read(block, 0, block.length);
+			if ( n == 0 ) {
+				Thread.yield();
+				continue;
+			}
+			
+			for ( int i = 0; i < n; i++ ) {
+				if ( block[i] != (float)((expected + i) & 0xFFFFF) ) {
+					throw new IllegalStateException("Sample " + (expected + i) + " came out wrong");
+				}
+			}
+			expected += n;
+		}
+		
+		long elapsed = System.nanoTime() - start;
+		producer.join();
+		return SAMPLES * 1000.0 / elapsed;
+	}
+	
+	// Bounce a frame there and back PINGS times, and return the median round trip in microseconds
+	private static double pingPong(Ring there, Ring back) throws Exception {
+		Thread echo = new Thread(() -> {
+			float[] frame = new float[2];
+			try {
+				for ( int i = 0; i < PINGS; i++ ) {
+					while ( there.read(frame, 0, 2) == 0 ) {
+						Thread.yield();
+					}
+					back.write(frame, 0, 2);
+				}
+			}
+			catch (IOException e) {
+				e.printStackTrace();
+			}
+		});
+		echo.start();
+		
+		float[] frame = new float[2];
+		long[] trips = new long[PINGS];
+		for ( int i = 0; i < PINGS; i++ ) {
+			long start = System.nanoTime();
+			there.write(frame, 0, 2);
+			while ( back.read(frame, 0, 2) == 0 ) {
+				Thread.yield();
+			}
+			trips[i] = System.nanoTime() - start;
+		}
+		echo.join();
+		
+		Arrays.sort(trips);
+		return trips[PINGS / 2] / 1000.0;
+	}
+}